@@ -1,6 +1,8 @@
 package components;
 
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Base class for a component placed on the board.
@@ -15,6 +17,9 @@ public abstract class Components implements Cloneable {
     protected double voltageDrop = 0.0;
     protected double currentFlow = 0.0;
 
+    // Groups that contain this component (normally one), told when our impedance changes
+    private List<CompositeComponent> parents = new ArrayList<>(1);
+
     public Components(String id, int x, int y) {
         this.id = id;
         this.x = x;
@@ -51,6 +56,15 @@ public abstract class Components implements Cloneable {
         this.y = y;
     }
     
+    void addParent(CompositeComponent group) {
+        if (!parents.contains(group)) parents.add(group);
+    }
+
+    /** Drops the cached impedance of every group above this component (only the ancestors). */
+    protected void invalidateImpedance() {
+        for (int i = 0; i < parents.size(); i++) parents.get(i).markDirty();
+    }
+
     public void setSimulationState(double voltage, double current, double frequency) {
         this.voltageDrop = voltage;
         this.currentFlow = current;
@@ -100,7 +114,9 @@ public abstract class Components implements Cloneable {
     @Override
     public Components clone() {
         try {
-            return (Components) super.clone();
+            Components copy = (Components) super.clone();
+            copy.parents = new ArrayList<>(parents);
+            return copy;
         } catch (CloneNotSupportedException e) {
             throw new AssertionError(); 
         }
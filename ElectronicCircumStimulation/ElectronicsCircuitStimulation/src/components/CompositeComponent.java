@@ -8,6 +8,11 @@ public class CompositeComponent extends Components {
     private List<Components> children = new ArrayList<>();
     private Mode mode = Mode.SERIES;
 
+    // Equivalent impedance cached for one frequency; cleared when anything below us changes
+    private boolean dirty = true;
+    private double cachedFrequency = Double.NaN;
+    private double cachedImpedance;
+
     public enum Mode {
         SERIES, PARALLEL
     }
@@ -23,10 +28,29 @@ public class CompositeComponent extends Components {
         this.children = parts;
         this.width = 100;
         this.height = 60;
+        for (Components c : parts) c.addParent(this);
     }
 
     public void add(Components component) {
         children.add(component);
+        component.addParent(this);
+        markDirty();
+    }
+
+    /** Re-registers this group (and groups below it) with its children, e.g. after an undo. */
+    public void relink() {
+        for (Components c : children) {
+            c.addParent(this);
+            if (c instanceof CompositeComponent group) group.relink();
+        }
+        dirty = false; // force markDirty to propagate
+        markDirty();
+    }
+
+    void markDirty() {
+        if (dirty) return; // ancestors of a dirty group are already dirty
+        dirty = true;
+        invalidateImpedance();
     }
     
     public List<Components> getChildren() {
@@ -34,7 +58,9 @@ public class CompositeComponent extends Components {
     }
 
     public void setMode(Mode mode) {
+        if (mode == this.mode) return;
         this.mode = mode;
+        markDirty();
     }
     
     public Mode getMode() {
@@ -43,6 +69,14 @@ public class CompositeComponent extends Components {
 
     @Override
     public double getImpedance(double frequency) {
+        if (!dirty && frequency == cachedFrequency) return cachedImpedance;
+        cachedImpedance = evaluate(frequency);
+        cachedFrequency = frequency;
+        dirty = false;
+        return cachedImpedance;
+    }
+
+    private double evaluate(double frequency) {
         if (children.isEmpty()) return Double.POSITIVE_INFINITY; //open circuit
 
         if (mode == Mode.SERIES) {
@@ -84,7 +118,7 @@ public class CompositeComponent extends Components {
         int openComponents = 0;
         
         for(Components c : children) {
-            if(Double.isInfinite(c.getImpedance(frequency))) openComponents++;
+            if(Double.isInfinite(c.getImpedance(frequency))) openComponents++; // cached for groups
         }
 
         for (Components c : children) {
@@ -106,12 +140,13 @@ public class CompositeComponent extends Components {
     }
 
     private void handleParallelDistribution(double totalVoltage, double frequency) {
+        boolean selfShorted = getImpedance(frequency) < 1e-9;
         for (Components c : children) {
             double z = c.getImpedance(frequency);
             double iBranch;
             if (Math.abs(z) < 1e-9) {
                 // If shorted, it conceptually takes max current, but for sim safety:
-                iBranch = (this.getImpedance(frequency) < 1e-9) ? this.currentFlow : 0; //calculate I 
+                iBranch = selfShorted ? this.currentFlow : 0; //calculate I 
             } else if (Double.isInfinite(z)) {
                 iBranch = 0.0;
             } else {
@@ -152,6 +187,14 @@ public class CompositeComponent extends Components {
         }
     }
 
+    @Override
+    public CompositeComponent clone() {
+        CompositeComponent copy = (CompositeComponent) super.clone();
+        copy.children = new ArrayList<>(children);
+        copy.dirty = true;
+        return copy;
+    }
+
     @Override
     public Rectangle getBounds() {
         return new Rectangle(x - width / 2, y - height / 2, width, height);
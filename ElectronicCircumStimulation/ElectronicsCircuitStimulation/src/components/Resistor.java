@@ -34,6 +34,7 @@ public class Resistor extends Components {
 
     public void setResistance(double r) {
         this.resistance = r;
+        invalidateImpedance();
     }
 
 	@Override
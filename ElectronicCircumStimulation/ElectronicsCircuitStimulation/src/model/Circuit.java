@@ -35,6 +35,9 @@ public class Circuit {
     public void setComponents(List<Components> components) {
         this.components.clear();
         this.components.addAll(components);
+        for (Components c : components) {
+            if (c instanceof CompositeComponent group) group.relink();
+        }
         rebuildCircuit();
     }
 
@@ -0,0 +1,51 @@
+package bench;
+
+import components.Components;
+import components.Wire;
+import model.Circuit;
+import model.CircuitMemento;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/** {@link CircuitMemento} of a board of loose parts with a wire between every second pair. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx3g" })
+public class MementoBench {
+    @Param({ "10", "1000", "100000", "1000000" })
+    int parts;
+
+    private Circuit circuit;
+    private final List<Wire> wires = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        circuit = new Circuit();
+        List<Components> board = Boards.parts(parts);
+        circuit.setComponents(board);
+        for (int i = 0; i + 1 < parts; i += 2) {
+            wires.add(new Wire(board.get(i), board.get(i + 1), Wire.Type.SERIES));
+        }
+    }
+
+    @Benchmark
+    public CircuitMemento memento() {
+        return new CircuitMemento(circuit, wires);
+    }
+}
@@ -0,0 +1,58 @@
+package bench;
+
+import components.Bulb;
+import components.CircuitManager;
+import components.CompositeComponent;
+import components.PowerSource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CircuitManager#simulate}: the impedance of the user's tree and the distribution of
+ * voltage and current down to every part. The source is kept low enough that the bulb never
+ * blows, which would print on every call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx3g" })
+public class SimulateBench {
+    @Param({ "10", "1000", "100000", "1000000" })
+    int parts;
+
+    @Param({ "2", "8", "64" })
+    int fanout;
+
+    @Param({ "SERIES_WITH_BULB", "PARALLEL_WITH_BULB" })
+    CircuitManager.ConnectionMode mode;
+
+    private CompositeComponent circuit;
+    private PowerSource source;
+    private Bulb bulb;
+
+    @Setup
+    public void setUp() {
+        circuit = Boards.tree(parts, fanout);
+        source = new PowerSource("V", 0, 0, 1.0, 50.0);
+        bulb = new Bulb("B", 0, 0, 220.0, 100.0);
+    }
+
+    @Benchmark
+    public Bulb simulate() {
+        CircuitManager.simulate(source, circuit, bulb, mode);
+        return bulb;
+    }
+}
@@ -0,0 +1,56 @@
+package bench;
+
+import components.Capacitor;
+import components.Components;
+import components.CompositeComponent;
+import components.Inductor;
+import components.Resistor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Synthetic circuits for the benchmarks, the same for a given size on every run. */
+final class Boards {
+    // one board cell per part, the pitch the netlist importer uses
+    static final int PITCH_X = 100, PITCH_Y = 60, COLUMNS = 1000;
+
+    private Boards() {
+    }
+
+    /** n resistors, inductors and capacitors in turn, laid out row by row. */
+    static List<Components> parts(int n) {
+        List<Components> parts = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            int x = (i % COLUMNS) * PITCH_X, y = (i / COLUMNS) * PITCH_Y;
+            parts.add(switch (i % 3) {
+                case 0 -> new Resistor("R" + i, x, y, 10 + i % 1000);
+                case 1 -> new Inductor("L" + i, x, y, 1e-3 * (1 + i % 10));
+                default -> new Capacitor("C" + i, x, y, 1e-6 * (1 + i % 10));
+            });
+        }
+        return parts;
+    }
+
+    /**
+     * The parts of {@link #parts} grouped fanout at a time, level by level, until one group is
+     * left: about log_fanout(n) levels deep. Levels alternate series and parallel, starting with
+     * series at the bottom.
+     */
+    static CompositeComponent tree(int n, int fanout) {
+        List<Components> level = parts(n);
+        boolean series = true;
+        int groups = 0;
+        do {
+            List<Components> up = new ArrayList<>(level.size() / fanout + 1);
+            for (int i = 0; i < level.size(); i += fanout) {
+                CompositeComponent g = new CompositeComponent("G" + groups++, 0, 0);
+                g.setMode(series ? CompositeComponent.Mode.SERIES : CompositeComponent.Mode.PARALLEL);
+                for (int j = i; j < Math.min(i + fanout, level.size()); j++) g.add(level.get(j));
+                up.add(g);
+            }
+            level = up;
+            series = !series;
+        } while (level.size() > 1);
+        return (CompositeComponent) level.get(0);
+    }
+}
@@ -0,0 +1,79 @@
+package bench;
+
+import components.Components;
+import components.CompositeComponent;
+import components.Resistor;
+import model.CircuitModel;
+import model.CircuitSnapshot;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Structural edits on a board of loose parts: {@link model.Circuit#connect} and
+ * {@link model.Circuit#removeComponent}, each paired with what undoes it so the board keeps its
+ * size, and a move followed by a snapshot. The board is built again every iteration, because
+ * drawing orders are never handed out twice and would pile up over a long run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx3g" })
+public class EditBench {
+    @Param({ "10", "1000", "100000", "1000000" })
+    int parts;
+
+    private CircuitModel model;
+    private Components middle;
+    private int step;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        model = new CircuitModel();
+        List<Components> board = Boards.parts(parts);
+        model.replaceBoard(board, null, List.of());
+        middle = board.get(parts / 2);
+    }
+
+    /** Two new parts on top, connected, and the group taken off again. */
+    @Benchmark
+    public CompositeComponent connect() {
+        Components a = new Resistor("A", 0, 0, 10), b = new Resistor("B", 0, 0, 20);
+        model.circuit.addComponent(a);
+        model.circuit.addComponent(b);
+        model.circuit.connect(a, b, CompositeComponent.Mode.SERIES);
+        CompositeComponent group = model.circuit.getRoot(); // connect makes the group the root
+        model.circuit.removeComponent(group);
+        return group;
+    }
+
+    /** A part from the middle of the list taken off and put back on top. */
+    @Benchmark
+    public Components removeComponent() {
+        model.circuit.removeComponent(middle);
+        model.circuit.addComponent(middle);
+        return middle;
+    }
+
+    /** One part nudged, then the board handed to another thread as a snapshot. */
+    @Benchmark
+    public CircuitSnapshot moveAndSnapshot() {
+        int dx = ((step++ & 1) == 0) ? 1 : -1;
+        model.circuit.moveComponent(middle, middle.getPosition().x + dx, middle.getPosition().y);
+        return model.snapshot();
+    }
+}
@@ -0,0 +1,56 @@
+package bench;
+
+import components.Components;
+import model.CircuitModel;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Point;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** {@link model.Circuit#selectableAt(int, int)}: half the points are on a part, half between parts. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx3g" })
+public class HitTestBench {
+    @Param({ "10", "1000", "100000", "1000000" })
+    int parts;
+
+    private CircuitModel model;
+    private final int[] xs = new int[4096], ys = new int[4096];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        model = new CircuitModel();
+        List<Components> board = Boards.parts(parts);
+        model.replaceBoard(board, null, List.of());
+        Random random = new Random(42);
+        for (int i = 0; i < xs.length; i++) {
+            Point p = board.get(random.nextInt(parts)).getPosition();
+            boolean between = (i & 1) == 1;
+            xs[i] = p.x + (between ? Boards.PITCH_X / 2 : 0);
+            ys[i] = p.y + (between ? Boards.PITCH_Y / 2 : 0);
+        }
+    }
+
+    @Benchmark
+    public Components selectableAt() {
+        int i = next++ & (xs.length - 1);
+        return model.circuit.selectableAt(xs[i], ys[i]);
+    }
+}
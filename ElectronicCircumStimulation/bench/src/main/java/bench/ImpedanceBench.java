@@ -0,0 +1,56 @@
+package bench;
+
+import components.CompositeComponent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link CompositeComponent#getImpedance(double)} of a whole tree, by size and by fanout (a
+ * fanout of 2 is the deepest tree, 64 the widest).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "-Djava.awt.headless=true", "-Xmx3g" })
+public class ImpedanceBench {
+    @Param({ "10", "1000", "100000", "1000000" })
+    int parts;
+
+    @Param({ "2", "8", "64" })
+    int fanout;
+
+    private CompositeComponent root;
+    private final double[] frequencies = new double[1024];
+    private int next;
+
+    @Setup
+    public void setUp() {
+        root = Boards.tree(parts, fanout);
+        for (int i = 0; i < frequencies.length; i++) frequencies[i] = 50.0 + i;
+    }
+
+    /** A new frequency every call: every group is evaluated again. */
+    @Benchmark
+    public double sweep() {
+        return root.getImpedance(frequencies[next++ & (frequencies.length - 1)]);
+    }
+
+    /** The same frequency again: the root answers from its cache. */
+    @Benchmark
+    public double cached() {
+        return root.getImpedance(50.0);
+    }
+}
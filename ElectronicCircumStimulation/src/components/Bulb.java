@@ -18,7 +18,14 @@ public class Bulb extends Components {
     }
 
     public void setLighted(boolean lighted) {
+        if (isLighted == lighted) return;
         isLighted = lighted;
+        thaw();
+    }
+
+    @Override
+    protected boolean isLit() {
+        return isLighted;
     }
 
     public double getPowerLimit() {
@@ -28,20 +35,35 @@ public class Bulb extends Components {
     public double getImpedance(double frequency) {
         return resistance; // Bulbs act like resistors
     }
+
+    @Override
+    public void getImpedance(double frequency, double[] z) {
+        z[0] = resistance;
+        z[1] = 0.0;
+    }
     @Override
     public void draw(Graphics2D g2) {
-        Color fillColor = isLighted ? Color.YELLOW : Color.DARK_GRAY;
-        draw(g2, fillColor);
+        draw(g2, bodyColor());
 
         g2.setColor(Color.WHITE);
         g2.setFont(g2.getFont().deriveFont(12f));
         FontMetrics fm = g2.getFontMetrics();
-        String s = "Bulb";
+        String s = getLabel();
         int sx = x - fm.stringWidth(s)/2;
         int sy = y + fm.getAscent()/2;
         g2.drawString(s, sx, sy);
     }
 
+    @Override
+    protected Color bodyColor() {
+        return isLighted ? Color.YELLOW : Color.DARK_GRAY;
+    }
+
+    @Override
+    protected String formatLabel() {
+        return "Bulb";
+    }
+
     @Override
     public double getResistanceOhms() {
         return resistance;
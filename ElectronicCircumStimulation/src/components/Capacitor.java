@@ -16,11 +16,20 @@ public class Capacitor extends Components {
 
     @Override
     public void draw(Graphics2D g2) {
-        draw(g2, Color.CYAN);
+        draw(g2, bodyColor());
         g2.setColor(Color.BLACK);
         g2.setFont(g2.getFont().deriveFont(12f));
-        String label = "C: " +formatDouble(capacitance) + "F";
-        drawCenteredString(g2, label, new Rectangle(x-width/2, y-height/2, width, height));
+        drawCenteredString(g2, getLabel(), new Rectangle(x-width/2, y-height/2, width, height));
+    }
+
+    @Override
+    protected Color bodyColor() {
+        return Color.CYAN;
+    }
+
+    @Override
+    protected String formatLabel() {
+        return "C: " + formatDouble(capacitance) + "F";
     }
 
     private String formatDouble(double d) {
@@ -47,6 +56,11 @@ public class Capacitor extends Components {
     public double getCapacitance() {
         return capacitance;
     }
+
+    public void setCapacitance(double capacitance) {
+        this.capacitance = capacitance;
+        invalidateImpedance();
+    }
     
     @Override
     public double getImpedance(double frequency) {
@@ -55,6 +69,18 @@ public class Capacitor extends Components {
         if (frequency <= 0) return Double.POSITIVE_INFINITY;
         return 1.0 / (2.0 * Math.PI * frequency * capacitance);
     }
+
+    @Override
+    public void getImpedance(double frequency, double[] z) {
+        // Z_c = -j / (2 * pi * f * C)
+        if (frequency <= 0 || capacitance <= 0) {
+            z[0] = Double.POSITIVE_INFINITY;
+            z[1] = 0.0;
+            return;
+        }
+        z[0] = 0.0;
+        z[1] = -1.0 / (2.0 * Math.PI * frequency * capacitance);
+    }
 	@Override
 	public Rectangle getBounds() {
 		return new Rectangle(x - width / 2, y - height / 2, width, height);
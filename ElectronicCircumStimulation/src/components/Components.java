@@ -1,6 +1,9 @@
 package components;
 
 import java.awt.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public abstract class Components implements Cloneable {
     protected int x, y;
@@ -17,6 +20,21 @@ public abstract class Components implements Cloneable {
     protected double voltageDrop = 0.0;
     protected double currentFlow = 0.0;
 
+    // Groups that contain this component (normally one), told when our impedance changes
+    private List<CompositeComponent> parents = new ArrayList<>(1);
+    // Bumped on every value change, so compiled programs can patch only what changed
+    private int revision;
+
+    // Label formatted once per value, and the sprite key last built from it
+    private String label;
+    private int labelRevision = -1;
+    private SpriteCache.Key spriteKey;
+
+    // Copy handed to other threads, shared until this part (or a member, for groups) changes.
+    // On a frozen copy: frozen is the copy itself and original the part it was taken from.
+    private Components frozen;
+    private Components original;
+
     public Components(String id, int x, int y) {
         this.id = id;
         this.x = x;
@@ -28,6 +46,7 @@ public abstract class Components implements Cloneable {
     public void setPosition(int x, int y) {
         this.x = x;
         this.y = y;
+        thaw();
     }
 
     public Point getPosition() {
@@ -35,12 +54,24 @@ public abstract class Components implements Cloneable {
     }
     
     public boolean contains(Point p) {
-        Rectangle r = new Rectangle(x - width/2, y - height/2, width, height);
-        return r.contains(p);
+        return contains(p.x, p.y);
+    }
+
+    /** Same as {@link #contains(Point)} without allocating. */
+    public boolean contains(int px, int py) {
+        int left = x - width / 2;
+        int top = y - height / 2;
+        return px >= left && py >= top && px < left + width && py < top + height;
+    }
+
+    /** The area where {@link #contains(Point)} is true (for groups: their own handle only). */
+    public Rectangle getHitBounds() {
+        return new Rectangle(x - width / 2, y - height / 2, width, height);
     }
 
     public void setSelected(boolean sel) {
         this.selected = sel;
+        thaw();
     }
 
     public boolean isSelected() {
@@ -53,6 +84,105 @@ public abstract class Components implements Cloneable {
 
     public abstract double getImpedance(double frequency);
 
+    /**
+     * Complex impedance at the given frequency, written into z[0] (real) and z[1] (imaginary)
+     * so that evaluating a large tree does not allocate. An open circuit is z[0] = +infinity.
+     */
+    public void getImpedance(double frequency, double[] z) {
+        z[0] = getImpedance(frequency);
+        z[1] = 0.0;
+    }
+
+    void addParent(CompositeComponent group) {
+        if (!parents.contains(group)) parents.add(group);
+    }
+
+    void removeParent(CompositeComponent group) {
+        parents.remove(group);
+    }
+
+    /** Groups that contain this component, normally at most one. */
+    public List<CompositeComponent> getParents() {
+        return Collections.unmodifiableList(parents);
+    }
+
+    /** Drops the cached impedance of every group above this component (only the ancestors). */
+    protected void invalidateImpedance() {
+        revision++;
+        thaw();
+        for (int i = 0; i < parents.size(); i++) parents.get(i).markDirty();
+    }
+
+    /**
+     * Read-only copy of this component as it is now, safe to hand to another thread. The same
+     * copy is returned until something that is drawn or simulated changes (position, selection,
+     * a value, for groups also a member or the mode), and a group's copy shares the copies of
+     * its unchanged members, so taking one again after an edit only copies the path down to it.
+     * Simulation results ({@link #getVoltageDrop()}, {@link #getCurrentFlow()}) are not included.
+     * Nothing may change a frozen copy; computing on it (impedance, label) is fine.
+     */
+    public final Components frozen() {
+        if (frozen == null) frozen = freeze();
+        return frozen;
+    }
+
+    /** For a frozen copy, the live component it was taken from; null otherwise. */
+    public Components getOriginal() {
+        return original;
+    }
+
+    protected Components freeze() {
+        Components copy = clone();
+        copy.parents = new ArrayList<>(0);
+        copy.frozen = copy;
+        copy.original = this;
+        return copy;
+    }
+
+    // every frozen group above us has a frozen copy of us in it; if ours is gone, so are theirs
+    protected final void thaw() {
+        if (frozen == null) return;
+        frozen = null;
+        for (int i = 0; i < parents.size(); i++) parents.get(i).thaw();
+    }
+
+    /** Changes whenever the value of this component changes. */
+    public int getRevision() {
+        return revision;
+    }
+
+    /** Text drawn on the part; only formatted again after its value changed. */
+    public final String getLabel() {
+        if (label == null || labelRevision != revision) {
+            label = formatLabel();
+            labelRevision = revision;
+        }
+        return label;
+    }
+
+    protected String formatLabel() {
+        return "";
+    }
+
+    /** Whether the part is drawn in its lit state (bulbs). */
+    protected boolean isLit() {
+        return false;
+    }
+
+    // reused while nothing that changes the look has changed, so drawing a frame allocates no keys
+    SpriteCache.Key spriteKey(Font font, double scale) {
+        String l = getLabel();
+        boolean lit = isLit();
+        SpriteCache.Key k = spriteKey;
+        if (k == null || k.label() != l || k.selected() != selected || k.lit() != lit
+                || k.width() != width || k.height() != height || k.scale() != scale
+                || (k.font() != font && !k.font().equals(font))) {
+            k = new SpriteCache.Key(getClass(), l, selected, lit, width, height, font, scale);
+            spriteKey = k;
+        }
+        return k;
+    }
+
     public void setSimulationState(double voltage, double current) {
         this.voltageDrop = voltage;
         this.currentFlow = current;
@@ -65,7 +195,32 @@ public abstract class Components implements Cloneable {
     public abstract Rectangle getBounds();
 
     public void draw(Graphics2D g2) {
-        draw(g2, Color.LIGHT_GRAY);
+        draw(g2, bodyColor());
+    }
+
+    /** Fill colour of the body. */
+    protected Color bodyColor() {
+        return Color.LIGHT_GRAY;
+    }
+
+    /**
+     * Level-of-detail drawing for far zoom: a filled box, outlined when asked to (and always
+     * when selected), no label and no rounded corners. Drawn straight in device space at
+     * screen = world * scale + (dx, dy), which keeps Java2D on its integer fast path.
+     */
+    public void drawPlain(Graphics2D g2, double scale, double dx, double dy, boolean outline) {
+        int left = (int) ((x - width / 2) * scale + dx);
+        int top = (int) ((y - height / 2) * scale + dy);
+        int w = Math.max(1, (int) (width * scale));
+        int h = Math.max(1, (int) (height * scale));
+        // setColor revalidates the pipeline; neighbours usually share a colour
+        Color body = bodyColor();
+        if (g2.getColor() != body) g2.setColor(body);
+        g2.fillRect(left, top, w, h);
+        if (outline || selected) {
+            g2.setColor(Color.BLACK);
+            g2.drawRect(left, top, w, h);
+        }
     }
 
     public void draw(Graphics2D g2, Color fillColor) {
@@ -91,7 +246,11 @@ public abstract class Components implements Cloneable {
     @Override
     public Components clone() {
         try {
-            return (Components) super.clone();
+            Components copy = (Components) super.clone();
+            copy.parents = new ArrayList<>(parents);
+            copy.frozen = null;
+            copy.original = null;
+            return copy;
         } catch (CloneNotSupportedException e) {
             throw new AssertionError(); 
         }
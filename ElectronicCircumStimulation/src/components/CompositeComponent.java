@@ -6,9 +6,15 @@ import java.util.Collections;
 import java.util.List;
 
 public class CompositeComponent extends Components {
-    private final List<Components> children = new ArrayList<>();
+    private List<Components> children = new ArrayList<>();
     private Mode mode = Mode.SERIES;
 
+    // Equivalent impedance cached for one frequency; cleared when anything below us changes
+    private boolean dirty = true;
+    private double cachedFrequency = Double.NaN;
+    private double cachedRe, cachedIm;
+    private double[] scratch = new double[2]; // for getImpedance(double); never shared with a copy
+
     public enum Mode { SERIES, PARALLEL }
 
     public CompositeComponent(String id, int x, int y) {
@@ -18,6 +24,31 @@ public class CompositeComponent extends Components {
     public void add(Components c) {
         if (c == null) return;
         children.add(c);
+        c.addParent(this);
+        thaw();
+        markDirty();
+    }
+
+    /** Re-registers this group (and groups below it) with its children, e.g. after an undo. */
+    public void relink() {
+        for (Components c : children) {
+            c.addParent(this);
+            if (c instanceof CompositeComponent group) group.relink();
+        }
+        thaw();
+        dirty = false; // force markDirty to propagate
+        markDirty();
+    }
+
+    /** Opposite of {@link #relink()} for this group only: its children stop reporting to it. */
+    public void unlink() {
+        for (Components c : children) c.removeParent(this);
+    }
+
+    void markDirty() {
+        if (dirty) return; // ancestors of a dirty group are already dirty
+        dirty = true;
+        invalidateImpedance();
     }
 
     public List<Components> getChildren() {
@@ -25,7 +56,10 @@ public class CompositeComponent extends Components {
     }
 
     public void setMode(Mode mode) {
-        if (mode != null) this.mode = mode;
+        if (mode == null || mode == this.mode) return;
+        this.mode = mode;
+        thaw();
+        markDirty();
     }
 
     public Mode getMode() {
@@ -37,30 +71,99 @@ public class CompositeComponent extends Components {
         return getImpedance(0); // DC mặc định
     }
 
+    /** Magnitude of the complex impedance, see {@link #getImpedance(double, double[])}. */
     @Override
     public double getImpedance(double frequency) {
-        if (children.isEmpty()) return Double.POSITIVE_INFINITY;
+        if (dirty || frequency != cachedFrequency) {
+            getImpedance(frequency, scratch);
+        }
+        return Double.isInfinite(cachedRe) ? Double.POSITIVE_INFINITY : Math.hypot(cachedRe, cachedIm);
+    }
+
+    @Override
+    public void getImpedance(double frequency, double[] z) {
+        if (!dirty && frequency == cachedFrequency) {
+            z[0] = cachedRe;
+            z[1] = cachedIm;
+            return;
+        }
+        evaluate(frequency, z);
+        cachedRe = z[0];
+        cachedIm = z[1];
+        cachedFrequency = frequency;
+        dirty = false;
+    }
 
+    private void evaluate(double frequency, double[] z) {
+        if (children.isEmpty()) {
+            z[0] = Double.POSITIVE_INFINITY;
+            z[1] = 0.0;
+            return;
+        }
+
+        // children write into z; the running sum lives in locals, so one array serves the whole tree
         if (mode == Mode.SERIES) {
-            double total = 0.0;
-            for (Components c : children) total += c.getImpedance(frequency);
-            return total;
-        } else { // PARALLEL
-            double inv = 0.0;
+            double re = 0.0, im = 0.0;
+            for (Components c : children) {
+                c.getImpedance(frequency, z);
+                if (Double.isInfinite(z[0])) { // open anywhere in series => open
+                    z[1] = 0.0;
+                    return;
+                }
+                re += z[0];
+                im += z[1];
+            }
+            z[0] = re;
+            z[1] = im;
+        } else { // PARALLEL: add admittances Y = 1/Z
+            double yRe = 0.0, yIm = 0.0;
             boolean hasShort = false;
 
             for (Components c : children) {
-                double z = c.getImpedance(frequency);
-                if (z <= 1e-9) hasShort = true;
-                if (!Double.isInfinite(z) && z > 0) inv += 1.0 / z;
+                c.getImpedance(frequency, z);
+                if (Double.isInfinite(z[0])) continue;
+                double mag2 = z[0] * z[0] + z[1] * z[1];
+                if (mag2 <= 1e-18) {
+                    hasShort = true;
+                    break;
+                }
+                yRe += z[0] / mag2;
+                yIm -= z[1] / mag2;
             }
 
-            if (hasShort) return 0.0;
-            if (inv == 0.0) return Double.POSITIVE_INFINITY;
-            return 1.0 / inv;
+            if (hasShort) {
+                z[0] = 0.0;
+                z[1] = 0.0;
+                return;
+            }
+            double yMag2 = yRe * yRe + yIm * yIm;
+            if (yMag2 == 0.0) {
+                z[0] = Double.POSITIVE_INFINITY;
+                z[1] = 0.0;
+                return;
+            }
+            z[0] = yRe / yMag2;
+            z[1] = -yIm / yMag2;
         }
     }
 
+    @Override
+    public CompositeComponent clone() {
+        CompositeComponent copy = (CompositeComponent) super.clone();
+        copy.children = new ArrayList<>(children);
+        copy.scratch = new double[2];
+        copy.dirty = true;
+        return copy;
+    }
+
+    // members that have not changed keep the copies earlier snapshots already hold
+    @Override
+    protected CompositeComponent freeze() {
+        CompositeComponent copy = (CompositeComponent) super.freeze();
+        copy.children.replaceAll(Components::frozen);
+        return copy;
+    }
+
     @Override
     public Rectangle getBounds() {
         if (children.isEmpty()) return new Rectangle(x, y, 0, 0);
@@ -80,7 +183,12 @@ public class CompositeComponent extends Components {
             child.draw(g2);
         }
 
-        // 2) (tuỳ chọn) vẽ khung mờ bao quanh cụm để biết đang là group
+        drawFrame(g2);
+    }
+
+    /** Faint frame around a selected group (its members are drawn separately). */
+    public void drawFrame(Graphics2D g2) {
+        // (tuỳ chọn) vẽ khung mờ bao quanh cụm để biết đang là group
         if (selected) {
             Rectangle r = getBounds();
             g2.setColor(new Color(0, 0, 0, 60));
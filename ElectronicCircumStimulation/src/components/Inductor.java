@@ -3,6 +3,7 @@ package components;
 import java.awt.*;
 
 public class Inductor extends Components {
+    private static final Color BODY = new Color(200, 200, 255);
     private double inductance; 
 
     public Inductor(String id, int x, int y, double inductance) {
@@ -15,13 +16,27 @@ public class Inductor extends Components {
         return inductance;
     }
 
+    public void setInductance(double inductance) {
+        this.inductance = inductance;
+        invalidateImpedance();
+    }
+
     @Override
     public void draw(Graphics2D g2) {
-        draw(g2, new Color(200, 200, 255)); 
+        draw(g2, bodyColor());
 
-        String label = "L: " + formatDouble(inductance) + "H";
         g2.setFont(g2.getFont().deriveFont(12f));
-        drawCenteredString(g2, label, new Rectangle(x - width / 2, y - height / 2, width, height));
+        drawCenteredString(g2, getLabel(), new Rectangle(x - width / 2, y - height / 2, width, height));
+    }
+
+    @Override
+    protected Color bodyColor() {
+        return BODY;
+    }
+
+    @Override
+    protected String formatLabel() {
+        return "L: " + formatDouble(inductance) + "H";
     }
 
     private void drawCenteredString(Graphics2D g2, String text, Rectangle rect) {
@@ -45,9 +60,15 @@ public class Inductor extends Components {
     }
     @Override
     public double getImpedance(double frequency) {
-        // Z_l = 2 * pi * f * L
-        // Plus any internal resistance (usually small)
-        return (2.0 * Math.PI * frequency * inductance) + resistanceOhms;
+        // |Z| = |R + j * 2 * pi * f * L|
+        // R is the internal resistance (usually small)
+        return Math.hypot(resistanceOhms, 2.0 * Math.PI * frequency * inductance);
+    }
+
+    @Override
+    public void getImpedance(double frequency, double[] z) {
+        z[0] = resistanceOhms;
+        z[1] = 2.0 * Math.PI * frequency * inductance;
     }
     @Override
     public Rectangle getBounds() {
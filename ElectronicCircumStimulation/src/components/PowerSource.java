@@ -19,7 +19,7 @@ public class PowerSource extends Components {
 
     @Override
     public void draw(Graphics2D g2) {
-        draw(g2, java.awt.Color.GREEN);
+        draw(g2, bodyColor());
         String vLabel = formatDouble(voltage) + "V";
         String fLabel = formatDouble(frequency) + "Hz";
         FontMetrics fm = g2.getFontMetrics();
@@ -34,6 +34,17 @@ public class PowerSource extends Components {
         g2.drawString(fLabel, fx, fy);
     }
 
+    @Override
+    protected java.awt.Color bodyColor() {
+        return java.awt.Color.GREEN;
+    }
+
+    // both lines, so the sprite changes with either value
+    @Override
+    protected String formatLabel() {
+        return formatDouble(voltage) + "V " + formatDouble(frequency) + "Hz";
+    }
+
     private String formatDouble(double d) {
         if (d == (long) d) {
             return String.format("%d", (long) d);
@@ -60,9 +71,24 @@ public class PowerSource extends Components {
         return voltage;
     }
 
+    public void setVoltage(double voltage) {
+        this.voltage = voltage;
+        invalidateImpedance(); // impedance is unchanged, but bump the revision for cached programs
+    }
+
+    public void setFrequency(double frequency) {
+        this.frequency = frequency;
+        invalidateImpedance();
+    }
+
 	@Override
 	public double getImpedance(double frequency) {
-		// TODO Auto-generated method stub
-		return 0;
+		return 0; // ideal source
+	}
+
+	@Override
+	public void getImpedance(double frequency, double[] z) {
+		z[0] = 0.0;
+		z[1] = 0.0;
 	}
 }
@@ -17,7 +17,12 @@ public class Resistor extends Components {
     @Override
     public void draw(Graphics2D g2) {
         super.draw(g2);
-        drawCenteredString(g2, "R: " + (int)resistance + "Ω", new Rectangle(x - width/2, y - height/2, width, height));
+        drawCenteredString(g2, getLabel(), new Rectangle(x - width/2, y - height/2, width, height));
+    }
+
+    @Override
+    protected String formatLabel() {
+        return "R: " + (int)resistance + "Ω";
     }
 
     private void drawCenteredString(Graphics2D g2, String text, Rectangle rect) {
@@ -34,6 +39,7 @@ public class Resistor extends Components {
 
     public void setResistance(double r) {
         this.resistance = r;
+        invalidateImpedance();
     }
 
 	@Override
@@ -45,4 +51,10 @@ public class Resistor extends Components {
 	    return resistance; // R không phụ thuộc tần số
 	}
 
+	@Override
+	public void getImpedance(double frequency, double[] z) {
+	    z[0] = resistance;
+	    z[1] = 0.0;
+	}
+
 }
\ No newline at end of file
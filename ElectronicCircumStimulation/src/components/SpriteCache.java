@@ -0,0 +1,113 @@
+package components;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pre-rendered component bodies, blitted instead of drawn.
+ *
+ * A sprite is whatever {@link Components#draw(Graphics2D)} paints (body, label and selection
+ * outline), rendered once per distinct look: type, label (which carries the value), selected, lit,
+ * font and device scale. Identical parts share one sprite. A value change gives the part a new
+ * label and therefore a new key; the sprite it no longer uses ages out of the LRU order, which
+ * bounds the cache to {@code capacity} images.
+ *
+ * The scale in the key is the device scale rounded up to a power of √2, so zooming does not make
+ * new sprites on every wheel step; in between, a sprite is drawn shrunk by at most √2, filtered.
+ */
+public class SpriteCache {
+    /** Selection outline reaches 3 px outside the bounds; keep a pixel spare for antialiasing. */
+    static final int PAD = 4;
+
+    record Key(Class<?> type, String label, boolean selected, boolean lit, int width, int height,
+               Font font, double scale) { }
+
+    private final Map<Key, BufferedImage> sprites;
+    private long hits, misses;
+    private double lastScale = Double.NaN, lastStep; // a frame draws every part at the same scale
+
+    public SpriteCache(int capacity) {
+        this.sprites = new LinkedHashMap<>(capacity * 4 / 3 + 1, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, BufferedImage> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /** Draws c (groups: members, then the group frame) using sprites for every leaf part. */
+    public void draw(Graphics2D g2, Components c) {
+        if (c instanceof CompositeComponent group) {
+            List<Components> children = group.getChildren();
+            for (int i = 0; i < children.size(); i++) draw(g2, children.get(i));
+            group.drawFrame(g2);
+            return;
+        }
+        double scale = g2.getTransform().getScaleX();
+        if (scale != lastScale) {
+            lastStep = step(scale);
+            lastScale = scale;
+        }
+        double step = lastStep;
+        Key key = c.spriteKey(g2.getFont(), step);
+        BufferedImage img = sprites.get(key);
+        if (img == null) {
+            misses++;
+            img = render(c, g2, step);
+            sprites.put(key, img);
+        } else {
+            hits++;
+        }
+        Object interpolation = null;
+        if (step != scale) {
+            interpolation = g2.getRenderingHint(RenderingHints.KEY_INTERPOLATION);
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        }
+        g2.drawImage(img, c.x - c.width / 2 - PAD, c.y - c.height / 2 - PAD,
+                c.width + 2 * PAD, c.height + 2 * PAD, null);
+        if (step != scale) {
+            g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION,
+                    (interpolation != null) ? interpolation : RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR);
+        }
+    }
+
+    // smallest power of √2 at or above scale (a hair of tolerance, so 1.0 and 2.0 stay themselves)
+    static double step(double scale) {
+        if (!(scale > 0) || Double.isInfinite(scale)) return scale;
+        double half = Math.ceil(2.0 * Math.log(scale) / Math.log(2.0) - 1e-9); // in half octaves
+        return Math.pow(2.0, half / 2.0);
+    }
+
+    public int size() {
+        return sprites.size();
+    }
+
+    public long hits() {
+        return hits;
+    }
+
+    public long misses() {
+        return misses;
+    }
+
+    public void clear() {
+        sprites.clear();
+    }
+
+    private static BufferedImage render(Components c, Graphics2D target, double scale) {
+        int w = c.width + 2 * PAD, h = c.height + 2 * PAD;
+        BufferedImage img = new BufferedImage((int) Math.ceil(w * scale), (int) Math.ceil(h * scale),
+                BufferedImage.TYPE_INT_ARGB);
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHints(target.getRenderingHints());
+        g.setFont(target.getFont());
+        g.scale(scale, scale);
+        g.translate(PAD - (c.x - c.width / 2), PAD - (c.y - c.height / 2));
+        c.draw(g);
+        g.dispose();
+        return img;
+    }
+}
@@ -4,6 +4,9 @@ import java.awt.*;
 
 public class Wire implements Cloneable {
     public enum Type { SERIES, PARALLEL }
+    private static final int NODE_OFFSET = 40; // parallel nodes sit this far outside the parts
+    private static final int NODE_R = 6;
+    private static final int PAD = NODE_R + 2;  // dots, stroke and antialiasing around the lines
     private Components a, b;
     private Type type;
 
@@ -31,6 +34,71 @@ public class Wire implements Cloneable {
         b = componentMap.get(b.getId());
     }
 
+    /** Area the wire covers when drawn. */
+    public Rectangle getBounds() {
+        return getBounds(a.getBounds(), b.getBounds());
+    }
+
+    /** Area the wire would cover with ends ra and rb, e.g. the bounds of an end before it moved. */
+    public Rectangle getBounds(Rectangle ra, Rectangle rb) {
+        int aY = ra.y + ra.height / 2;
+        int bY = rb.y + rb.height / 2;
+        Rectangle r;
+        if (type == Type.SERIES) {
+            r = new Rectangle(ra.x + ra.width, aY, 0, 0);
+            r.add(rb.x, bY);
+        } else {
+            int leftX = Math.min(ra.x, rb.x) - NODE_OFFSET;
+            int rightX = Math.max(ra.x + ra.width, rb.x + rb.width) + NODE_OFFSET;
+            r = new Rectangle(leftX, Math.min(aY, bY), rightX - leftX, Math.abs(aY - bY));
+        }
+        r.grow(PAD, PAD);
+        return r;
+    }
+
+    /** Same as {@code area.intersects(getBounds())}, without allocating for plain parts. */
+    public boolean intersects(Rectangle area) {
+        if (a instanceof CompositeComponent || b instanceof CompositeComponent) {
+            return area.intersects(getBounds());
+        }
+        // the arithmetic of getBounds(a.getBounds(), b.getBounds())
+        int aLeft = a.x - a.width / 2, bLeft = b.x - b.width / 2;
+        int aTop = a.y - a.height / 2, bTop = b.y - b.height / 2;
+        int aY = aTop + a.height / 2, bY = bTop + b.height / 2;
+        int x0, x1;
+        if (type == Type.SERIES) {
+            x0 = Math.min(aLeft + a.width, bLeft);
+            x1 = Math.max(aLeft + a.width, bLeft);
+        } else {
+            x0 = Math.min(aLeft, bLeft) - NODE_OFFSET;
+            x1 = Math.max(aLeft + a.width, bLeft + b.width) + NODE_OFFSET;
+        }
+        int y0 = Math.min(aY, bY), y1 = Math.max(aY, bY);
+        return area.intersects(x0 - PAD, y0 - PAD, x1 - x0 + 2 * PAD, y1 - y0 + 2 * PAD);
+    }
+
+    /**
+     * Level-of-detail drawing for far zoom: one thin line per connection, in device space at
+     * screen = world * scale + (dx, dy) (see {@link Components#drawPlain}).
+     */
+    public void drawPlain(Graphics2D g2, double scale, double dx, double dy) {
+        Rectangle ra = a.getBounds();
+        Rectangle rb = b.getBounds();
+        int aY = (int) ((ra.y + ra.height / 2) * scale + dy);
+        int bY = (int) ((rb.y + rb.height / 2) * scale + dy);
+        g2.setColor(Color.BLACK);
+        if (type == Type.SERIES) {
+            g2.drawLine((int) ((ra.x + ra.width) * scale + dx), aY, (int) (rb.x * scale + dx), bY);
+        } else {
+            int leftX = (int) ((Math.min(ra.x, rb.x) - NODE_OFFSET) * scale + dx);
+            int rightX = (int) ((Math.max(ra.x + ra.width, rb.x + rb.width) + NODE_OFFSET) * scale + dx);
+            g2.drawLine(leftX, aY, rightX, aY);
+            g2.drawLine(leftX, bY, rightX, bY);
+            g2.drawLine(leftX, aY, leftX, bY);
+            g2.drawLine(rightX, aY, rightX, bY);
+        }
+    }
+
     public void draw(Graphics2D g2) {
         Rectangle ra = a.getBounds();
         Rectangle rb = b.getBounds();
@@ -53,15 +121,15 @@ public class Wire implements Cloneable {
         // ===== PARALLEL: 2 NODE + 2 NHÁNH =====
 
         // leftNode và rightNode là 2 "đầu mạch" chung
-        int leftX  = Math.min(aL.x, bL.x) - 40;
-        int rightX = Math.max(aR.x, bR.x) + 40;
+        int leftX  = Math.min(aL.x, bL.x) - NODE_OFFSET;
+        int rightX = Math.max(aR.x, bR.x) + NODE_OFFSET;
 
         // node Y lấy trung bình để nhìn cân
         int topY = Math.min(aL.y, bL.y);
         int botY = Math.max(aL.y, bL.y);
 
         // Vẽ 2 node (chấm đen)
-        int nodeR = 6;
+        int nodeR = NODE_R;
         g2.fillOval(leftX - nodeR,  (topY + botY) / 2 - nodeR, nodeR * 2, nodeR * 2);
         g2.fillOval(rightX - nodeR, (topY + botY) / 2 - nodeR, nodeR * 2, nodeR * 2);
 
@@ -1,17 +1,78 @@
 package controller;
 
-import model.CircuitMemento;
+import io.BoardFile;
+import io.Journal;
+import io.SpiceFile;
+import metrics.Probe;
 import model.CircuitModel;
+import model.CircuitSnapshot;
 import view.CircuitPanel;
 import components.*;
-
+import simulation.BulbState;
+import simulation.CompiledCircuit;
+import simulation.FrequencySweep;
+import simulation.MnaSolver;
+import simulation.MonteCarlo;
+import simulation.Netlist;
+
+import javax.swing.AbstractAction;
+import javax.swing.JComponent;
+import javax.swing.JFileChooser;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
 import java.awt.event.*;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.DoubleConsumer;
 
 public class CircuitController {
 
     private final CircuitModel model;
     private final CircuitPanel view;
+    private final SimulationWorker simulation = new SimulationWorker();
+    private final SimulationWorker tolerance = new SimulationWorker("tolerance-worker");
+    private final SimulationWorker bode = new SimulationWorker("bode-worker");
+    // worker thread only
+    private final MnaSolver mnaSolver = new MnaSolver();
+    private final double[] zTotal = new double[2]; // complex Z of the root, reused every update
+    private CompositeComponent programRoot; // frozen root the program last read its parameters from
+    private int programVersion;             // topology version it was compiled at
+    private CompiledCircuit program;
+    // EDT only
+    private Outcome lastOutcome;
+
+    // updateCircuit is the EDT share of a change, simulate the worker share
+    private static final Probe UPDATE = Probe.named("updateCircuit");
+    private static final Probe SIMULATE = Probe.named("simulate");
+
+    // Bode sweep range
+    private static final double BODE_FROM_HZ = 1.0;
+    private static final double BODE_TO_HZ = 1e6;
+    private static final int BODE_POINTS = 400;
+
+    // Monte Carlo tolerance analysis
+    private static final double TOLERANCE = 0.05;
+    private static final int TOLERANCE_SAMPLES = 20_000;
+    private static final long TOLERANCE_SEED = 1L;
+
+    // Board navigation: wheel zooms by this factor per notch, dragging empty board pans
+    private static final double ZOOM_STEP = 1.1;
+    private Point panAnchor = null;
+    // where the dragged part was when the drag started, recorded as one move on release
+    private Point dragStart = null;
+
+    // Board files are read and written off the EDT, one at a time; the chooser is made on first use
+    private final ExecutorService files = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "board-files");
+        t.setDaemon(true);
+        return t;
+    });
+    private JFileChooser chooser;
 
     // Bulb mode: bật khi user chọn 1 trong 2 nút bulbParallel/bulbSeries
     private boolean bulbMode = false;
@@ -23,16 +84,25 @@ public class CircuitController {
         view.seriesBtn.addActionListener(e -> connectSelected(Wire.Type.SERIES));
         view.parallelBtn.addActionListener(e -> connectSelected(Wire.Type.PARALLEL));
         view.undoBtn.addActionListener(e -> undo());
+        bindKey("ctrl Z", "undo", this::undo);
+        bindKey("ctrl Y", "redo", this::redo);
+        bindKey("ctrl shift Z", "redo", this::redo);
+        view.bodeBtn.addActionListener(e -> showBode());
+        view.toleranceBtn.addActionListener(e -> showTolerance());
+        view.openBtn.addActionListener(e -> open());
+        view.saveBtn.addActionListener(e -> save());
+        bindKey("ctrl O", "open", this::open);
+        bindKey("ctrl S", "save", this::save);
 
         // ===== Bulb toggles -> bật bulbMode + update dòng 2 =====
         view.bulbParallelBtn.addActionListener(e -> {
             bulbMode = true;
-            updateCircuit();
+            refreshLabels();
             view.repaint();
         });
         view.bulbSeriesBtn.addActionListener(e -> {
             bulbMode = true;
-            updateCircuit();
+            refreshLabels();
             view.repaint();
         });
 
@@ -78,20 +148,17 @@ public class CircuitController {
                         }
                     }
 
-                    saveState();
-
-                    Components c = Toolbox.create(
-                            t,
+                    // top centre of the board as currently seen
+                    Point at = view.viewport.toWorld(new Point(
                             view.boardRect.x + view.boardRect.width / 2,
-                            view.boardRect.y + 40,
-                            inputs
-                    );
+                            view.boardRect.y + 40));
+                    Components c = Toolbox.create(t, at.x, at.y, inputs);
 
                     if (c == null) return;
 
-                    model.circuit.addComponent(c);
+                    model.history.add(c);
                     clearSelection();
-                    c.setSelected(true);
+                    model.circuit.setSelected(c, true);
                     model.firstSelected = c;
 
                     updateCircuit();
@@ -99,70 +166,125 @@ public class CircuitController {
                     return;
                 }
 
+                if (!view.boardRect.contains(p)) return;
+                Point w = view.viewport.toWorld(p);
+
                 // ===== CLICK COMPONENT =====
-                Components hit = model.circuit.selectableAt(p);
+                Components hit = model.circuit.selectableAt(w.x, w.y);
                 if (hit != null) {
                     model.dragging = hit;
+                    dragStart = hit.getPosition();
                     model.dragOffset = new Point(
-                            p.x - hit.getPosition().x,
-                            p.y - hit.getPosition().y
+                            w.x - hit.getPosition().x,
+                            w.y - hit.getPosition().y
                     );
 
                     selectWithoutCtrl(hit);
 
-                    updateCircuit();
-                    view.repaint();
+                    refreshLabels();
                     return;
                 }
 
-                // ===== CLICK EMPTY BOARD =====
-                if (view.boardRect.contains(p)) {
-                    clearSelection();
-                    updateCircuit();
-                    view.repaint();
-                }
+                // ===== CLICK EMPTY BOARD: deselect, dragging pans =====
+                clearSelection();
+                refreshLabels();
+                panAnchor = p;
+            }
+
+            @Override
+            public void mouseClicked(MouseEvent e) {
+                // the press before this already picked the part and the release ended its (empty) drag
+                if (e.getClickCount() != 2 || !SwingUtilities.isLeftMouseButton(e)) return;
+                if (!view.boardRect.contains(e.getPoint())) return;
+                Point w = view.viewport.toWorld(e.getPoint());
+                Components part = model.circuit.partAt(w.x, w.y);
+                if (part != null) editValue(part);
             }
 
             @Override
             public void mouseDragged(MouseEvent e) {
+                Point p = e.getPoint();
                 if (model.dragging != null) {
-                    Point p = e.getPoint();
-                    int nx = p.x - model.dragOffset.x;
-                    int ny = p.y - model.dragOffset.y;
-
-                    nx = Math.max(view.boardRect.x + 10,
-                            Math.min(view.boardRect.x + view.boardRect.width - 10, nx));
-                    ny = Math.max(view.boardRect.y + 10,
-                            Math.min(view.boardRect.y + view.boardRect.height - 10, ny));
-
-                    model.dragging.setPosition(nx, ny);
-                    view.repaint();
+                    Point w = view.viewport.toWorld(p);
+                    int nx = w.x - model.dragOffset.x;
+                    int ny = w.y - model.dragOffset.y;
+
+                    // keep the part inside the visible board (world coordinates of its inner edge)
+                    Rectangle inner = new Rectangle(view.boardRect);
+                    inner.grow(-10, -10);
+                    Rectangle visible = view.viewport.toWorld(inner);
+                    nx = Math.max(visible.x, Math.min(visible.x + visible.width, nx));
+                    ny = Math.max(visible.y, Math.min(visible.y + visible.height, ny));
+
+                    // the view repaints just the moved part and its wires (CircuitListener)
+                    model.circuit.moveComponent(model.dragging, nx, ny);
+                } else if (panAnchor != null) {
+                    view.viewport.panBy(p.x - panAnchor.x, p.y - panAnchor.y);
+                    panAnchor = p;
+                    view.repaint(view.boardRect);
                 }
             }
 
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                if (!view.boardRect.contains(e.getPoint())) return;
+                view.viewport.zoomAt(e.getPoint(), Math.pow(ZOOM_STEP, -e.getPreciseWheelRotation()));
+                view.repaint(view.boardRect);
+            }
+
             @Override
             public void mouseReleased(MouseEvent e) {
                 Point p = e.getPoint();
+                panAnchor = null;
                 if (model.dragging != null) {
-                    if (!view.boardRect.contains(p)) {
-                        model.circuit.removeComponent(model.dragging);
+                    // a move is purely geometric; only dropping a part off the board changes the circuit
+                    boolean removed = !view.boardRect.contains(p);
+                    if (removed) {
+                        // undo puts it back where the drag started
+                        model.circuit.moveComponent(model.dragging, dragStart.x, dragStart.y);
+                        model.history.remove(model.dragging);
+                    } else {
+                        model.history.moved(model.dragging, dragStart);
                     }
                     model.dragging = null;
-                    updateCircuit();
-                    view.repaint();
+                    dragStart = null;
+                    if (removed) updateCircuit();
                 }
             }
         };
 
         view.addMouseListener(ma);
         view.addMouseMotionListener(ma);
+        view.addMouseWheelListener(ma);
 
         updateCircuit();
+        startAutosave(Journal.defaultDirectory());
+    }
+
+    // brings back the last session, then journals every edit from here on
+    private void startAutosave(Path dir) {
+        try {
+            BoardFile.Board last = Journal.recover(dir);
+            if (last != null && !last.components().isEmpty()) {
+                showBoard(last);
+                view.circuitStatsLabel.setText("Restored " + last.components().size() + " parts from the last session");
+                view.circuitStatsLabel.setForeground(new Color(70, 70, 70));
+            }
+        } catch (IOException ex) {
+            showFileError("Could not restore the last session", ex);
+        }
+        try {
+            Journal journal = Journal.start(dir, model,
+                    ex -> SwingUtilities.invokeLater(() -> showFileError("Autosave stopped", ex)));
+            Runtime.getRuntime().addShutdownHook(new Thread(journal::close, "autosave-close"));
+        } catch (IOException ex) {
+            showFileError("Autosave is off", ex);
+        }
     }
 
     private void selectWithoutCtrl(Components hit) {
         if (hit.isSelected()) {
-            hit.setSelected(false);
+            model.circuit.setSelected(hit, false);
             if (model.firstSelected == hit) model.firstSelected = null;
             if (model.secondSelected == hit) model.secondSelected = null;
 
@@ -175,22 +297,22 @@ public class CircuitController {
 
         if (model.firstSelected == null) {
             model.firstSelected = hit;
-            hit.setSelected(true);
+            model.circuit.setSelected(hit, true);
             return;
         }
 
         if (model.secondSelected == null) {
             model.secondSelected = hit;
-            hit.setSelected(true);
+            model.circuit.setSelected(hit, true);
             return;
         }
 
-        model.firstSelected.setSelected(false);
-        model.secondSelected.setSelected(false);
+        model.circuit.setSelected(model.firstSelected, false);
+        model.circuit.setSelected(model.secondSelected, false);
 
         model.firstSelected = hit;
         model.secondSelected = null;
-        hit.setSelected(true);
+        model.circuit.setSelected(hit, true);
     }
 
     private void connectSelected(Wire.Type type) {
@@ -200,44 +322,168 @@ public class CircuitController {
             return;
         }
 
-        saveState();
-
-        model.wires.add(new Wire(model.firstSelected, model.secondSelected, type));
-
-        CompositeComponent.Mode mode = (type == Wire.Type.SERIES)
-                ? CompositeComponent.Mode.SERIES
-                : CompositeComponent.Mode.PARALLEL;
-
-        model.circuit.connect(model.firstSelected, model.secondSelected, mode);
+        model.history.connect(model.firstSelected, model.secondSelected, type);
 
         updateCircuit();
         clearSelection();
         view.repaint();
     }
 
-    private void updateCircuit() {
-        // ===== 1) Source =====
-        double vSource = 0.0;
-        double fSource = 0.0;
-
-        for (Components c : model.circuit.getComponents()) {
-            if (c instanceof PowerSource ps) {
-                vSource = ps.getVoltage();
-                fSource = ps.getFrequency();
-                break;
+    // asks for a new value of part, which may sit inside a group; each dialog is one undoable edit
+    private void editValue(Components part) {
+        switch (part) {
+            case Resistor r -> {
+                Double v = view.toolboxView.promptForNewValue("Resistor", "Ohms", r.getResistanceOhms());
+                if (v == null) return;
+                model.history.changeValue(r, r::setResistance, r.getResistanceOhms(), v);
+            }
+            case Capacitor c -> {
+                Double v = view.toolboxView.promptForNewValue("Capacitor", "F", c.getCapacitance());
+                if (v == null) return;
+                model.history.changeValue(c, c::setCapacitance, c.getCapacitance(), v);
+            }
+            case Inductor l -> {
+                Double v = view.toolboxView.promptForNewValue("Inductor", "H", l.getInductance());
+                if (v == null) return;
+                model.history.changeValue(l, l::setInductance, l.getInductance(), v);
+            }
+            case PowerSource s -> {
+                double[] vf = view.toolboxView.promptForPowerSource(s.getVoltage(), s.getFrequency());
+                if (vf == null) return;
+                model.history.changeValues(s, new DoubleConsumer[] { s::setVoltage, s::setFrequency },
+                        new double[] { s.getVoltage(), s.getFrequency() }, vf);
+            }
+            default -> {
+                return; // bulbs and groups have no value to change
             }
         }
+        updateCircuit();
+    }
+
+    // What a simulation starts from, taken on the EDT in O(1): the frozen board and, while it
+    // still joins the parts, the netlist of an imported board. The worker builds the rest, so it
+    // never sees the live model; bulb is only dereferenced back on the EDT.
+    private record Snapshot(double voltage, double frequency, CircuitSnapshot board, Netlist imported,
+                            Bulb bulb, double bulbResistance) { }
+
+    // net holds frozen copies of the parts
+    private record Outcome(Snapshot in, Netlist net, MnaSolver.Result mna, double zeq, double phase) { }
+
+    /** Re-simulates after an electrical change; the labels follow once the worker is done. */
+    private void updateCircuit() {
+        long started = UPDATE.start();
+        try {
+            snapshotAndSubmit();
+        } finally {
+            UPDATE.stop(started);
+        }
+    }
+
+    private void snapshotAndSubmit() {
+        Snapshot snap = takeSnapshot();
+
+        // ===== 3) Input check: nothing to solve without a source voltage =====
+        if (snap.voltage() <= 0) {
+            simulation.cancel();
+            showResult(new Outcome(snap, null, null, Double.POSITIVE_INFINITY, 0.0));
+            return;
+        }
+
+        // ===== 4) Hand the snapshot to the worker =====
+        simulation.submit(() -> simulate(snap), this::showResult, ex -> {
+            lastOutcome = null; // the labels no longer describe the board
+            showFailure("Simulation failed", ex);
+        });
+        updateSelectionLine();
+    }
+
+    // EDT, O(1): the source and bulb as they are now and the frozen board
+    private Snapshot takeSnapshot() {
+        // ===== 1) Source =====
+        PowerSource source = model.circuit.findFirst(PowerSource.class);
+        double vSource = (source != null) ? source.getVoltage() : 0.0;
+        double fSource = (source != null) ? source.getFrequency() : 0.0;
 
         // ===== 2) Find Bulb =====
-        Bulb bulb = null;
-        for (Components c : model.circuit.getComponents()) {
-            if (c instanceof Bulb b) {
-                bulb = b;
-                break;
+        Bulb bulb = model.circuit.findFirst(Bulb.class);
+        double rBulb = (bulb != null) ? bulb.getResistanceOhms() : 0.0;
+
+        return new Snapshot(vSource, fSource, model.snapshot(), model.circuit.getNetlist(), bulb, rBulb);
+    }
+
+    // any worker: the frozen netlist of a snapshot, or null when nothing is wired
+    private static Netlist netlistOf(Snapshot in) {
+        CircuitSnapshot board = in.board();
+        Netlist net;
+        if (in.imported() != null) {
+            net = in.imported().withParts(board.getComponents()); // nothing added or removed since: same order
+        } else {
+            net = board.getWires().isEmpty() ? null : Netlist.fromWires(board.getWires());
+        }
+        return (net != null) ? net.freeze(in.frequency()) : null;
+    }
+
+    // any worker: the frozen netlist when simulate would label the board from it, otherwise null
+    private static Netlist nodalNetlistOf(Snapshot in) {
+        if (in.voltage() <= 0) return null; // no source: the labels solve nothing
+        Netlist net = netlistOf(in);
+        if (net == null) return null;
+        try {
+            new MnaSolver().compute(net, in.frequency());
+        } catch (IllegalStateException singular) {
+            return null; // the labels fall back to the tree too
+        }
+        return net;
+    }
+
+    // worker thread: MNA when the source is wired into the board, otherwise the series/parallel tree
+    private Outcome simulate(Snapshot in) {
+        long started = SIMULATE.start();
+        CircuitSnapshot board = in.board();
+        Netlist net = netlistOf(in);
+        MnaSolver.Result mna = null;
+        if (net != null) {
+            try {
+                mna = mnaSolver.compute(net, in.frequency());
+            } catch (IllegalStateException ex) {
+                mna = null; // singular board (e.g. source shorted onto itself) -> tree result
             }
         }
+        double zeq;
+        double phase = 0.0;
+        if (mna != null) {
+            zeq = mna.getImpedance();
+            phase = mna.getPhase();
+        } else if (board.getRoot() != null) {
+            programFor(board).evaluate(in.frequency(), zTotal);
+            zeq = Double.isInfinite(zTotal[0]) ? Double.POSITIVE_INFINITY : Math.hypot(zTotal[0], zTotal[1]);
+            phase = Math.toDegrees(Math.atan2(zTotal[1], zTotal[0]));
+        } else {
+            zeq = Double.POSITIVE_INFINITY;
+        }
+        SIMULATE.stop(started);
+        return new Outcome(in, net, mna, zeq, phase);
+    }
+
+    // worker thread: like Circuit.getProgram, compiled again only after a structural edit. A value
+    // edit gives the frozen root a new identity but not a new shape, so its leaves are just re-read.
+    private CompiledCircuit programFor(CircuitSnapshot board) {
+        CompositeComponent root = board.getRoot();
+        if (program == null || programVersion != board.getTopologyVersion()
+                || root != programRoot && !program.refreshParameters(root)) {
+            program = CompiledCircuit.compile(root);
+            programVersion = board.getTopologyVersion();
+        }
+        programRoot = root;
+        return program;
+    }
+
+    // EDT: write the MNA result back to the parts and fill the three label lines
+    private void showResult(Outcome o) {
+        lastOutcome = o;
+        double vSource = o.in().voltage();
+        Bulb bulb = o.in().bulb();
 
-        // ===== 3) Input check: Source voltage =====
         if (vSource <= 0) {
             view.instructionLabel.setText("U_Src: 0V | I_Total: 0.00A | Z_Total: 0.00Ω");
 
@@ -253,12 +499,14 @@ public class CircuitController {
             return;
         }
 
-        // ===== 4) Circuit root =====
-        CompositeComponent root = model.circuit.getRoot();
-        double zeq = (root != null) ? root.getImpedance(fSource) : Double.POSITIVE_INFINITY;
+        MnaSolver.Result mna = o.mna();
+        if (mna != null) MnaSolver.writeBack(o.net(), mna);
+        double zeq = o.zeq();
+        double phase = o.phase();
         double itotal = (Double.isInfinite(zeq) || zeq <= 1e-12) ? 0.0 : (vSource / zeq);
 
         String zText = Double.isInfinite(zeq) ? "∞" : String.format("%.2f", zeq);
+        if (!Double.isInfinite(zeq) && Math.abs(phase) >= 0.5) zText += String.format("\u2220%.0f\u00B0", phase);
         view.instructionLabel.setText(String.format(
                 "U_Src: %.0fV | I_Total: %.2fA | Z_Total: %s\u03A9",
                 vSource, itotal, zText
@@ -278,23 +526,25 @@ public class CircuitController {
                 view.circuitStatsLabel.setForeground(Color.RED);
             } else {
                 // P xấp xỉ: P = I^2 * Rbulb
-                double rBulb = bulb.getResistanceOhms();
-                double pReal = itotal * itotal * rBulb;
-                double pRated = bulb.getPowerLimit();
-                if (pRated <= 1e-9) pRated = 1.0;
-
+                double rBulb = o.in().bulbResistance();
+                double iBulb = (mna != null) ? bulb.getCurrentFlow() : itotal;
+                double pReal = iBulb * iBulb * rBulb;
                 String stateText;
                 Color stateColor;
 
-                if (pReal >= pRated * 1.5) {
-                    stateText = "BLOWN (Cháy)";
-                    stateColor = Color.RED;
-                } else if (pReal >= pRated * 0.4) {
-                    stateText = "BRIGHT (Sáng)";
-                    stateColor = new Color(0, 153, 0);
-                } else {
-                    stateText = "OFF (Yếu/Tắt)";
-                    stateColor = Color.DARK_GRAY;
+                switch (BulbState.classify(pReal, bulb.getPowerLimit())) {
+                    case BLOWN -> {
+                        stateText = "BLOWN (Cháy)";
+                        stateColor = Color.RED;
+                    }
+                    case BRIGHT -> {
+                        stateText = "BRIGHT (Sáng)";
+                        stateColor = new Color(0, 153, 0);
+                    }
+                    default -> {
+                        stateText = "OFF (Yếu/Tắt)";
+                        stateColor = Color.DARK_GRAY;
+                    }
                 }
 
                 view.circuitStatsLabel.setText(String.format("Bulb: %s (P: %.2fW)", stateText, pReal));
@@ -306,6 +556,102 @@ public class CircuitController {
         updateSelectionLine();
     }
 
+    /** Selection and bulb-mode changes only touch the labels: redraw them from the last result. */
+    private void refreshLabels() {
+        if (lastOutcome != null) showResult(lastOutcome);
+        else updateSelectionLine();
+    }
+
+    // Like the tolerance run: off the EDT on a snapshot, nodal when the labels are, otherwise the tree
+    private void showBode() {
+        Snapshot snap = takeSnapshot();
+        bode.submit(() -> sweep(snap), result -> {
+            if (result != null) {
+                view.showBode(result);
+            } else {
+                view.circuitStatsLabel.setText("Build a circuit first.");
+                view.circuitStatsLabel.setForeground(Color.RED);
+            }
+        }, ex -> showFailure("Bode sweep failed", ex));
+    }
+
+    // bode worker: the bulb is the probe; null when there is nothing to sweep
+    private static FrequencySweep.Result sweep(Snapshot in) {
+        double[] freqs = FrequencySweep.logarithmic(BODE_FROM_HZ, BODE_TO_HZ, BODE_POINTS);
+        Netlist net = nodalNetlistOf(in);
+        if (net != null) {
+            for (int e = 0; e < net.elementCount(); e++) {
+                if (in.bulb() != null && net.partOf(e) != null && net.partOf(e).getOriginal() == in.bulb()) {
+                    return FrequencySweep.run(net, freqs, e);
+                }
+            }
+            return FrequencySweep.run(net, freqs);
+        }
+        CompositeComponent root = in.board().getRoot();
+        if (root == null) return null;
+        Components bulb = (in.bulb() != null) ? frozenCopyOf(root, in.bulb()) : null;
+        return (bulb != null) ? FrequencySweep.run(root, freqs, bulb) : FrequencySweep.run(root, freqs);
+    }
+
+    // the copy of live part c inside frozen tree root, or null
+    private static Components frozenCopyOf(Components root, Components c) {
+        if (root.getOriginal() == c) return root;
+        if (root instanceof CompositeComponent group) {
+            for (Components child : group.getChildren()) {
+                Components found = frozenCopyOf(child, c);
+                if (found != null) return found;
+            }
+        }
+        return null;
+    }
+
+    // Around the board as it is now, on the same model the labels use. The samples run on their own
+    // worker from a snapshot taken here, so the EDT stays free; a newer click supersedes this one.
+    private void showTolerance() {
+        Snapshot snap = takeSnapshot();
+        if (snap.voltage() <= 0) {
+            buildFirst();
+            return;
+        }
+        double rated = (snap.bulb() != null) ? snap.bulb().getPowerLimit() : 1.0;
+        tolerance.submit(() -> sampleTolerance(snap, rated), result -> {
+            if (result != null) view.showTolerance(result);
+            else buildFirst();
+        }, ex -> showFailure("Tolerance analysis failed", ex));
+    }
+
+    // tolerance worker: nodal when the labels are, otherwise the tree; null if neither
+    private static MonteCarlo.Result sampleTolerance(Snapshot in, double rated) {
+        Netlist net = nodalNetlistOf(in);
+        if (net != null) {
+            int bulbElement = -1;
+            for (int e = 0; e < net.elementCount() && bulbElement < 0; e++) {
+                if (in.bulb() != null && net.partOf(e) != null && net.partOf(e).getOriginal() == in.bulb()) bulbElement = e;
+            }
+            return MonteCarlo.run(net, in.voltage(), bulbElement, rated, TOLERANCE, TOLERANCE_SAMPLES, TOLERANCE_SEED);
+        }
+        CompositeComponent root = in.board().getRoot();
+        if (root == null) return null;
+        CompiledCircuit program = CompiledCircuit.compile(root); // its own: the simulation worker patches its program
+        int bulbIndex = -1;
+        for (int i = 0; i < program.leafCount() && bulbIndex < 0; i++) {
+            if (in.bulb() != null && program.leaf(i).getOriginal() == in.bulb()) bulbIndex = i;
+        }
+        return MonteCarlo.run(program, in.frequency(), in.voltage(), bulbIndex, rated, TOLERANCE, TOLERANCE_SAMPLES,
+                TOLERANCE_SEED);
+    }
+
+    private void showFailure(String what, RuntimeException ex) {
+        String msg = (ex.getMessage() != null) ? ex.getMessage() : ex.toString();
+        view.circuitStatsLabel.setText(what + ": " + msg);
+        view.circuitStatsLabel.setForeground(Color.RED);
+    }
+
+    private void buildFirst() {
+        view.circuitStatsLabel.setText("Build a circuit with a source first.");
+        view.circuitStatsLabel.setForeground(Color.RED);
+    }
+
     private void updateSelectionLine() {
         if (model.firstSelected != null) {
             view.componentValuesLabel.setText("Selected: " + model.firstSelected.getId());
@@ -314,28 +660,123 @@ public class CircuitController {
         }
     }
 
+    // selection is not part of the history: edits find and leave every part unselected
     private void undo() {
-        if (model.undoStack.isEmpty()) return;
-        CircuitMemento m = model.undoStack.remove(model.undoStack.size() - 1);
-        model.redoStack.add(new CircuitMemento(model.circuit, model.wires));
-        restoreState(m);
-        view.repaint();
+        if (model.dragging != null || !model.history.canUndo()) return;
+        clearSelection();
+        model.history.undo();
+        updateCircuit();
     }
 
-    private void saveState() {
-        model.redoStack.clear();
-        model.undoStack.add(new CircuitMemento(model.circuit, model.wires));
+    private void redo() {
+        if (model.dragging != null || !model.history.canRedo()) return;
+        clearSelection();
+        model.history.redo();
+        updateCircuit();
     }
 
-    private void restoreState(CircuitMemento memento) {
-        model.circuit.setComponents(memento.getComponents());
-        model.wires.clear();
-        model.wires.addAll(memento.getWires());
+    private void open() {
+        if (model.dragging != null) return;
+        Path path = choosePath(false);
+        if (path == null) return;
+        files.execute(() -> {
+            try {
+                if (SpiceFile.isNetlist(path)) {
+                    SpiceFile netlist = SpiceFile.read(path);
+                    List<Components> parts = netlist.parts();
+                    Netlist net = netlist.connect(parts);
+                    SwingUtilities.invokeLater(() -> {
+                        model.importNetlist(parts, net);
+                        for (Components c : parts) reserveIds(c);
+                        updateCircuit();
+                        view.repaint();
+                        // solved from the file's nodes; the editor's wires cannot draw them
+                        view.circuitStatsLabel.setText("Imported " + parts.size() + " parts from "
+                                + path.getFileName() + " (connections not drawn)");
+                        view.circuitStatsLabel.setForeground(new Color(70, 70, 70));
+                    });
+                    return;
+                }
+                BoardFile.Board board = BoardFile.read(path);
+                SwingUtilities.invokeLater(() -> showBoard(board));
+            } catch (IOException ex) {
+                SwingUtilities.invokeLater(() -> showFileError("Could not open " + path.getFileName(), ex));
+            }
+        });
+    }
+
+    // the board only changes here, on the EDT; a save still running keeps writing its snapshot
+    private void showBoard(BoardFile.Board board) {
+        model.replaceBoard(board.components(), board.root(), board.wires());
+        for (Components c : board.components()) reserveIds(c);
         updateCircuit();
+        view.repaint();
+    }
+
+    private void save() {
+        Path path = choosePath(true);
+        if (path == null) return;
+        CircuitSnapshot board = model.snapshot();
+        files.execute(() -> {
+            try {
+                BoardFile.write(path, board);
+                SwingUtilities.invokeLater(() -> {
+                    view.circuitStatsLabel.setText("Saved " + path.getFileName());
+                    view.circuitStatsLabel.setForeground(new Color(70, 70, 70));
+                });
+            } catch (IOException | IllegalArgumentException ex) {
+                SwingUtilities.invokeLater(() -> showFileError("Could not save " + path.getFileName(), ex));
+            }
+        });
+    }
+
+    private Path choosePath(boolean save) {
+        if (chooser == null) {
+            chooser = new JFileChooser();
+        }
+        // netlists can be imported but not saved
+        chooser.resetChoosableFileFilters();
+        FileNameExtensionFilter shown = new FileNameExtensionFilter(
+                "Circuit boards (*." + BoardFile.EXTENSION + ")", BoardFile.EXTENSION);
+        chooser.addChoosableFileFilter(shown);
+        if (!save) {
+            shown = new FileNameExtensionFilter(
+                    "Boards and SPICE netlists", BoardFile.EXTENSION, "cir", "sp", "spice", "net");
+            chooser.addChoosableFileFilter(shown);
+        }
+        chooser.setFileFilter(shown);
+        int answer = save ? chooser.showSaveDialog(view) : chooser.showOpenDialog(view);
+        if (answer != JFileChooser.APPROVE_OPTION) return null;
+        Path path = chooser.getSelectedFile().toPath();
+        String name = path.getFileName().toString();
+        if (save && !name.contains(".")) path = path.resolveSibling(name + "." + BoardFile.EXTENSION);
+        return path;
+    }
+
+    private void showFileError(String what, Exception ex) {
+        view.circuitStatsLabel.setText(what + ": " + ex.getMessage());
+        view.circuitStatsLabel.setForeground(Color.RED);
+    }
+
+    private static void reserveIds(Components c) {
+        Toolbox.reserveId(c.getId());
+        if (c instanceof CompositeComponent group) {
+            for (Components child : group.getChildren()) reserveIds(child);
+        }
+    }
+
+    private void bindKey(String key, String name, Runnable action) {
+        view.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke(key), name);
+        view.getActionMap().put(name, new AbstractAction() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                action.run();
+            }
+        });
     }
 
     private void clearSelection() {
-        for (Components c : model.circuit.getComponents()) c.setSelected(false);
+        for (Components c : model.circuit.getComponents()) model.circuit.setSelected(c, false);
         model.firstSelected = null;
         model.secondSelected = null;
     }
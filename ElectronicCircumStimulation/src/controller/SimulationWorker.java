@@ -0,0 +1,66 @@
+package controller;
+
+import javax.swing.SwingUtilities;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Runs simulations on one background thread, latest request wins.
+ *
+ * Every {@link #submit} supersedes the ones before it: a superseded task that has not started is
+ * skipped, one that is running finishes but its result is dropped, so only the newest result ever
+ * reaches the EDT. Tasks must only read data captured on the EDT (see {@code Netlist.freeze}),
+ * never the live model.
+ */
+public class SimulationWorker {
+    private static final System.Logger LOG = System.getLogger(SimulationWorker.class.getName());
+
+    private final ExecutorService executor;
+    private final AtomicLong generation = new AtomicLong();
+
+    public SimulationWorker() {
+        this("simulation-worker");
+    }
+
+    /** A worker whose thread has the given name, e.g. for a second, independent kind of task. */
+    public SimulationWorker(String threadName) {
+        executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, threadName);
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Runs task off the EDT and hands its result to onResult on the EDT, unless superseded. If
+     * the task throws, the exception is logged and handed to onFailure on the EDT instead.
+     */
+    public <T> void submit(Supplier<T> task, Consumer<T> onResult, Consumer<RuntimeException> onFailure) {
+        long gen = generation.incrementAndGet();
+        executor.execute(() -> {
+            if (generation.get() != gen) return;
+            T result;
+            try {
+                result = task.get();
+            } catch (RuntimeException ex) {
+                LOG.log(System.Logger.Level.ERROR, Thread.currentThread().getName() + " task failed", ex);
+                SwingUtilities.invokeLater(() -> {
+                    if (generation.get() == gen) onFailure.accept(ex);
+                });
+                return;
+            }
+            if (generation.get() != gen) return;
+            SwingUtilities.invokeLater(() -> {
+                if (generation.get() == gen) onResult.accept(result);
+            });
+        });
+    }
+
+    /** Drops whatever is queued or running, e.g. because the EDT already knows the answer. */
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+}
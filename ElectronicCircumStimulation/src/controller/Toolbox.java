@@ -7,6 +7,19 @@ public class Toolbox {
 
     private static int counter = 1;
 
+    /** Keeps new ids clear of an existing one such as "R12" (e.g. from an opened file). */
+    public static void reserveId(String id) {
+        if (id == null || id.length() < 2) return;
+        for (int i = 1; i < id.length(); i++) {
+            if (!Character.isDigit(id.charAt(i))) return;
+        }
+        try {
+            counter = Math.max(counter, Integer.parseInt(id.substring(1)) + 1);
+        } catch (NumberFormatException tooLong) {
+            // not one of ours
+        }
+    }
+
     // Updated create method: It accepts values as arguments, instead of asking for them.
     public static Components create(Tool tool, int x, int y, double... params) {
         String id = tool.name().substring(0, 1) + counter++;
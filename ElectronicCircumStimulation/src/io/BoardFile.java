@@ -0,0 +1,268 @@
+package io;
+
+import components.*;
+import model.CircuitSnapshot;
+
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saved boards: a binary file of fixed-size little-endian records, read through a memory map so
+ * that opening one costs about as much as building its parts.
+ *
+ * <pre>
+ *   header   28 bytes  magic "ECSB", u16 version, u16 0, then int counts of strings, parts and
+ *                      wires, the root part (-1: none saved) and an int 0
+ *   strings            per string an int byte length and its UTF-8 bytes; ids point in here,
+ *                      and equal ids are stored once
+ *   parts    40 bytes  kind, 0, u16 0, int id, int x, int y, int members (groups), int 0,
+ *                      double value, double second value (see {@link #kind})
+ *   wires    12 bytes  int part, int part, byte type, 3 bytes 0
+ * </pre>
+ * Parts are in post-order: a group follows its members, so reading them onto a stack leaves
+ * the top-level parts on it in drawing order. Wires and the root refer to parts by position.
+ * Positions, values and the grouping are saved; selection and simulation results are not.
+ * A reader takes any version up to {@link #VERSION} and refuses newer ones.
+ */
+public final class BoardFile {
+    public static final int VERSION = 1;
+    public static final String EXTENSION = "board";
+
+    private static final int MAGIC = 'E' | 'C' << 8 | 'S' << 16 | 'B' << 24;
+    private static final int HEADER_BYTES = 28;
+    static final int PART_BYTES = 40;
+    private static final int WIRE_BYTES = 12;
+
+    // part kinds
+    private static final byte SOURCE = 0, RESISTOR = 1, CAPACITOR = 2, INDUCTOR = 3, BULB = 4,
+            SERIES = 5, PARALLEL = 6;
+
+    /** What a file holds, ready to put on a board. */
+    public record Board(List<Components> components, CompositeComponent root, List<Wire> wires) { }
+
+    private BoardFile() {
+    }
+
+    /**
+     * Writes a snapshot to path, which is only replaced once the whole file is written. Any
+     * thread may call this.
+     */
+    public static void write(Path path, CircuitSnapshot board) throws IOException {
+        // parts in post-order; only wire ends need to be looked up by their number afterwards
+        List<Wire> wires = board.getWires();
+        Map<Components, Integer> number = new IdentityHashMap<>();
+        for (Wire w : wires) {
+            number.put(w.getA(), -1);
+            number.put(w.getB(), -1);
+        }
+        List<Components> parts = new ArrayList<>();
+        int root = -1;
+        for (Components c : board.getComponents()) {
+            number(c, parts, number);
+            if (c == board.getRoot()) root = parts.size() - 1;
+        }
+
+        Map<String, Integer> interned = new HashMap<>();
+        List<byte[]> strings = new ArrayList<>();
+        int[] ids = new int[parts.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = interned.computeIfAbsent(parts.get(i).getId(), s -> {
+                strings.add(s.getBytes(StandardCharsets.UTF_8));
+                return strings.size() - 1;
+            });
+        }
+
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buf = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+            buf.putInt(MAGIC).putShort((short) VERSION).putShort((short) 0)
+                    .putInt(strings.size()).putInt(parts.size()).putInt(wires.size())
+                    .putInt(root).putInt(0);
+
+            for (byte[] s : strings) {
+                room(ch, buf, 4);
+                buf.putInt(s.length);
+                for (int at = 0; at < s.length; ) { // ids are short, but nothing says they must be
+                    room(ch, buf, 1);
+                    int n = Math.min(s.length - at, buf.remaining());
+                    buf.put(s, at, n);
+                    at += n;
+                }
+            }
+            for (int i = 0; i < ids.length; i++) {
+                room(ch, buf, PART_BYTES);
+                putPart(buf, parts.get(i), ids[i]);
+            }
+            for (Wire w : wires) {
+                room(ch, buf, WIRE_BYTES);
+                buf.putInt(number.get(w.getA())).putInt(number.get(w.getB()))
+                        .put((byte) w.getType().ordinal()).put((byte) 0).putShort((short) 0);
+            }
+            flush(ch, buf);
+        }
+        try {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /** Reads a board written by {@link #write}. The parts are new and not on any board yet. */
+    public static Board read(Path path) throws IOException {
+        MappedByteBuffer map;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (ch.size() > Integer.MAX_VALUE) throw new IOException("Board file too large: " + path);
+            map = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()); // stays valid after close
+        }
+        ByteBuffer in = map.order(ByteOrder.LITTLE_ENDIAN);
+        try {
+            return read(in);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new IOException("Corrupt board file: " + path, e);
+        }
+    }
+
+    private static Board read(ByteBuffer in) throws IOException {
+        if (in.remaining() < HEADER_BYTES || in.getInt() != MAGIC) throw new IOException("Not a board file");
+        int version = in.getShort() & 0xFFFF;
+        if (version > VERSION) {
+            throw new IOException("Board file version " + version + " is newer than this program reads");
+        }
+        in.getShort();
+        int stringCount = in.getInt(), partCount = in.getInt(), wireCount = in.getInt(), rootAt = in.getInt();
+        in.getInt();
+        if (stringCount < 0 || partCount < 0 || wireCount < 0) throw new IOException("Corrupt board file");
+
+        String[] strings = new String[stringCount];
+        byte[] scratch = new byte[64];
+        for (int i = 0; i < stringCount; i++) {
+            int n = in.getInt();
+            if (n < 0) throw new IOException("Corrupt board file");
+            if (n > scratch.length) scratch = new byte[Math.max(n, scratch.length * 2)];
+            in.get(scratch, 0, n);
+            strings[i] = new String(scratch, 0, n, StandardCharsets.UTF_8);
+        }
+
+        // absolute reads from here on: the records have fixed offsets
+        int base = in.position();
+        if ((long) partCount * PART_BYTES + (long) wireCount * WIRE_BYTES > in.limit() - base) {
+            throw new IOException("Corrupt board file: truncated");
+        }
+        Components[] parts = new Components[partCount];
+        Components[] stack = new Components[partCount];
+        int top = 0;
+        for (int i = 0; i < partCount; i++) {
+            int at = base + i * PART_BYTES;
+            Components c = part(in, at, strings);
+            if (c instanceof CompositeComponent group) {
+                int members = in.getInt(at + 16);
+                if (members < 0 || members > top) throw new IOException("Corrupt board file: group " + i);
+                for (int m = top - members; m < top; m++) group.add(stack[m]);
+                top -= members;
+            }
+            parts[i] = c;
+            stack[top++] = c;
+        }
+
+        List<Wire> wires = new ArrayList<>(wireCount);
+        Wire.Type[] types = Wire.Type.values();
+        int wireBase = base + partCount * PART_BYTES;
+        for (int i = 0; i < wireCount; i++) {
+            int at = wireBase + i * WIRE_BYTES;
+            wires.add(new Wire(parts[in.getInt(at)], parts[in.getInt(at + 4)], types[in.get(at + 8)]));
+        }
+
+        CompositeComponent root = null;
+        if (rootAt >= 0) {
+            if (!(parts[rootAt] instanceof CompositeComponent group)) throw new IOException("Corrupt board file: root");
+            root = group;
+        }
+        return new Board(new ArrayList<>(Arrays.asList(stack).subList(0, top)), root, wires);
+    }
+
+    private static void number(Components c, List<Components> parts, Map<Components, Integer> number) {
+        if (c instanceof CompositeComponent group) {
+            for (Components m : group.getChildren()) number(m, parts, number);
+        }
+        if (number.containsKey(c)) number.put(c, parts.size());
+        parts.add(c);
+    }
+
+    static void putPart(ByteBuffer buf, Components c, int id) {
+        Point p = c.getPosition();
+        int members = (c instanceof CompositeComponent group) ? group.getChildren().size() : 0;
+        buf.put(kind(c)).put((byte) 0).putShort((short) 0)
+                .putInt(id).putInt(p.x).putInt(p.y).putInt(members).putInt(0);
+        switch (c) {
+            case PowerSource s -> buf.putDouble(s.getVoltage()).putDouble(s.getFrequency());
+            case Capacitor cap -> buf.putDouble(cap.getCapacitance()).putDouble(0);
+            case Inductor l -> buf.putDouble(l.getInductance()).putDouble(0);
+            case Bulb b -> buf.putDouble(b.getResistanceOhms()).putDouble(b.getPowerLimit());
+            case Resistor r -> buf.putDouble(r.getResistanceOhms()).putDouble(0);
+            default -> buf.putDouble(0).putDouble(0);
+        }
+    }
+
+    /**
+     * Record kind of c. Values: source volts and hertz, resistor ohms, capacitor farads,
+     * inductor henries, bulb ohms and rated watts; groups have none.
+     */
+    private static byte kind(Components c) {
+        return switch (c) {
+            case PowerSource s -> SOURCE;
+            case Capacitor cap -> CAPACITOR;
+            case Inductor l -> INDUCTOR;
+            case Bulb b -> BULB;
+            case Resistor r -> RESISTOR;
+            case CompositeComponent g -> g.getMode() == CompositeComponent.Mode.SERIES ? SERIES : PARALLEL;
+            default -> throw new IllegalArgumentException("Cannot save " + c.getClass().getSimpleName());
+        };
+    }
+
+    static Components part(ByteBuffer in, int at, String[] strings) throws IOException {
+        String id = strings[in.getInt(at + 4)];
+        int x = in.getInt(at + 8), y = in.getInt(at + 12);
+        double v1 = in.getDouble(at + 24), v2 = in.getDouble(at + 32);
+        return switch (in.get(at)) {
+            case SOURCE -> new PowerSource(id, x, y, v1, v2);
+            case RESISTOR -> new Resistor(id, x, y, v1);
+            case CAPACITOR -> new Capacitor(id, x, y, v1);
+            case INDUCTOR -> new Inductor(id, x, y, v1);
+            case BULB -> new Bulb(id, x, y, v1, v2);
+            case SERIES, PARALLEL -> {
+                CompositeComponent g = new CompositeComponent(id, x, y);
+                g.setMode(in.get(at) == SERIES ? CompositeComponent.Mode.SERIES : CompositeComponent.Mode.PARALLEL);
+                yield g;
+            }
+            default -> throw new IOException("Corrupt board file: part kind " + in.get(at));
+        };
+    }
+
+    private static void room(FileChannel ch, ByteBuffer buf, int bytes) throws IOException {
+        if (buf.remaining() < bytes) flush(ch, buf);
+    }
+
+    private static void flush(FileChannel ch, ByteBuffer buf) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) ch.write(buf);
+        buf.clear();
+    }
+}
@@ -0,0 +1,190 @@
+package io;
+
+import simulation.CompiledCircuit;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+/**
+ * Text circuit files for headless runs, parsed straight into a {@link CompiledCircuit} (no
+ * component objects, so nothing from AWT/Swing is loaded).
+ *
+ * One statement per line, '#' starts a comment:
+ * <pre>
+ *   source    &lt;id&gt; &lt;volts&gt; [hz]
+ *   resistor  &lt;id&gt; &lt;ohms&gt;
+ *   capacitor &lt;id&gt; &lt;farads&gt;
+ *   inductor  &lt;id&gt; &lt;henries&gt; [series ohms, default 0.1]
+ *   bulb      &lt;id&gt; [ohms, default 220] [rated watts, default 100]
+ *   series | parallel   ...   end
+ * </pre>
+ * Top-level statements are in series, like the root the editor builds. The first source gives
+ * the voltage and frequency, the first bulb is the one that is classified.
+ */
+public class CircuitFile {
+    public final String name;
+    public final CompiledCircuit program;
+    public final double voltage;
+    public final double frequency;
+    /** Parameter index of the bulb in the program, or -1. */
+    public final int bulb;
+    public final double bulbRatedPower;
+
+    private CircuitFile(String name, CompiledCircuit program, double voltage, double frequency, int bulb,
+                        double bulbRatedPower) {
+        this.name = name;
+        this.program = program;
+        this.voltage = voltage;
+        this.frequency = frequency;
+        this.bulb = bulb;
+        this.bulbRatedPower = bulbRatedPower;
+    }
+
+    public static CircuitFile read(Path path) throws IOException {
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return parse(path.getFileName().toString(), in);
+        }
+    }
+
+    public static CircuitFile parse(String name, Reader reader) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader br ? br : new BufferedReader(reader);
+        Parser p = new Parser(name);
+        String line;
+        while ((line = in.readLine()) != null) p.line(line);
+        return p.finish();
+    }
+
+    /** Same as {@link #parse(String, Reader)} for the lines of text[start, end). */
+    public static CircuitFile parse(String name, String text, int start, int end) throws IOException {
+        Parser p = new Parser(name);
+        while (start < end) {
+            int nl = text.indexOf('\n', start);
+            int lineEnd = (nl < 0 || nl > end) ? end : nl;
+            int trim = (lineEnd > start && text.charAt(lineEnd - 1) == '\r') ? lineEnd - 1 : lineEnd;
+            p.line(text.substring(start, trim));
+            start = lineEnd + 1;
+        }
+        return p.finish();
+    }
+
+    // one circuit, fed a line at a time
+    private static final class Parser {
+        private final String name;
+        private final CompiledCircuit.Builder b = new CompiledCircuit.Builder();
+        // children pushed so far per open group (depth 0 is the implicit series root) and its mode
+        private int[] count = new int[8];
+        private boolean[] parallel = new boolean[8];
+        private int depth = 0;
+        private double voltage = 0.0, frequency = 0.0, rated = 0.0;
+        private boolean haveSource = false;
+        private int bulb = -1;
+        private int lineNo = 0;
+        private final String[] tok = new String[6];
+
+        Parser(String name) {
+            this.name = name;
+        }
+
+        void line(String line) throws IOException {
+            lineNo++;
+            int n = tokenize(line, tok);
+            if (n == 0) return;
+            String kw = tok[0].toLowerCase();
+            try {
+                switch (kw) {
+                    case "series", "parallel" -> {
+                        depth++;
+                        if (depth == count.length) {
+                            count = Arrays.copyOf(count, depth * 2);
+                            parallel = Arrays.copyOf(parallel, depth * 2);
+                        }
+                        count[depth] = 0;
+                        parallel[depth] = kw.equals("parallel");
+                    }
+                    case "end" -> {
+                        if (depth == 0) throw new IOException("'end' without a group");
+                        close(b, count[depth], parallel[depth]);
+                        depth--;
+                        count[depth]++;
+                    }
+                    case "source" -> {
+                        need(n, 3);
+                        if (!haveSource) {
+                            voltage = Values.parse(tok[2]);
+                            frequency = n > 3 ? Values.parse(tok[3]) : 0.0;
+                            haveSource = true;
+                        }
+                        b.resistor(0.0); // ideal source in the loop
+                        count[depth]++;
+                    }
+                    case "resistor" -> {
+                        need(n, 3);
+                        b.resistor(Values.parse(tok[2]));
+                        count[depth]++;
+                    }
+                    case "capacitor" -> {
+                        need(n, 3);
+                        b.capacitor(Values.parse(tok[2]));
+                        count[depth]++;
+                    }
+                    case "inductor" -> {
+                        need(n, 3);
+                        b.inductor(Values.parse(tok[2]), n > 3 ? Values.parse(tok[3]) : 0.1);
+                        count[depth]++;
+                    }
+                    case "bulb" -> {
+                        need(n, 2);
+                        int i = b.resistor(n > 2 ? Values.parse(tok[2]) : 220.0);
+                        if (bulb < 0) {
+                            bulb = i;
+                            rated = n > 3 ? Values.parse(tok[3]) : 100.0;
+                        }
+                        count[depth]++;
+                    }
+                    default -> throw new IOException("unknown statement '" + tok[0] + "'");
+                }
+            } catch (NumberFormatException | IOException ex) {
+                throw new IOException(name + ":" + lineNo + ": " + ex.getMessage(), ex);
+            }
+        }
+
+        CircuitFile finish() throws IOException {
+            if (depth != 0) throw new IOException(name + ": " + depth + " group(s) not closed with 'end'");
+            if (count[0] == 0) throw new IOException(name + ": no components");
+            close(b, count[0], false);
+            return new CircuitFile(name, b.build(), voltage, frequency, bulb, rated);
+        }
+    }
+
+    private static void close(CompiledCircuit.Builder b, int children, boolean parallel) {
+        if (children == 0) {
+            b.open();
+        } else if (parallel) {
+            b.parallel(children);
+        } else {
+            b.series(children);
+        }
+    }
+
+    private static void need(int n, int min) throws IOException {
+        if (n < min) throw new IOException("expected at least " + (min - 1) + " argument(s)");
+    }
+
+    // whitespace split up to tok.length tokens, stopping at '#'
+    private static int tokenize(String line, String[] tok) {
+        int n = 0, i = 0, len = line.length();
+        while (i < len && n < tok.length) {
+            while (i < len && Character.isWhitespace(line.charAt(i))) i++;
+            if (i >= len || line.charAt(i) == '#') break;
+            int start = i;
+            while (i < len && !Character.isWhitespace(line.charAt(i)) && line.charAt(i) != '#') i++;
+            tok[n++] = line.substring(start, i);
+        }
+        return n;
+    }
+}
@@ -0,0 +1,623 @@
+package io;
+
+import components.*;
+import model.CircuitModel;
+import model.CircuitSnapshot;
+import model.EditHistory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Autosave: every change the edit history makes to the board is appended to a journal on disk,
+ * so that a crash loses at most the changes of the last moment. The directory holds one
+ * generation of two files:
+ * <pre>
+ *   autosave-&lt;gen&gt;.board     the board when the generation began, as a {@link BoardFile}
+ *   autosave-&lt;gen&gt;.journal   "ECSJ", u16 version, u16 0, then one record per change:
+ *                             int length and int CRC32C of the payload, which is a type
+ *                             byte and its fields (see the record types below)
+ * </pre>
+ * Records name top-level parts by number: the parts of the board file are 0 to n-1 in drawing
+ * order, and each new part put on the board afterwards takes the next number. A part that comes
+ * back after an undo keeps its number, so the wires to it stay joined. Replay stops at the first
+ * torn or damaged record.
+ *
+ * The EDT only encodes records into memory. A writer thread writes whatever has piled up since
+ * its last turn and forces it to disk in one go, so a burst of edits costs one sync. Once a
+ * journal has grown past {@link #COMPACT_BYTES}, or the board is replaced wholesale, the board is
+ * written as the next generation and the older files are deleted.
+ *
+ * Replaying gives back the parts, their positions, values and grouping, the wires and the root.
+ * A part brought back by undo is drawn on top, and a root that was never a part of the board
+ * is built again as for a new board.
+ */
+public final class Journal implements EditHistory.Listener, AutoCloseable {
+    public static final int VERSION = 1;
+    public static final long COMPACT_BYTES = 1 << 20;
+
+    private static final int MAGIC = 'E' | 'C' << 8 | 'S' << 16 | 'J' << 24;
+    private static final int HEADER_BYTES = 8;
+    private static final int CHUNK_BYTES = 1 << 16;
+    private static final Wire.Type[] WIRE_TYPES = Wire.Type.values();
+    private static final String PREFIX = "autosave-", BOARD = ".board", JOURNAL = ".journal";
+
+    // record types and their fields
+    private static final byte PLACE = 1;   // int number, int part count, parts in post-order (id, part record),
+                                           // int wire count, wires inside (int part, int part, byte type)
+    private static final byte REMOVE = 2;  // int number
+    private static final byte MOVE = 3;    // int number, int x, int y
+    private static final byte GROUP = 4;   // int group number, int a, int b, byte wire type, id, part record
+    private static final byte UNGROUP = 5; // int group number, int first member's new number, int second's
+    private static final byte VALUE = 6;   // int number, int depth, depth child indexes, part record
+    private static final byte ROOT = 7;    // int number, -1: none on the board
+    private static final byte BACK = 8;    // int number of a part that is back as it was when it left
+
+    /** A new generation starts with this board; queued between the records on either side of it. */
+    private record Generation(int number, CircuitSnapshot board) { }
+
+    private final Path dir;
+    private final CircuitModel model;
+    private final Consumer<IOException> onError;
+
+    // EDT only
+    private final Map<Components, Integer> numberOf = new IdentityHashMap<>();
+    private final Set<Components> onBoard = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int next;
+    private int generation;
+    private long journalBytes;
+    private int rootNumber = -1;
+    private ByteBuffer rec = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32C crc = new CRC32C();
+
+    // handed from the EDT to the writer: record bytes and generations, in order
+    private final Object lock = new Object();
+    private List<Object> queue = new ArrayList<>();
+    private boolean closed;
+
+    // writer thread only
+    private final Thread writer;
+    private FileChannel channel;
+
+    private Journal(Path dir, CircuitModel model, int generation, Consumer<IOException> onError) {
+        this.dir = dir;
+        this.model = model;
+        this.generation = generation;
+        this.onError = onError;
+        this.writer = new Thread(this::run, "autosave");
+        writer.setDaemon(true);
+    }
+
+    /** Where the editor keeps its autosave. */
+    public static Path defaultDirectory() {
+        return Path.of(System.getProperty("user.home"), ".ecs", "autosave");
+    }
+
+    /**
+     * Starts journalling the board of model into dir. Call on the EDT once the board is in place
+     * (e.g. after {@link #recover}): it becomes the first generation, and older ones are deleted.
+     */
+    public static Journal start(Path dir, CircuitModel model, Consumer<IOException> onError) throws IOException {
+        Files.createDirectories(dir);
+        Journal j = new Journal(dir, model, latestGeneration(dir), onError);
+        j.compact();
+        model.history.setListener(j);
+        j.writer.start();
+        return j;
+    }
+
+    /**
+     * The board as the last session left it: the newest board file in dir with its journal
+     * replayed on top. Null if there is none. The parts are new and not on any board yet.
+     */
+    public static BoardFile.Board recover(Path dir) throws IOException {
+        int gen = latestGeneration(dir);
+        if (gen < 0) return null;
+        Replay replay = new Replay(BoardFile.read(file(dir, gen, BOARD)));
+        Path journal = file(dir, gen, JOURNAL);
+        if (Files.exists(journal)) replay.apply(journal);
+        return replay.board();
+    }
+
+    /** Writes out what is queued and stops; later changes are not journalled. */
+    @Override
+    public void close() {
+        synchronized (lock) {
+            closed = true;
+            lock.notifyAll();
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---- EditHistory.Listener, on the EDT ----
+
+    @Override
+    public void placed(Components c) {
+        Integer known = numberOf.get(c);
+        onBoard.add(c);
+        if (known != null) {
+            begin(BACK, 4);
+            rec.putInt(known);
+            end();
+            return;
+        }
+        begin(PLACE, 8);
+        rec.putInt(number(c));
+        int countAt = rec.position();
+        rec.putInt(0);
+        Map<Components, Integer> index = new IdentityHashMap<>();
+        int count = putTree(c, index); // may move rec to a bigger buffer
+        rec.putInt(countAt, count);
+        // only a group that was off the board since the last compaction can have wires already
+        int wiresAt = rec.position();
+        room(4);
+        rec.putInt(0);
+        int wires = 0;
+        if (count > 1) {
+            for (Wire w : model.wires) {
+                Integer a = index.get(w.getA()), b = index.get(w.getB());
+                if (a == null || b == null) continue;
+                room(9);
+                rec.putInt(a).putInt(b).put((byte) w.getType().ordinal());
+                wires++;
+            }
+        }
+        rec.putInt(wiresAt, wires);
+        end();
+    }
+
+    @Override
+    public void removed(Components c) {
+        onBoard.remove(c);
+        begin(REMOVE, 4);
+        rec.putInt(numberOf.get(c));
+        end();
+    }
+
+    @Override
+    public void moved(Components c) {
+        begin(MOVE, 12);
+        rec.putInt(numberOf.get(c)).putInt(c.getPosition().x).putInt(c.getPosition().y);
+        end();
+    }
+
+    @Override
+    public void grouped(CompositeComponent group, Wire wire) {
+        int a = numberOf.get(wire.getA()), b = numberOf.get(wire.getB());
+        onBoard.remove(wire.getA());
+        onBoard.remove(wire.getB());
+        int n = number(group);
+        onBoard.add(group);
+        begin(GROUP, 13);
+        rec.putInt(n).putInt(a).putInt(b).put((byte) wire.getType().ordinal());
+        putPart(group);
+        end();
+    }
+
+    @Override
+    public void ungrouped(CompositeComponent group, Wire wire) {
+        begin(UNGROUP, 12);
+        rec.putInt(numberOf.get(group));
+        onBoard.remove(group);
+        for (Components member : group.getChildren()) {
+            Integer known = numberOf.get(member);
+            rec.putInt((known != null) ? known : number(member));
+            onBoard.add(member);
+        }
+        end();
+    }
+
+    @Override
+    public void valueChanged(Components c) {
+        List<Integer> path = new ArrayList<>();
+        Components top = topOf(c, path);
+        if (top == null) return; // not on the board: nothing to replay
+        begin(VALUE, 8 + 4 * path.size());
+        rec.putInt(numberOf.get(top)).putInt(path.size());
+        for (int i = path.size() - 1; i >= 0; i--) rec.putInt(path.get(i));
+        putPart(c);
+        end();
+    }
+
+    @Override
+    public void rootChanged(CompositeComponent root) {
+        int n = (root != null && onBoard.contains(root)) ? numberOf.get(root) : -1;
+        if (n == rootNumber) return;
+        rootNumber = n;
+        begin(ROOT, 4);
+        rec.putInt(n);
+        end();
+    }
+
+    @Override
+    public void cleared() {
+        compact();
+    }
+
+    /** Starts the next generation with the board as it is now. */
+    private void compact() {
+        CircuitSnapshot board = model.snapshot();
+        numberOf.clear();
+        onBoard.clear();
+        List<Components> parts = board.getComponents();
+        for (int i = 0; i < parts.size(); i++) {
+            Components live = parts.get(i).getOriginal();
+            numberOf.put(live, i);
+            onBoard.add(live);
+        }
+        next = parts.size();
+        CompositeComponent root = model.circuit.getRoot();
+        rootNumber = (root != null && onBoard.contains(root)) ? numberOf.get(root) : -1;
+        journalBytes = 0;
+        enqueue(new Generation(++generation, board));
+    }
+
+    private int number(Components c) {
+        numberOf.put(c, next);
+        return next++;
+    }
+
+    // the top-level part c is in, or c itself; path gets the child indexes from c up to it
+    private Components topOf(Components c, List<Integer> path) {
+        if (onBoard.contains(c)) return c;
+        for (CompositeComponent parent : c.getParents()) {
+            path.add(parent.getChildren().indexOf(c));
+            Components top = topOf(parent, path);
+            if (top != null) return top;
+            path.remove(path.size() - 1);
+        }
+        return null;
+    }
+
+    // ---- encoding on the EDT ----
+
+    private void begin(byte type, int bytes) {
+        rec.clear();
+        room(9 + bytes);
+        rec.putInt(0).putInt(0).put(type);
+    }
+
+    private void end() {
+        int length = rec.position() - 8;
+        crc.reset();
+        crc.update(rec.array(), 8, length);
+        rec.putInt(0, length).putInt(4, (int) crc.getValue());
+        rec.flip();
+        journalBytes += rec.remaining();
+        enqueue(rec);
+        if (journalBytes > COMPACT_BYTES) compact();
+    }
+
+    // c and everything in it in post-order, as a group needs its members before it; index gets
+    // the place of each part in that order
+    private int putTree(Components c, Map<Components, Integer> index) {
+        if (c instanceof CompositeComponent group) {
+            for (Components m : group.getChildren()) putTree(m, index);
+        }
+        putPart(c);
+        index.put(c, index.size());
+        return index.size();
+    }
+
+    private void putPart(Components c) {
+        byte[] id = c.getId().getBytes(StandardCharsets.UTF_8);
+        room(4 + id.length + BoardFile.PART_BYTES);
+        rec.putInt(id.length).put(id);
+        BoardFile.putPart(rec, c, 0);
+    }
+
+    private void room(int bytes) {
+        if (rec.remaining() >= bytes) return;
+        ByteBuffer bigger = ByteBuffer.allocate(Math.max(rec.capacity() * 2, rec.position() + bytes))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        rec.flip();
+        rec = bigger.put(rec);
+    }
+
+    // copies a record, or hands over a generation, to the writer
+    private void enqueue(Object item) {
+        synchronized (lock) {
+            if (closed) return;
+            if (item instanceof ByteBuffer r) {
+                ByteBuffer tail = queue.isEmpty() ? null
+                        : (queue.get(queue.size() - 1) instanceof ByteBuffer b) ? b : null;
+                if (tail == null || tail.remaining() < r.remaining()) {
+                    tail = ByteBuffer.allocate(Math.max(CHUNK_BYTES, r.remaining()));
+                    queue.add(tail);
+                }
+                tail.put(r);
+            } else {
+                queue.add(item);
+            }
+            lock.notifyAll();
+        }
+    }
+
+    // ---- writer thread ----
+
+    private void run() {
+        List<Object> batch = new ArrayList<>();
+        try {
+            while (true) {
+                synchronized (lock) {
+                    while (queue.isEmpty() && !closed) lock.wait();
+                    if (queue.isEmpty()) break; // closed, and everything is written
+                    List<Object> swap = queue;
+                    queue = batch;
+                    batch = swap;
+                }
+                for (Object item : batch) {
+                    if (item instanceof Generation g) {
+                        open(g);
+                    } else {
+                        ByteBuffer b = ((ByteBuffer) item).flip();
+                        while (b.hasRemaining()) channel.write(b);
+                    }
+                }
+                batch.clear();
+                channel.force(false); // one sync for everything that came in meanwhile
+            }
+            if (channel != null) channel.close();
+        } catch (IOException e) {
+            synchronized (lock) {
+                closed = true;
+                queue.clear();
+            }
+            onError.accept(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // the board file goes first: a generation counts once its board file is there
+    private void open(Generation g) throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+        }
+        BoardFile.write(file(dir, g.number(), BOARD), g.board());
+        channel = FileChannel.open(file(dir, g.number(), JOURNAL), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putShort((short) VERSION).putShort((short) 0).flip();
+        while (header.hasRemaining()) channel.write(header);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*")) {
+            for (Path f : files) {
+                int gen = generationOf(f);
+                if (gen >= 0 && gen < g.number()) Files.deleteIfExists(f);
+            }
+        }
+    }
+
+    // ---- files ----
+
+    private static Path file(Path dir, int generation, String suffix) {
+        return dir.resolve(PREFIX + generation + suffix);
+    }
+
+    /** Newest generation with a board file in dir, or -1. */
+    private static int latestGeneration(Path dir) throws IOException {
+        int latest = -1;
+        if (!Files.isDirectory(dir)) return latest;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, PREFIX + "*" + BOARD)) {
+            for (Path f : files) latest = Math.max(latest, generationOf(f));
+        }
+        return latest;
+    }
+
+    private static int generationOf(Path f) {
+        String name = f.getFileName().toString();
+        int dot = name.indexOf('.');
+        if (!name.startsWith(PREFIX) || dot < 0) return -1;
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length(), dot));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // ---- replay ----
+
+    /** A board being rebuilt from records, without a circuit: the circuit is only built at the end. */
+    private static final class Replay {
+        final List<Components> parts; // by number
+        int[] placedAt;               // by number: when the part was last put on the board, -1 while off it
+        int placements;
+        final List<Wire> wires;
+        int root;
+
+        Replay(BoardFile.Board board) {
+            parts = new ArrayList<>(board.components());
+            placedAt = new int[Math.max(16, parts.size() * 2)];
+            for (int i = 0; i < parts.size(); i++) placedAt[i] = placements++;
+            wires = new ArrayList<>(board.wires());
+            root = (board.root() != null) ? parts.indexOf(board.root()) : -1;
+        }
+
+        BoardFile.Board board() {
+            Components[] drawn = new Components[placements];
+            for (int n = 0; n < parts.size(); n++) {
+                if (placedAt[n] >= 0 && parts.get(n) != null) drawn[placedAt[n]] = parts.get(n);
+            }
+            List<Components> components = new ArrayList<>(parts.size());
+            for (Components c : drawn) {
+                if (c != null) components.add(c);
+            }
+            CompositeComponent r = (root >= 0 && placedAt[root] >= 0 && parts.get(root) instanceof CompositeComponent g)
+                    ? g : null;
+            // a removed part keeps its wires in case it comes back; the ones still off the board go with it
+            Set<Components> onBoard = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Components c : components) members(c, onBoard);
+            List<Wire> kept = new ArrayList<>(wires.size());
+            for (Wire w : wires) {
+                if (onBoard.contains(w.getA()) && onBoard.contains(w.getB())) kept.add(w);
+            }
+            return new BoardFile.Board(components, r, kept);
+        }
+
+        void apply(Path journal) throws IOException {
+            ByteBuffer in;
+            try (FileChannel ch = FileChannel.open(journal, StandardOpenOption.READ)) {
+                if (ch.size() > Integer.MAX_VALUE) throw new IOException("Journal too large: " + journal);
+                in = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size()).order(ByteOrder.LITTLE_ENDIAN);
+            }
+            if (in.remaining() < HEADER_BYTES || in.getInt() != MAGIC) throw new IOException("Not a journal: " + journal);
+            int version = in.getShort() & 0xFFFF;
+            if (version > VERSION) throw new IOException("Journal version " + version + " is newer than this program reads");
+            in.getShort();
+
+            // r is limited to one payload at a time; the records are read in place
+            CRC32C crc = new CRC32C();
+            ByteBuffer r = in.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            int end = in.limit();
+            for (int at = in.position(); end - at >= 8; ) {
+                int length = in.getInt(at), sum = in.getInt(at + 4);
+                if (length < 1 || length > end - at - 8) break; // torn by the crash
+                r.limit(at + 8 + length).position(at + 8);
+                crc.reset();
+                crc.update(r);
+                if ((int) crc.getValue() != sum) break;
+                r.position(at + 8);
+                try {
+                    apply(r);
+                } catch (RuntimeException e) {
+                    throw new IOException("Corrupt journal record at byte " + at + ": " + journal, e);
+                }
+                at += 8 + length;
+            }
+        }
+
+        private void apply(ByteBuffer r) throws IOException {
+            byte type = r.get();
+            switch (type) {
+                case PLACE -> {
+                    int n = r.getInt();
+                    int count = r.getInt();
+                    Components[] stack = new Components[count];
+                    int top = 0;
+                    for (int i = 0; i < count; i++) {
+                        Components c = part(r);
+                        if (c instanceof CompositeComponent group) {
+                            int members = r.getInt(r.position() - BoardFile.PART_BYTES + 16);
+                            for (int m = top - members; m < top; m++) group.add(stack[m]);
+                            top -= members;
+                        }
+                        stack[top++] = c;
+                    }
+                    if (top != 1) throw new IOException("Corrupt journal: part " + n);
+                    put(n, stack[0]);
+                    Components[] all = new Components[count];
+                    collect(stack[0], all, 0);
+                    for (int i = r.getInt(); i > 0; i--) {
+                        wires.add(new Wire(all[r.getInt()], all[r.getInt()], WIRE_TYPES[r.get()]));
+                    }
+                }
+                case BACK -> {
+                    int n = r.getInt();
+                    put(n, parts.get(n));
+                }
+                case REMOVE -> placedAt[r.getInt()] = -1;
+                case MOVE -> parts.get(r.getInt()).setPosition(r.getInt(), r.getInt());
+                case GROUP -> {
+                    int n = r.getInt(), a = r.getInt(), b = r.getInt();
+                    Wire.Type wireType = WIRE_TYPES[r.get()];
+                    CompositeComponent group = (CompositeComponent) part(r);
+                    group.add(parts.get(a));
+                    group.add(parts.get(b));
+                    placedAt[a] = -1;
+                    placedAt[b] = -1;
+                    put(n, group);
+                    wires.add(new Wire(parts.get(a), parts.get(b), wireType));
+                }
+                case UNGROUP -> {
+                    int n = r.getInt();
+                    CompositeComponent group = (CompositeComponent) parts.get(n);
+                    placedAt[n] = -1;
+                    List<Components> members = List.copyOf(group.getChildren());
+                    for (Components m : members) put(r.getInt(), m);
+                    group.unlink();
+                    for (int i = wires.size() - 1; i >= 0; i--) { // the wire the group was made for
+                        Wire w = wires.get(i);
+                        if (w.getA() == members.get(0) && w.getB() == members.get(1)) {
+                            wires.remove(i);
+                            break;
+                        }
+                    }
+                }
+                case VALUE -> {
+                    Components c = parts.get(r.getInt());
+                    int depth = r.getInt();
+                    for (int i = 0; i < depth; i++) c = ((CompositeComponent) c).getChildren().get(r.getInt());
+                    r.position(r.position() + 4 + r.getInt(r.position())); // the id
+                    double v1 = r.getDouble(r.position() + 24), v2 = r.getDouble(r.position() + 32);
+                    switch (c) {
+                        case PowerSource s -> {
+                            s.setVoltage(v1);
+                            s.setFrequency(v2);
+                        }
+                        case Capacitor cap -> cap.setCapacitance(v1);
+                        case Inductor l -> l.setInductance(v1);
+                        case Resistor res -> res.setResistance(v1);
+                        default -> { } // bulbs and groups have no values to change
+                    }
+                }
+                case ROOT -> {
+                    root = r.getInt();
+                }
+                default -> throw new IOException("Corrupt journal: record type " + type);
+            }
+        }
+
+        // the parts under c in post-order from at, as they were written
+        private static void members(Components c, Set<Components> out) {
+            out.add(c);
+            if (c instanceof CompositeComponent group) {
+                for (Components m : group.getChildren()) members(m, out);
+            }
+        }
+
+        private static int collect(Components c, Components[] out, int at) {
+            if (c instanceof CompositeComponent group) {
+                for (Components m : group.getChildren()) at = collect(m, out, at);
+            }
+            out[at] = c;
+            return at + 1;
+        }
+
+        private void put(int n, Components c) {
+            while (parts.size() <= n) parts.add(null);
+            parts.set(n, c);
+            if (n >= placedAt.length) placedAt = Arrays.copyOf(placedAt, Math.max(n + 1, placedAt.length * 2));
+            placedAt[n] = placements++;
+        }
+
+        // an id and a part record, as written by putPart
+        private static Components part(ByteBuffer r) throws IOException {
+            byte[] id = new byte[r.getInt()];
+            r.get(id);
+            Components c = BoardFile.part(r, r.position(), new String[] { new String(id, StandardCharsets.UTF_8) });
+            r.position(r.position() + BoardFile.PART_BYTES);
+            return c;
+        }
+    }
+}
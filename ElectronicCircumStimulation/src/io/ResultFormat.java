@@ -0,0 +1,79 @@
+package io;
+
+import simulation.OperatingPoint;
+
+import java.util.Locale;
+
+/**
+ * CSV and JSON rows for {@link OperatingPoint} results, shared by the batch CLI and the server.
+ * JSON has no infinity, so an open circuit's impedance is written as null.
+ */
+public final class ResultFormat {
+    public static final String CSV_HEADER = "file,voltage_v,frequency_hz,z_ohm,phase_deg,i_a,bulb_power_w,bulb_state,error";
+
+    private ResultFormat() {
+    }
+
+    public static String csv(String name, OperatingPoint op) {
+        return String.join(",", field(name), num(op.voltage), num(op.frequency), num(op.impedance), num(op.phase),
+                num(op.current), op.bulbState == null ? "" : num(op.bulbPower),
+                op.bulbState == null ? "" : op.bulbState.name(), "");
+    }
+
+    public static String json(String name, OperatingPoint op) {
+        StringBuilder sb = new StringBuilder(160);
+        sb.append("{\"file\": ").append(quote(name))
+                .append(", \"voltage_v\": ").append(jsonNum(op.voltage))
+                .append(", \"frequency_hz\": ").append(jsonNum(op.frequency))
+                .append(", \"z_ohm\": ").append(jsonNum(op.impedance))
+                .append(", \"phase_deg\": ").append(jsonNum(op.phase))
+                .append(", \"i_a\": ").append(jsonNum(op.current));
+        if (op.bulbState != null) {
+            sb.append(", \"bulb_power_w\": ").append(jsonNum(op.bulbPower))
+                    .append(", \"bulb_state\": \"").append(op.bulbState.name()).append('"');
+        }
+        return sb.append('}').toString();
+    }
+
+    private static String num(double v) {
+        if (Double.isInfinite(v)) return v > 0 ? "inf" : "-inf";
+        return String.format(Locale.ROOT, "%.6g", v);
+    }
+
+    // JSON has no infinity: an open circuit is written as null
+    private static String jsonNum(double v) {
+        return Double.isFinite(v) ? String.format(Locale.ROOT, "%.6g", v) : "null";
+    }
+
+    private static String field(String s) {
+        if (s.indexOf(',') < 0 && s.indexOf('"') < 0 && s.indexOf('\n') < 0) return s;
+        return '"' + s.replace("\"", "\"\"") + '"';
+    }
+
+    static String quote(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+                    else sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    public static String csvError(String name, String message) {
+        return field(name) + ",,,,,,,," + field(message);
+    }
+
+    public static String jsonError(String name, String message) {
+        return "{\"file\": " + quote(name) + ", \"error\": " + quote(message) + "}";
+    }
+}
@@ -0,0 +1,540 @@
+package io;
+
+import components.*;
+import simulation.Netlist;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * SPICE-style netlists from other tools, read as a stream: one buffer of the file and the
+ * statement being parsed are all the memory the parse needs, whatever the file size. What grows
+ * is the result, and it holds no object per element: {@link #net} keeps kinds, nodes and values
+ * in arrays, and the element names sit back to back in one byte array. Editor components are
+ * only made when {@link #parts()} asks for them.
+ *
+ * <pre>
+ *   title line                        (the first line, as in SPICE)
+ *   * comment                         (also ; to the end of a line)
+ *   R&lt;name&gt; n1 n2 ohms [lamp [watts]]   a bulb when marked as lamp (rated 100 W by default)
+ *   C&lt;name&gt; n1 n2 farads
+ *   L&lt;name&gt; n1 n2 henries              (with 0.1 ohm in series, as an editor inductor has)
+ *   V&lt;name&gt; n+ n- [DC] volts | AC volts | SIN(offset amplitude hz ...)
+ *   + continues the previous line
+ *   .end                              (other dot statements are skipped)
+ * </pre>
+ * Node 0 (or gnd) is ground. Values take the usual suffixes (see {@link Values}); extra fields
+ * such as ic=... are ignored. Subcircuits are not supported.
+ */
+public final class SpiceFile {
+    private static final int BUFFER = 1 << 20;
+    private static final int PITCH_X = 100, PITCH_Y = 60; // px between laid out parts
+    private static final int ORIGIN = 100;
+    private static final int HILBERT_SIDE = 1 << 16;    // cells per side of the layout curve
+    private static final double LAMP_WATTS = 100.0;
+    private static final double INDUCTOR_OHMS = 0.1;   // winding resistance, as an editor Inductor has
+    private static final int LINE_BYTES = 24;          // a short element line: "R12 n3 n4 4.7k"
+    private static final int MAX_EXPECTED = 1 << 24;
+
+    public final String name;
+    public final String title;
+    /**
+     * Element i is the i-th element of the file, between the nodes the file gave it, by value:
+     * no element has a component (see {@link #connect(List)} for a copy that has).
+     */
+    public final Netlist net;
+    /** Element of the first source, or -1; its voltage and frequency drive the circuit. */
+    public final int source;
+    public final double frequency;
+    /** Element of the first lamp, or -1, and its rating in watts. */
+    public final int bulb;
+    public final double bulbRatedPower;
+
+    // element i is named names[nameEnd[i - 1], nameEnd[i]); lamps and sources carry one more
+    // value, extraValue[k] for element extraAt[k] (ascending)
+    private final byte[] names;
+    private final int[] nameEnd;
+    private final int[] extraAt;
+    private final double[] extraValue;
+
+    private SpiceFile(String name, String title, Netlist net, byte[] names, int[] nameEnd, int[] extraAt,
+                      double[] extraValue, int source, int bulb) {
+        this.name = name;
+        this.title = title;
+        this.net = net;
+        this.names = names;
+        this.nameEnd = nameEnd;
+        this.extraAt = extraAt;
+        this.extraValue = extraValue;
+        this.source = source;
+        this.frequency = (source >= 0) ? extraValue[Arrays.binarySearch(extraAt, source)] : 0.0;
+        this.bulb = bulb;
+        this.bulbRatedPower = (bulb >= 0) ? extraValue[Arrays.binarySearch(extraAt, bulb)] : 0.0;
+    }
+
+    /** Whether path is named like a netlist: .cir, .sp, .spice or .net. */
+    public static boolean isNetlist(Path path) {
+        String n = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        return n.endsWith(".cir") || n.endsWith(".sp") || n.endsWith(".spice") || n.endsWith(".net");
+    }
+
+    public static SpiceFile read(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            // sized from the file, so a large netlist is not copied over and over as it grows
+            int expected = (int) Math.min(ch.size() / LINE_BYTES, MAX_EXPECTED);
+            Parser p = new Parser(path.getFileName().toString(), expected);
+            p.read(ch);
+            return p.finish();
+        }
+    }
+
+    /** Name of element e as the file gave it. */
+    public String nameOf(int e) {
+        int from = (e == 0) ? 0 : nameEnd[e - 1];
+        return new String(names, from, nameEnd[e] - from, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * One new editor component per element, in file order. Parts are laid out along a Hilbert
+     * curve, so elements listed together sit together and any count fills a square.
+     */
+    public List<Components> parts() {
+        int n = net.elementCount();
+        List<Components> parts = new ArrayList<>(n);
+        for (int e = 0, k = 0; e < n; e++) {
+            int[] xy = place(e);
+            String id = nameOf(e);
+            double value = net.valueOf(e);
+            boolean more = k < extraAt.length && extraAt[k] == e;
+            parts.add(switch (net.kindOf(e)) {
+                case RESISTOR -> more
+                        ? new Bulb(id, xy[0], xy[1], value, extraValue[k])
+                        : new Resistor(id, xy[0], xy[1], value);
+                case CAPACITOR -> new Capacitor(id, xy[0], xy[1], value);
+                case INDUCTOR -> new Inductor(id, xy[0], xy[1], value);
+                case SOURCE -> new PowerSource(id, xy[0], xy[1], value, extraValue[k]);
+            });
+            if (more) k++;
+        }
+        return parts;
+    }
+
+    /**
+     * {@link #net} with element i bound to parts.get(i) (as made by {@link #parts()}): it reads
+     * their values as they change, and solving it writes drops and currents back to them.
+     */
+    public Netlist connect(List<Components> parts) {
+        return net.withParts(parts);
+    }
+
+    // byte classes for the tokenizer
+    private static final byte TOKEN = 0, SEPARATOR = 1, END = 2, COMMENT = 3;
+    private static final byte[] CLASS = new byte[256];
+
+    static {
+        for (char c : " \t\r,()=".toCharArray()) CLASS[c] = SEPARATOR;
+        CLASS['\n'] = END;
+        CLASS[';'] = COMMENT;
+    }
+
+    /**
+     * Parses in the read buffer itself, in one pass over each line: a statement's tokens are
+     * offsets into the buffer, and a refill only moves the statement still being read to the
+     * front.
+     */
+    private static final class Parser {
+        final String name;
+        final Netlist net;
+        final Nodes nodes;
+        byte[] names;
+        int namesLen;
+        int[] nameEnd;
+        int[] extraAt = new int[16];
+        double[] extraValue = new double[16];
+        int extras;
+        int source = -1, bulb = -1;
+        double hz; // frequency of the source source() read last
+        String title;
+        boolean done;
+
+        byte[] buf = new byte[BUFFER];
+        int limit;   // bytes in buf, followed by a '\n'
+        boolean eof; // nothing follows buf[limit - 1], so a last line ends there
+        int lineNo, statementLine;
+        // statement being read: where it starts in buf (-1 if none) and its tokens
+        int statementStart = -1;
+        int[] tokStart = new int[16], tokEnd = new int[16];
+        int tokens;
+
+        Parser(String name, int expected) {
+            this.name = name;
+            int capacity = Math.max(expected, 16);
+            net = new Netlist(capacity);
+            nodes = new Nodes(net, capacity);
+            names = new byte[capacity * 4];
+            nameEnd = new int[capacity];
+        }
+
+        void read(ReadableByteChannel ch) throws IOException {
+            int pos = 0; // first line not read yet
+            while (!done && !eof) {
+                int keep = (statementStart >= 0) ? statementStart : pos;
+                if (keep > 0) {
+                    System.arraycopy(buf, keep, buf, 0, limit - keep);
+                    limit -= keep;
+                    pos -= keep;
+                    if (statementStart >= 0) statementStart -= keep;
+                    for (int t = 0; t < tokens; t++) {
+                        tokStart[t] -= keep;
+                        tokEnd[t] -= keep;
+                    }
+                } else if (limit == buf.length - 1) {
+                    buf = Arrays.copyOf(buf, buf.length * 2); // one statement longer than the buffer
+                }
+                int n = ch.read(ByteBuffer.wrap(buf, limit, buf.length - 1 - limit));
+                if (n < 0) eof = true;
+                else limit += n;
+                buf[limit] = '\n'; // stops every scan at the end of the data without a bounds test
+                for (int next; !done && pos < limit && (next = line(pos)) >= 0; ) pos = next;
+            }
+        }
+
+        SpiceFile finish() throws IOException {
+            if (!done) statement();
+            int n = net.elementCount();
+            return new SpiceFile(name, title, net, Arrays.copyOf(names, namesLen), Arrays.copyOf(nameEnd, n),
+                    Arrays.copyOf(extraAt, extras), Arrays.copyOf(extraValue, extras), source, bulb);
+        }
+
+        /** Reads the line at from; returns where the next one starts, or -1 if it goes on past limit. */
+        private int line(int from) throws IOException {
+            byte[] buf = this.buf;
+            int i = from;
+            if (lineNo == 0) {
+                while (buf[i] != '\n') i++;
+                if (i == limit && !eof) return -1;
+                title = new String(buf, from, i - from, StandardCharsets.UTF_8).trim();
+                return finishLine(i + 1);
+            }
+            while (buf[i] == ' ' || buf[i] == '\t') i++;
+            byte c = buf[i];
+            if (c == '*' || c == ';' || c == '\r' || c == '\n') return skip(i); // comment or blank line
+            int before = tokens;
+            if (c == '+') {
+                if (statementStart < 0) throw error(lineNo + 1, "'+' continues nothing");
+                i++;
+            } else {
+                statement(); // the line before is complete now
+                if (done) return from;
+                statementStart = from;
+                statementLine = lineNo + 1;
+                before = 0;
+            }
+            for (;;) {
+                byte k;
+                while ((k = CLASS[buf[i] & 0xFF]) == SEPARATOR) i++;
+                if (k == END) {
+                    if (i < limit) return finishLine(i + 1);
+                    break;
+                }
+                if (k == COMMENT) {
+                    int next = skip(i);
+                    if (next < 0) tokens = before;
+                    return next;
+                }
+                int start = i;
+                while (CLASS[buf[i] & 0xFF] == TOKEN) i++;
+                if (i == limit && !eof) break;
+                if (tokens == tokStart.length) {
+                    tokStart = Arrays.copyOf(tokStart, tokens * 2);
+                    tokEnd = Arrays.copyOf(tokEnd, tokens * 2);
+                }
+                tokStart[tokens] = start;
+                tokEnd[tokens++] = i;
+            }
+            if (eof) return finishLine(limit);
+            tokens = before; // read the line again once the buffer holds all of it
+            return -1;
+        }
+
+        // past the newline at or after i, or -1 if there is none yet
+        private int skip(int i) {
+            while (buf[i] != '\n') i++;
+            if (i < limit) return finishLine(i + 1);
+            return eof ? finishLine(limit) : -1;
+        }
+
+        private int finishLine(int next) {
+            lineNo++;
+            return next;
+        }
+
+        private void statement() throws IOException {
+            if (statementStart < 0) return;
+            statementStart = -1;
+            if (tokens == 0) return;
+            try {
+                element();
+            } catch (NumberFormatException ex) {
+                throw error(statementLine, ex.getMessage());
+            }
+            tokens = 0;
+        }
+
+        // kept small so the compiler inlines it; dot statements, sources and lamps are rare
+        private void element() throws IOException {
+            byte kind = buf[tokStart[0]];
+            if (kind >= 'a' && kind <= 'z') kind -= 'a' - 'A';
+            if (kind == '.') {
+                control();
+                return;
+            }
+            Netlist.Kind k = switch (kind) {
+                case 'R' -> Netlist.Kind.RESISTOR;
+                case 'C' -> Netlist.Kind.CAPACITOR;
+                case 'L' -> Netlist.Kind.INDUCTOR;
+                case 'V' -> Netlist.Kind.SOURCE;
+                default -> throw unsupported(kind);
+            };
+            if (tokens < 4 && k != Netlist.Kind.SOURCE) throw error(statementLine, "expected: name node node value");
+            if (tokens < 3) throw error(statementLine, "expected: name node node");
+            int a = nodes.of(buf, tokStart[1], tokEnd[1]);
+            int b = nodes.of(buf, tokStart[2], tokEnd[2]);
+            if (k == Netlist.Kind.SOURCE) {
+                int e = add(k, b, a, source()); // the netlist's sources drive b above a
+                extra(e, hz);
+                if (source < 0) source = e;
+                return;
+            }
+            int e = add(k, a, b, number(3));
+            if (k == Netlist.Kind.RESISTOR && tokens > 4) lamp(e);
+        }
+
+        private void lamp(int e) {
+            if (!is(4, "lamp") && !is(4, "bulb")) return;
+            extra(e, tokens > 5 ? number(5) : LAMP_WATTS);
+            if (bulb < 0) bulb = e;
+        }
+
+        private void control() throws IOException {
+            if (is(0, ".end")) done = true;
+            else if (is(0, ".subckt")) throw error(statementLine, "subcircuits are not supported");
+        }
+
+        private IOException unsupported(byte kind) {
+            if (kind == 'X') return error(statementLine, "subcircuits are not supported");
+            return error(statementLine, "unsupported element '" + token(0) + "'");
+        }
+
+        // the element, named by token 0
+        private int add(Netlist.Kind k, int a, int b, double value) {
+            int e = (k == Netlist.Kind.INDUCTOR)
+                    ? net.addElement(k, a, b, value, INDUCTOR_OHMS)
+                    : net.addElement(k, a, b, value);
+            if (e == nameEnd.length) nameEnd = Arrays.copyOf(nameEnd, e * 2);
+            int from = tokStart[0], to = tokEnd[0], at = namesLen;
+            if (at + to - from > names.length) names = Arrays.copyOf(names, Math.max(at + to - from, names.length * 2));
+            byte[] names = this.names;
+            for (int i = from; i < to; i++) names[at++] = buf[i]; // a few bytes, no call
+            nameEnd[e] = namesLen = at;
+            return e;
+        }
+
+        private void extra(int e, double value) {
+            if (extras == extraAt.length) {
+                extraAt = Arrays.copyOf(extraAt, extras * 2);
+                extraValue = Arrays.copyOf(extraValue, extras * 2);
+            }
+            extraAt[extras] = e;
+            extraValue[extras++] = value;
+        }
+
+        // DC value (with or without the DC keyword), else AC magnitude, else SIN amplitude and frequency;
+        // returns the volts and leaves the frequency in hz
+        private double source() {
+            double volts = 0.0;
+            hz = 0.0;
+            for (int t = 3; t < tokens; t++) {
+                if (is(t, "dc") && t + 1 < tokens) {
+                    volts = number(++t);
+                } else if (is(t, "ac") && t + 1 < tokens) {
+                    if (volts == 0.0) volts = number(t + 1);
+                    t++;
+                } else if (is(t, "sin")) {
+                    if (t + 3 < tokens) {
+                        volts = number(t + 2);
+                        hz = number(t + 3);
+                    }
+                    break;
+                } else if (t == 3) {
+                    volts = number(t);
+                }
+            }
+            return volts;
+        }
+
+        private double number(int t) {
+            return Values.parse(buf, tokStart[t], tokEnd[t]);
+        }
+
+        private boolean is(int t, String word) {
+            int n = tokEnd[t] - tokStart[t];
+            if (n != word.length()) return false;
+            for (int i = 0; i < n; i++) {
+                if (Character.toLowerCase(buf[tokStart[t] + i]) != word.charAt(i)) return false;
+            }
+            return true;
+        }
+
+        private String token(int t) {
+            return new String(buf, tokStart[t], tokEnd[t] - tokStart[t], StandardCharsets.UTF_8);
+        }
+
+        private IOException error(int at, String message) {
+            return new IOException(name + ":" + at + ": " + message);
+        }
+    }
+
+    /** Position of the i-th part: cell i of a Hilbert curve, so the first 4^k parts fill a square. */
+    static int[] place(int i) {
+        int x = 0, y = 0;
+        for (int s = 1, t = i; s < HILBERT_SIDE; s *= 2, t /= 4) {
+            int rx = 1 & (t / 2);
+            int ry = 1 & (t ^ rx);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = s - 1 - x;
+                    y = s - 1 - y;
+                }
+                int swap = x;
+                x = y;
+                y = swap;
+            }
+            x += s * rx;
+            y += s * ry;
+        }
+        return new int[] { ORIGIN + x * PITCH_X, ORIGIN + y * PITCH_Y };
+    }
+
+    /**
+     * Node names to netlist nodes; looks names up by their bytes, so a known node costs no String.
+     *
+     * Tools number their nodes ("12", "n12", "net12"): a name made of the first such prefix and
+     * a number is looked up by that number in an array, which for a netlist listed in walking
+     * order is a sequential read. Other names go to a hash table, which tries the node made last
+     * first; a name's key keeps its last byte in the low four bits and a mix of the rest above
+     * them, so a run of names that differ in the last character fills neighbouring slots.
+     */
+    private static final class Nodes {
+        static final int MAX_DIGITS = 7; // numbers index an array
+
+        final Netlist net;
+        byte[] prefix; // of numbered names, fixed by the first one
+        int[] numbered; // node by number, 0 = not made yet
+        byte[] pool = new byte[4096]; // names of the hashed nodes, back to back by node
+        int poolLen;
+        int[] nameEnd;
+        long[] table = new long[1024]; // key << 32 | node, 0 = free; linear probing, at most half full
+        int hashed;
+        int last; // hashed node made last
+
+        Nodes(Netlist net, int expected) {
+            this.net = net;
+            nameEnd = new int[expected + 1];
+            numbered = new int[expected + 1];
+        }
+
+        int of(byte[] b, int from, int to) {
+            int number = number(b, from, to);
+            if (number <= 0) return named(b, from, to);
+            if (number >= numbered.length) numbered = Arrays.copyOf(numbered, Math.max(number + 1, numbered.length * 2));
+            int node = numbered[number];
+            return (node != 0) ? node : (numbered[number] = add());
+        }
+
+        private int named(byte[] b, int from, int to) {
+            int n = to - from;
+            if ((n == 1 && b[from] == '0') || (n == 3 && (b[from] | 0x20) == 'g' && (b[from + 1] | 0x20) == 'n'
+                    && (b[from + 2] | 0x20) == 'd')) return 0;
+            if (last > 0 && same(last, b, from, to)) return last;
+            int key = key(b, from, to);
+            int mask = table.length - 1;
+            for (int k = key & mask; ; k = (k + 1) & mask) {
+                long slot = table[k];
+                if (slot == 0) return hash(k, key, b, from, n);
+                if ((int) (slot >>> 32) == key && same((int) slot, b, from, to)) return (int) slot;
+            }
+        }
+
+        // the number of a prefix-and-number name, or 0 when it is not one (or has leading zeros)
+        private int number(byte[] b, int from, int to) {
+            if (prefix == null) {
+                int d = to;
+                while (d > from && b[d - 1] >= '0' && b[d - 1] <= '9') d--;
+                if (d == to || b[d] == '0') return 0; // not from ground's "0"
+                prefix = Arrays.copyOfRange(b, from, d);
+            }
+            int d = from + prefix.length;
+            if (d >= to || to - d > MAX_DIGITS || b[d] == '0') return 0;
+            for (int i = from; i < d; i++) if (b[i] != prefix[i - from]) return 0;
+            int v = 0;
+            for (int i = d; i < to; i++) {
+                int c = b[i] - '0';
+                if (c < 0 || c > 9) return 0;
+                v = v * 10 + c;
+            }
+            return v;
+        }
+
+        private boolean same(int node, byte[] b, int from, int to) {
+            int start = nameEnd[node - 1];
+            return nameEnd[node] - start == to - from && Arrays.equals(pool, start, nameEnd[node], b, from, to);
+        }
+
+        private static int key(byte[] b, int from, int to) {
+            int h = 0;
+            for (int i = from; i < to - 1; i++) h = 31 * h + b[i];
+            h *= 0x9E3779B9;
+            return (h ^ (h >>> 16)) << 4 | (b[to - 1] & 15);
+        }
+
+        // a new node with an empty entry in the pool
+        private int add() {
+            int node = net.newNode();
+            if (node == nameEnd.length) nameEnd = Arrays.copyOf(nameEnd, node * 2);
+            nameEnd[node] = poolLen;
+            return node;
+        }
+
+        private int hash(int k, int key, byte[] b, int from, int n) {
+            if (poolLen + n > pool.length) pool = Arrays.copyOf(pool, Math.max(poolLen + n, pool.length * 2));
+            System.arraycopy(b, from, pool, poolLen, n);
+            poolLen += n;
+            int node = add();
+            table[k] = (long) key << 32 | node;
+            if (++hashed * 2 > table.length) grow();
+            return last = node;
+        }
+
+        private void grow() {
+            long[] old = table;
+            table = new long[old.length * 2];
+            int mask = table.length - 1;
+            for (long slot : old) {
+                if (slot == 0) continue;
+                int k = (int) (slot >>> 32) & mask;
+                while (table[k] != 0) k = (k + 1) & mask;
+                table[k] = slot;
+            }
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package io;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Number parsing for circuit files: plain doubles plus the SPICE scale suffixes f, p, n, u, m, k,
+ * meg, g, t (case-insensitive). Unit letters after the suffix are ignored, so "4.7uF", "10k" and
+ * "2meg" all work; as in SPICE a bare "F" means femto, not farad.
+ */
+public final class Values {
+    // 10^0 .. 10^22 are exact doubles
+    private static final double[] POW10 = new double[23];
+
+    static {
+        POW10[0] = 1.0;
+        for (int i = 1; i < POW10.length; i++) POW10[i] = POW10[i - 1] * 10.0;
+    }
+
+    private Values() {
+    }
+
+    public static double parse(String text) {
+        return parse(text, 0, text.length());
+    }
+
+    /** Same as {@link #parse(String)} for text[start, end); allocates nothing for usual numbers. */
+    public static double parse(CharSequence text, int start, int end) {
+        int i = start;
+        // longest prefix that is a number
+        if (i < end && (text.charAt(i) == '+' || text.charAt(i) == '-')) i++;
+        while (i < end && (Character.isDigit(text.charAt(i)) || text.charAt(i) == '.')) i++;
+        if (i < end && (text.charAt(i) == 'e' || text.charAt(i) == 'E')) {
+            int j = i + 1;
+            if (j < end && (text.charAt(j) == '+' || text.charAt(j) == '-')) j++;
+            if (j < end && Character.isDigit(text.charAt(j))) {
+                i = j;
+                while (i < end && Character.isDigit(text.charAt(i))) i++;
+            }
+        }
+        if (i == start) throw new NumberFormatException("Not a number: " + text.subSequence(start, end));
+        return decimal(text, start, i) * scale(text, i, end);
+    }
+
+    /**
+     * Same as {@link #parse(CharSequence, int, int)} for Latin-1 bytes text[start, end): a plain
+     * decimal such as "4.7k" or "10u" is read in one pass, anything else (an exponent, more than
+     * 15 digits) goes through the text path.
+     */
+    public static double parse(byte[] text, int start, int end) {
+        int i = start;
+        boolean negative = false;
+        if (i < end && (text[i] == '+' || text[i] == '-')) negative = text[i++] == '-';
+        long mantissa = 0;
+        int digits = 0, scale = 0;
+        boolean dot = false, any = false;
+        for (; i < end; i++) {
+            int c = text[i];
+            if (c >= '0' && c <= '9') {
+                any = true;
+                if (mantissa == 0 && c == '0') {
+                    if (dot) scale--;
+                    continue;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                digits++;
+                if (dot) scale--;
+            } else if (c == '.') {
+                if (dot) return slow(text, start, end); // "1.2.3" is not a number
+                dot = true;
+            } else {
+                break;
+            }
+        }
+        if (!any || digits > 15 || scale < -22 || i < end && (text[i] | 0x20) == 'e') return slow(text, start, end);
+        double v = (scale == 0) ? mantissa : mantissa / POW10[-scale];
+        if (negative) v = -v;
+        return (i == end) ? v : v * scale(text, i, end);
+    }
+
+    private static double slow(byte[] text, int start, int end) {
+        return parse(new String(text, start, end - start, StandardCharsets.ISO_8859_1));
+    }
+
+    private static double scale(byte[] text, int at, int end) {
+        boolean meg = at + 3 <= end && (text[at + 1] | 0x20) == 'e' && (text[at + 2] | 0x20) == 'g';
+        return scale(Character.toLowerCase((char) (text[at] & 0xFF)), meg);
+    }
+
+    /**
+     * Double.parseDouble of text[start, end). Up to 15 significant digits and a power of ten
+     * within 10^22 need one exact multiplication or division, which rounds like parseDouble
+     * does; anything else goes to parseDouble.
+     */
+    private static double decimal(CharSequence text, int start, int end) {
+        int i = start;
+        boolean negative = text.charAt(i) == '-';
+        if (negative || text.charAt(i) == '+') i++;
+        long mantissa = 0;
+        int digits = 0, scale = 0, exp = 0;
+        boolean dot = false, any = false;
+        for (; i < end; i++) {
+            char c = text.charAt(i);
+            if (c == '.') {
+                if (dot) return slow(text, start, end);
+                dot = true;
+            } else if (c >= '0' && c <= '9') {
+                any = true;
+                if (mantissa == 0 && c == '0') {
+                    if (dot) scale--;
+                    continue; // leading zeros are not significant
+                }
+                if (++digits > 15) return slow(text, start, end);
+                mantissa = mantissa * 10 + (c - '0');
+                if (dot) scale--;
+            } else {
+                break; // the exponent
+            }
+        }
+        if (!any) return slow(text, start, end);
+        if (i < end) {
+            i++;
+            boolean expNegative = text.charAt(i) == '-';
+            if (expNegative || text.charAt(i) == '+') i++;
+            for (; i < end; i++) {
+                exp = exp * 10 + (text.charAt(i) - '0');
+                if (exp > 400) return slow(text, start, end);
+            }
+            if (expNegative) exp = -exp;
+        }
+        int e = scale + exp;
+        if (e < -22 || e > 22) return slow(text, start, end);
+        double v = (e >= 0) ? mantissa * POW10[e] : mantissa / POW10[-e];
+        return negative ? -v : v;
+    }
+
+    private static double slow(CharSequence text, int start, int end) {
+        return Double.parseDouble(text.subSequence(start, end).toString());
+    }
+
+    private static double scale(CharSequence text, int at, int end) {
+        if (at >= end) return 1.0;
+        boolean meg = at + 3 <= end && Character.toLowerCase(text.charAt(at + 1)) == 'e'
+                && Character.toLowerCase(text.charAt(at + 2)) == 'g';
+        return scale(Character.toLowerCase(text.charAt(at)), meg);
+    }
+
+    // c is the lower-case suffix letter; meg says whether "eg" follows it
+    private static double scale(char c, boolean meg) {
+        if (c == 'm' && meg) return 1e6;
+        return switch (c) {
+            case 'f' -> 1e-15;
+            case 'p' -> 1e-12;
+            case 'n' -> 1e-9;
+            case 'u', 'µ' -> 1e-6;
+            case 'm' -> 1e-3;
+            case 'k' -> 1e3;
+            case 'g' -> 1e9;
+            case 't' -> 1e12;
+            default -> 1.0; // unit letters such as "V", "Hz", "ohm"
+        };
+    }
+}
@@ -0,0 +1,187 @@
+package main;
+
+import io.CircuitFile;
+import io.ResultFormat;
+import io.SpiceFile;
+import simulation.MnaSolver;
+import simulation.OperatingPoint;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Batch entry point without a window: evaluates circuit files (see {@link CircuitFile}) and SPICE
+ * netlists (see {@link SpiceFile}, solved by nodal analysis) and prints one result per file as
+ * CSV or JSON.
+ *
+ * <pre>
+ *   java -cp bin main.HeadlessMain [--json] [--threads N] [--out FILE] FILE|DIR...
+ * </pre>
+ * Directories are scanned (not recursively) for *.circ files and netlists. Nothing here shows a
+ * window, so it runs on machines without a display.
+ */
+public class HeadlessMain {
+    private static final String EXTENSION = ".circ";
+
+    public static void main(String[] args) throws Exception {
+        boolean json = false;
+        int threads = Runtime.getRuntime().availableProcessors();
+        Path out = null;
+        List<Path> inputs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--json" -> json = true;
+                case "--csv" -> json = false;
+                case "--threads" -> {
+                    String n = (i + 1 < args.length) ? args[++i] : null;
+                    try {
+                        threads = Math.max(1, Integer.parseInt(n));
+                    } catch (NumberFormatException ex) {
+                        badArguments("--threads needs a number, got " + (n != null ? "'" + n + "'" : "nothing"));
+                    }
+                }
+                case "--out" -> {
+                    if (i + 1 >= args.length) badArguments("--out needs a file name");
+                    out = path(args[++i]);
+                }
+                case "-h", "--help" -> {
+                    usage();
+                    return;
+                }
+                default -> {
+                    if (args[i].startsWith("--")) badArguments("unknown option " + args[i]);
+                    inputs.add(path(args[i]));
+                }
+            }
+        }
+        if (inputs.isEmpty()) {
+            usage();
+            System.exit(2);
+        }
+
+        List<Path> files = collect(inputs);
+        String[] rows = evaluateAll(files, threads, json);
+
+        Writer w = (out != null)
+                ? Files.newBufferedWriter(out, StandardCharsets.UTF_8)
+                : new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+        try {
+            if (json) {
+                w.write("[\n");
+                for (int i = 0; i < rows.length; i++) {
+                    w.write("  ");
+                    w.write(rows[i]);
+                    w.write(i + 1 < rows.length ? ",\n" : "\n");
+                }
+                w.write("]\n");
+            } else {
+                w.write(ResultFormat.CSV_HEADER);
+                w.write('\n');
+                for (String row : rows) {
+                    w.write(row);
+                    w.write('\n');
+                }
+            }
+        } finally {
+            if (out != null) w.close(); else w.flush();
+        }
+    }
+
+    private static void usage() {
+        System.err.println("usage: HeadlessMain [--json|--csv] [--threads N] [--out FILE] FILE|DIR...");
+    }
+
+    // same exit as a missing input: the message, the usage line and status 2
+    private static void badArguments(String message) {
+        System.err.println("HeadlessMain: " + message);
+        usage();
+        System.exit(2);
+    }
+
+    private static Path path(String name) {
+        try {
+            return Paths.get(name);
+        } catch (InvalidPathException ex) {
+            badArguments("bad path '" + name + "': " + ex.getReason());
+            return null;
+        }
+    }
+
+    private static List<Path> collect(List<Path> inputs) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (Path p : inputs) {
+            if (Files.isDirectory(p)) {
+                try (Stream<Path> s = Files.list(p)) {
+                    s.filter(f -> (f.getFileName().toString().endsWith(EXTENSION) || SpiceFile.isNetlist(f))
+                                    && Files.isRegularFile(f))
+                            .sorted()
+                            .forEach(files::add);
+                }
+            } else {
+                files.add(p);
+            }
+        }
+        return files;
+    }
+
+    // one output row per file, in input order
+    private static String[] evaluateAll(List<Path> files, int threads, boolean json) throws Exception {
+        String[] rows = new String[files.size()];
+        if (threads == 1 || files.size() < 2) {
+            double[] z = new double[2];
+            for (int i = 0; i < rows.length; i++) rows[i] = evaluate(files.get(i), z, json);
+            return rows;
+        }
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, files.size()));
+        try {
+            List<Future<String>> pending = new ArrayList<>(files.size());
+            for (Path f : files) pending.add(pool.submit(() -> evaluate(f, new double[2], json)));
+            for (int i = 0; i < rows.length; i++) rows[i] = pending.get(i).get();
+        } finally {
+            pool.shutdown();
+        }
+        return rows;
+    }
+
+    private static String evaluate(Path file, double[] z, boolean json) {
+        String name = file.toString();
+        try {
+            OperatingPoint op;
+            if (SpiceFile.isNetlist(file)) {
+                op = evaluateNetlist(SpiceFile.read(file));
+            } else {
+                CircuitFile c = CircuitFile.read(file);
+                op = OperatingPoint.evaluate(c.program, c.voltage, c.frequency, c.bulb, c.bulbRatedPower, z);
+            }
+            return json ? ResultFormat.json(name, op) : ResultFormat.csv(name, op);
+        } catch (IOException | RuntimeException ex) {
+            String msg = ex.getMessage() != null ? ex.getMessage() : ex.toString();
+            return json ? ResultFormat.jsonError(name, msg) : ResultFormat.csvError(name, msg);
+        }
+    }
+
+    private static OperatingPoint evaluateNetlist(SpiceFile s) {
+        if (s.source < 0) throw new IllegalArgumentException(s.name + ": no voltage source");
+        double voltage = s.net.valueOf(s.source);
+        MnaSolver.Result r = new MnaSolver().compute(s.net, s.frequency); // no parts to write back to
+        double power = Double.NaN;
+        if (s.bulb >= 0) {
+            double i = r.currentThrough(s.net, s.bulb);
+            power = i * i * s.net.valueOf(s.bulb);
+        }
+        return OperatingPoint.ofNodal(voltage, s.frequency, r, power, (s.bulb >= 0) ? s.bulbRatedPower : 1.0);
+    }
+}
@@ -0,0 +1,70 @@
+package metrics;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Named timer over a {@link LatencyHistogram}, for code paths whose latency users feel.
+ *
+ * <pre>
+ *     long t = PAINT.start();
+ *     ...
+ *     PAINT.stop(t);
+ * </pre>
+ *
+ * All probes are switched on and off together, and start off unless the JVM runs with
+ * {@code -Dcircuit.probes=true}. While off, start() is a single volatile read and stop() a
+ * compare, so probes stay compiled into production builds.
+ */
+public class Probe {
+    /** What {@link #start()} returns while probes are off; {@link #stop} ignores it. */
+    public static final long OFF = Long.MIN_VALUE;
+
+    private static volatile boolean enabled = Boolean.getBoolean("circuit.probes");
+    private static final List<Probe> ALL = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    private Probe(String name) {
+        this.name = name;
+    }
+
+    /** The probe with this name, created on first use; listed in {@link #all()} in that order. */
+    public static synchronized Probe named(String name) {
+        for (Probe p : ALL) {
+            if (p.name.equals(name)) return p;
+        }
+        Probe p = new Probe(name);
+        ALL.add(p);
+        return p;
+    }
+
+    public static List<Probe> all() {
+        return ALL;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    public long start() {
+        return enabled ? System.nanoTime() : OFF;
+    }
+
+    public void stop(long start) {
+        if (start != OFF) histogram.record(System.nanoTime() - start);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+}
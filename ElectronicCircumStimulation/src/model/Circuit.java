@@ -4,8 +4,13 @@ import components.Bulb;
 import components.Capacitor;
 import components.Components;
 import components.CompositeComponent;
+import components.Wire;
+import metrics.Probe;
+import simulation.CompiledCircuit;
+import simulation.Netlist;
 
 import java.awt.Point;
+import java.awt.Rectangle;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -13,20 +18,86 @@ public class Circuit {
     private final List<Components> components = new ArrayList<>();
     private CompositeComponent root;
 
+    // Incremented by every structural edit; value edits do not touch it
+    private int topologyVersion;
+    private CompiledCircuit program;
+    private int programVersion = -1;
+    // connections of an imported board, which has no tree; they hold until the structure changes
+    private Netlist netlist;
+    private int netlistVersion;
+
+    private final List<CircuitListener> listeners = new ArrayList<>();
+
+    // hit areas of the top-level components, kept in step with every edit below
+    private final SpatialGrid index = new SpatialGrid();
+    private final SpatialGrid.HitTest deepHit = this::hitDeep;
+    // frozen copies of the top-level components by drawing order, for snapshot()
+    private PersistentVector<Components> frozenParts = PersistentVector.empty();
+    private static final Probe HIT_TEST = Probe.named("selectableAt");
+
+    public void addListener(CircuitListener l) {
+        listeners.add(l);
+    }
+
+    public void removeListener(CircuitListener l) {
+        listeners.remove(l);
+    }
+
     public void addComponent(Components component) {
         components.add(component);
+        index.add(component, hitArea(component));
+        refreeze(component);
+        topologyVersion++;
         rebuildCircuit();
+        fireStructureChanged();
     }
 
     public void removeComponent(Components component) {
         components.remove(component);
+        unfreeze(component);
+        index.remove(component);
+        topologyVersion++;
         rebuildCircuit();
+        fireStructureChanged();
+    }
+
+    /** Replaces the whole board; root may be null to let it be built as for a new board. */
+    public void setComponents(List<Components> components, CompositeComponent root) {
+        replace(components, root, null);
     }
 
-    public void setComponents(List<Components> components) {
+    /**
+     * Replaces the whole board with parts joined by a netlist whose elements are those parts, as
+     * imported from a file. Such a board gets no series/parallel tree: it is solved through
+     * {@link #getNetlist()}, and once its structure is edited its parts stay unconnected until
+     * they are wired up.
+     */
+    public void importNetlist(List<Components> components, Netlist net) {
+        replace(components, null, net);
+    }
+
+    /** The imported netlist joining the parts, or null if there is none or the structure changed since. */
+    public Netlist getNetlist() {
+        return (netlistVersion == topologyVersion) ? netlist : null;
+    }
+
+    private void replace(List<Components> components, CompositeComponent root, Netlist net) {
+        this.root = root;
+        this.netlist = net;
         this.components.clear();
         this.components.addAll(components);
+        index.clear(components.size());
+        List<Components> frozen = new ArrayList<>(components.size());
+        for (Components c : components) {
+            if (c instanceof CompositeComponent group) group.relink();
+            index.add(c, hitArea(c));
+            frozen.add(c.frozen());
+        }
+        frozenParts = PersistentVector.of(frozen); // a cleared index hands out orders 0, 1, 2, ...
+        topologyVersion++;
+        netlistVersion = topologyVersion;
         rebuildCircuit();
+        fireStructureChanged();
     }
 
     public List<Components> getComponents() {
@@ -37,6 +108,31 @@ public class Circuit {
         return root;
     }
 
+    /** First component of the given type, looking inside groups too (top-level first). */
+    public <T extends Components> T findFirst(Class<T> type) {
+        for (Components c : components) {
+            if (type.isInstance(c)) return type.cast(c);
+        }
+        for (Components c : components) {
+            if (c instanceof CompositeComponent comp) {
+                T found = findIn(comp, type);
+                if (found != null) return found;
+            }
+        }
+        return null;
+    }
+
+    private <T extends Components> T findIn(CompositeComponent comp, Class<T> type) {
+        for (Components child : comp.getChildren()) {
+            if (type.isInstance(child)) return type.cast(child);
+            if (child instanceof CompositeComponent sub) {
+                T found = findIn(sub, type);
+                if (found != null) return found;
+            }
+        }
+        return null;
+    }
+
     public void connect(Components a, Components b, CompositeComponent.Mode mode) {
         if (a == null || b == null || a == b) return;
 
@@ -49,16 +145,123 @@ public class Circuit {
         // remove top-level a,b
         components.remove(a);
         components.remove(b);
+        unfreeze(a);
+        unfreeze(b);
+        index.remove(a);
+        index.remove(b);
 
         // add new group as top-level
         components.add(group);
+        index.add(group, hitArea(group));
+        refreeze(group);
 
         // root = group nếu chỉ muốn root là cụm lớn nhất
         root = group;
+        topologyVersion++;
+        fireStructureChanged();
+    }
+
+    /** Moves a top-level component. Geometry only: the topology and the program are untouched. */
+    public void moveComponent(Components c, int x, int y) {
+        Point p = c.getPosition();
+        if (p.x == x && p.y == y) return;
+        Rectangle before = c.getBounds();
+        c.setPosition(x, y);
+        index.update(c, hitArea(c));
+        refreeze(c);
+        for (int i = 0; i < listeners.size(); i++) listeners.get(i).componentMoved(c, before);
+    }
+
+    public void setSelected(Components c, boolean selected) {
+        if (c.isSelected() == selected) return;
+        c.setSelected(selected);
+        refreeze(c);
+        for (int i = 0; i < listeners.size(); i++) listeners.get(i).selectionChanged(c);
+    }
+
+    /** Tells listeners that a value of c was changed through one of its setters. */
+    public void valueChanged(Components c) {
+        refreeze(c);
+        for (int i = 0; i < listeners.size(); i++) listeners.get(i).valueChanged(c);
+    }
+
+    // ---- exact inverses for EditHistory: no rebuild, the caller puts the root back itself ----
+
+    int positionOf(Components c) {
+        return components.indexOf(c);
+    }
+
+    int orderOf(Components c) {
+        return index.orderOf(c);
+    }
+
+    /** Puts a top-level component back where it was in the list and in the drawing order. */
+    void restoreComponent(Components c, int position, int order) {
+        components.add(position, c);
+        index.add(c, hitArea(c), order);
+        refreeze(c);
+        topologyVersion++;
+        fireStructureChanged();
+    }
+
+    void detachComponent(Components c) {
+        components.remove(c);
+        unfreeze(c);
+        index.remove(c);
+        topologyVersion++;
+        fireStructureChanged();
+    }
+
+    void setRoot(CompositeComponent root) {
+        this.root = root;
+        topologyVersion++;
+    }
+
+    /** The board as it is now with the given wires (see {@link CircuitModel#snapshot()}). */
+    CircuitSnapshot snapshot(PersistentVector<Wire> wires) {
+        return new CircuitSnapshot(frozenParts, (root != null) ? (CompositeComponent) root.frozen() : null,
+                wires, topologyVersion);
+    }
+
+    // takes new frozen copies of c and every top-level component it is part of
+    private void refreeze(Components c) {
+        int order = index.orderOf(c);
+        if (order >= 0) frozenParts = frozenParts.set(order, c.frozen());
+        List<CompositeComponent> parents = c.getParents();
+        for (int i = 0; i < parents.size(); i++) refreeze(parents.get(i));
+    }
+
+    private void unfreeze(Components c) {
+        int order = index.orderOf(c);
+        if (order >= 0) frozenParts = frozenParts.set(order, null);
+    }
+
+    private void fireStructureChanged() {
+        for (int i = 0; i < listeners.size(); i++) listeners.get(i).structureChanged();
+    }
+
+    public int getTopologyVersion() {
+        return topologyVersion;
+    }
+
+    /**
+     * The root tree compiled for repeated evaluation, or null if there is no root. The program is
+     * only rebuilt after a structural edit; value edits are patched into the existing one.
+     */
+    public CompiledCircuit getProgram() {
+        if (root == null) return null;
+        if (program == null || programVersion != topologyVersion) {
+            program = CompiledCircuit.compile(root);
+            programVersion = topologyVersion;
+        } else {
+            program.refreshParameters();
+        }
+        return program;
     }
 
 
     private void rebuildCircuit() {
+        if (netlist != null) return; // an imported board: its parts are not in series
         if (components.size() < 2) {
             root = null;
             return;
@@ -102,29 +305,72 @@ public class Circuit {
                     }
                 }
                 bulb.setLighted(shouldBeLit);
+                refreeze(bulb);
             }
         }
     }
 
     public Components selectableAt(Point p) {
-        // duyệt từ trên xuống dưới để ưu tiên component vẽ sau
-        for (int i = components.size() - 1; i >= 0; i--) {
-            Components top = components.get(i);
-            if (hitDeep(top, p)) {
-                return top; // luôn trả về TOP-LEVEL
+        return selectableAt(p.x, p.y);
+    }
+
+    /**
+     * Top-level component under the point (the one drawn last wins), or null. Looks only at the
+     * grid cell of the point and does not allocate.
+     */
+    public Components selectableAt(int px, int py) {
+        long started = HIT_TEST.start();
+        SpatialGrid.Entry e = index.topmostAt(px, py, deepHit);
+        HIT_TEST.stop(started);
+        return (e != null) ? e.component : null; // luôn trả về TOP-LEVEL
+    }
+
+    /**
+     * Innermost part under the point: the top-level component there, or the member of a group
+     * (at any depth) that contains the point. A group itself comes back only when the point is on
+     * none of its members. Null if nothing is there.
+     */
+    public Components partAt(int px, int py) {
+        Components c = selectableAt(px, py);
+        while (c instanceof CompositeComponent comp) {
+            Components member = null;
+            List<Components> children = comp.getChildren();
+            for (int i = children.size() - 1; i >= 0 && member == null; i--) {
+                if (hitDeep(children.get(i), px, py)) member = children.get(i);
             }
+            if (member == null) break;
+            c = member;
         }
-        return null;
+        return c;
+    }
+
+    /**
+     * Adds to out every top-level component whose hit area (group members included) intersects
+     * area, e.g. for rubber-band selection or drawing only what is visible. They come in drawing
+     * order, bottom first, like {@link #getComponents()}.
+     */
+    public void componentsIn(Rectangle area, List<Components> out) {
+        index.query(area.x, area.y, area.width, area.height, out);
     }
 
-    private boolean hitDeep(Components c, Point p) {
-        if (c.contains(p)) return true;
+    private boolean hitDeep(Components c, int px, int py) {
+        if (c.contains(px, py)) return true;
         if (c instanceof CompositeComponent comp) {
-            for (Components child : comp.getChildren()) {
-                if (hitDeep(child, p)) return true;
+            List<Components> children = comp.getChildren();
+            for (int i = 0; i < children.size(); i++) {
+                if (hitDeep(children.get(i), px, py)) return true;
             }
         }
         return false;
     }
 
+    // everything hitDeep can return true for: own handle plus all members of a group
+    private static Rectangle hitArea(Components c) {
+        Rectangle r = c.getHitBounds();
+        if (c instanceof CompositeComponent comp) {
+            for (Components child : comp.getChildren()) r.add(hitArea(child));
+        }
+        return r;
+    }
+
 }
\ No newline at end of file
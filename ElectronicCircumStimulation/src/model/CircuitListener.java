@@ -0,0 +1,23 @@
+package model;
+
+import components.Components;
+
+import java.awt.Rectangle;
+
+/**
+ * Change notifications from {@link Circuit}, fine-grained enough for a view to repaint only what
+ * changed. All callbacks come on the thread that edited the circuit (the EDT).
+ */
+public interface CircuitListener {
+    /** Top-level component c was moved; before is its bounds prior to the move. */
+    void componentMoved(Components c, Rectangle before);
+
+    /** The selection flag of c changed. */
+    void selectionChanged(Components c);
+
+    /** A value of c changed in place, and with it its label. */
+    void valueChanged(Components c);
+
+    /** Components were added, removed, grouped or replaced. */
+    void structureChanged();
+}
@@ -1,16 +1,15 @@
 package model;
 
 import components.*;
+import simulation.Netlist;
 
 import java.awt.Point;
-import java.util.ArrayList;
 import java.util.List;
 
 public class CircuitModel {
     public Circuit circuit;
-    public List<Wire> wires;
-    public final List<CircuitMemento> undoStack;
-    public final List<CircuitMemento> redoStack;
+    public final VersionedList<Wire> wires;
+    public final EditHistory history;
     public Components dragging = null;
     public Point dragOffset = null;
     public Components firstSelected = null;
@@ -18,14 +17,18 @@ public class CircuitModel {
 
     public CircuitModel() {
         this.circuit = new Circuit();
-        this.wires = new ArrayList<>();
-        this.undoStack = new ArrayList<>();
-        this.redoStack = new ArrayList<>();
+        this.wires = new VersionedList<>();
+        this.history = new EditHistory(circuit, wires, EditHistory.DEFAULT_BUDGET);
     }
 
     public Circuit getCircuit() { return circuit; }
     public List<Wire> getWires() { return wires; }
 
+    /** The board and its wires as they are now, to read on another thread; O(1). */
+    public CircuitSnapshot snapshot() {
+        return circuit.snapshot(wires.version());
+    }
+
     public void addComponent(Components c) {
         circuit.addComponent(c);
     }
@@ -40,20 +43,34 @@ public class CircuitModel {
         circuit.connect(c1, c2, mode);
     }
 
-    // --- Memento / Undo Logic ---
-    public void saveState() {
-        redoStack.clear();
-        undoStack.add(new CircuitMemento(circuit, wires));
+    /** Puts a different board in place of this one (e.g. an opened file); it cannot be undone. */
+    public void replaceBoard(List<Components> components, CompositeComponent root, List<Wire> wires) {
+        clearBoard();
+        this.wires.addAll(wires);
+        circuit.setComponents(components, root);
+        history.clear();
     }
 
-    public void undo() {
-        if (undoStack.isEmpty()) return;
-        CircuitMemento memento = undoStack.remove(undoStack.size() - 1);
-        redoStack.add(new CircuitMemento(circuit, wires));
-        
-        // Restore
-        this.circuit.setComponents(memento.getComponents());
+    /** Puts imported parts joined by net in place of this board (see {@link Circuit#importNetlist}). */
+    public void importNetlist(List<Components> components, Netlist net) {
+        clearBoard();
+        circuit.importNetlist(components, net);
+        history.clear();
+    }
+
+    private void clearBoard() {
+        dragging = null;
+        firstSelected = null;
+        secondSelected = null;
         this.wires.clear();
-        this.wires.addAll(memento.getWires());
+    }
+
+    // --- Undo Logic ---
+    public void undo() {
+        history.undo();
+    }
+
+    public void redo() {
+        history.redo();
     }
 }
\ No newline at end of file
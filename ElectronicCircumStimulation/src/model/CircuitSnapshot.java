@@ -0,0 +1,88 @@
+package model;
+
+import components.Components;
+import components.CompositeComponent;
+import components.Wire;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The board at one moment, for reading on any thread without locks (solvers, renderers,
+ * exporters) while the EDT goes on editing. Taking one is O(1): the parts are the
+ * {@link Components#frozen() frozen copies} the circuit keeps in a {@link PersistentVector} as
+ * it is edited, so consecutive snapshots share everything that did not change between them.
+ *
+ * Nothing here may be changed. Lists are built on first use by the reading thread.
+ */
+public final class CircuitSnapshot {
+    private final PersistentVector<Components> parts; // by drawing order, null where removed
+    private final CompositeComponent root;
+    private final PersistentVector<Wire> wires;        // the live wires; their ends are resolved below
+    private final int topologyVersion;
+
+    private volatile List<Components> components;
+    private volatile List<Wire> frozenWires;
+
+    CircuitSnapshot(PersistentVector<Components> parts, CompositeComponent root, PersistentVector<Wire> wires,
+                    int topologyVersion) {
+        this.parts = parts;
+        this.root = root;
+        this.wires = wires;
+        this.topologyVersion = topologyVersion;
+    }
+
+    /** Top-level components in drawing order, bottom first, like {@link Circuit#getComponents()}. */
+    public List<Components> getComponents() {
+        List<Components> list = components;
+        if (list == null) {
+            List<Components> out = new ArrayList<>(parts.count());
+            parts.forEach(out::add);
+            components = list = Collections.unmodifiableList(out);
+        }
+        return list;
+    }
+
+    public CompositeComponent getRoot() {
+        return root;
+    }
+
+    /**
+     * The wires, joining the frozen components. Wires to parts that are no longer on the board
+     * are left out.
+     */
+    public List<Wire> getWires() {
+        List<Wire> list = frozenWires;
+        if (list == null) {
+            // live wire ends -> their frozen copies; the live parts are only used as keys, never read
+            Map<Components, Components> frozenOf = new IdentityHashMap<>();
+            wires.forEach(w -> {
+                frozenOf.put(w.getA(), null);
+                frozenOf.put(w.getB(), null);
+            });
+            if (!frozenOf.isEmpty()) parts.forEach(c -> collect(c, frozenOf));
+            List<Wire> out = new ArrayList<>(wires.size());
+            wires.forEach(w -> {
+                Components a = frozenOf.get(w.getA()), b = frozenOf.get(w.getB());
+                if (a != null && b != null) out.add(new Wire(a, b, w.getType()));
+            });
+            frozenWires = list = Collections.unmodifiableList(out);
+        }
+        return list;
+    }
+
+    /** {@link Circuit#getTopologyVersion()} when this was taken. */
+    public int getTopologyVersion() {
+        return topologyVersion;
+    }
+
+    private static void collect(Components frozen, Map<Components, Components> frozenOf) {
+        if (frozenOf.containsKey(frozen.getOriginal())) frozenOf.put(frozen.getOriginal(), frozen);
+        if (frozen instanceof CompositeComponent group) {
+            for (Components c : group.getChildren()) collect(c, frozenOf);
+        }
+    }
+}
@@ -0,0 +1,440 @@
+package model;
+
+import components.Components;
+import components.CompositeComponent;
+import components.Wire;
+import metrics.Probe;
+
+import java.awt.Point;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.DoubleConsumer;
+
+/**
+ * Undo and redo as reversible edits rather than copies of the board.
+ *
+ * An edit keeps only what it needs to be reverted exactly: the part, where it sat in the list
+ * and in the drawing order, the root before and after, old and new position or value. Recording
+ * or undoing one therefore costs the same on a board of ten parts or ten thousand (apart from
+ * finding a part's list position). Every entry is charged an estimated size, and once the
+ * history goes over its byte budget the oldest entries are dropped.
+ *
+ * Edits are undone strictly in reverse order, so each one finds the board exactly as it left it.
+ * Anything that changes the board without going through here (e.g. replacing it wholesale) must
+ * {@link #clear()} the history.
+ *
+ * A {@link Listener} hears what every edit, undo and redo did to the board, e.g. to keep a
+ * journal of the session.
+ */
+public class EditHistory {
+    public static final long DEFAULT_BUDGET = 1 << 20; // bytes
+
+    // rough retained sizes: an edit and its deque slot, a part or group kept alive by an edit, a wire
+    private static final int EDIT_BYTES = 64;
+    private static final int PART_BYTES = 160;
+    private static final int WIRE_BYTES = 32;
+
+    /**
+     * What edits did to the board, told on the EDT right after each change. Undo and redo come
+     * as the changes they make (an undone add is a removal), so replaying the calls in order
+     * rebuilds the board without knowing about the history.
+     */
+    public interface Listener {
+        /** c is on the board as a top-level component: new, or back after an undo or redo. */
+        void placed(Components c);
+
+        /** Top-level component c left the board. */
+        void removed(Components c);
+
+        /** Top-level component c is at a new position. */
+        void moved(Components c);
+
+        /** The two ends of wire left the board as members of group, which took their place. */
+        void grouped(CompositeComponent group, Wire wire);
+
+        /** Opposite of grouped: group left the board, its members are back on it. */
+        void ungrouped(CompositeComponent group, Wire wire);
+
+        /** A value of c, which may be inside a group, changed. */
+        void valueChanged(Components c);
+
+        /** The root the simulation starts from may have changed. */
+        void rootChanged(CompositeComponent root);
+
+        /** The history was cleared because the whole board was replaced. */
+        void cleared();
+    }
+
+    private interface Edit {
+        void undo();
+
+        void redo();
+
+        long bytes();
+    }
+
+    private static final Probe UNDO = Probe.named("undo");
+    private static final int[] NO_WIRES = {};
+
+    private final Circuit circuit;
+    private final VersionedList<Wire> wires;
+    private final long budget;
+    private final Deque<Edit> undo = new ArrayDeque<>();
+    private final Deque<Edit> redo = new ArrayDeque<>();
+    private long bytes;
+    private Listener listener;
+
+    public EditHistory(Circuit circuit, VersionedList<Wire> wires, long budget) {
+        this.circuit = circuit;
+        this.wires = wires;
+        this.budget = budget;
+    }
+
+    /** Adds c on top of the board. */
+    public void add(Components c) {
+        CompositeComponent rootBefore = circuit.getRoot();
+        circuit.addComponent(c);
+        record(new Placed(c, circuit.positionOf(c), circuit.orderOf(c), rootBefore, circuit.getRoot(),
+                NO_WIRES, List.of()));
+        if (listener != null) {
+            listener.placed(c);
+            listener.rootChanged(circuit.getRoot());
+        }
+    }
+
+    /** Removes top-level component c from the board, and with it the wires between its members. */
+    public void remove(Components c) {
+        CompositeComponent rootBefore = circuit.getRoot();
+        int position = circuit.positionOf(c);
+        int order = circuit.orderOf(c);
+        // a wire only ever joins two parts that were then grouped, so both its ends are inside c or neither
+        Set<Components> inside = Collections.newSetFromMap(new IdentityHashMap<>());
+        members(c, inside);
+        List<Wire> attached = new ArrayList<>();
+        int[] wireAt = new int[wires.size()];
+        for (int i = 0; i < wires.size(); i++) {
+            Wire w = wires.get(i);
+            if (inside.contains(w.getA())) {
+                wireAt[attached.size()] = i;
+                attached.add(w);
+            }
+        }
+        wireAt = Arrays.copyOf(wireAt, attached.size());
+        wires.removeAll(wireAt);
+        circuit.removeComponent(c);
+        record(new Inverse(new Placed(c, position, order, circuit.getRoot(), rootBefore, wireAt, attached)));
+        if (listener != null) {
+            listener.removed(c);
+            listener.rootChanged(circuit.getRoot());
+        }
+    }
+
+    /** Records a move that was already shown live, e.g. a whole drag: c used to be at from. */
+    public void moved(Components c, Point from) {
+        Point to = c.getPosition();
+        if (to.equals(from)) return;
+        record(new Moved(c, from.x, from.y, to.x, to.y));
+        if (listener != null) listener.moved(c);
+    }
+
+    /** Wires top-level components a and b together and groups them. */
+    public void connect(Components a, Components b, Wire.Type type) {
+        if (a == null || b == null || a == b) return;
+        CompositeComponent rootBefore = circuit.getRoot();
+        int posA = circuit.positionOf(a), orderA = circuit.orderOf(a);
+        int posB = circuit.positionOf(b), orderB = circuit.orderOf(b);
+        if (posA < 0 || posB < 0) throw new IllegalArgumentException("only top-level components can be connected");
+        Wire wire = new Wire(a, b, type);
+        wires.add(wire);
+        circuit.connect(a, b, (type == Wire.Type.SERIES)
+                ? CompositeComponent.Mode.SERIES
+                : CompositeComponent.Mode.PARALLEL);
+        CompositeComponent group = circuit.getRoot(); // connect makes the new group the root
+        record(new Connected(wire, group, circuit.positionOf(group), circuit.orderOf(group), rootBefore,
+                posA < posB ? a : b, Math.min(posA, posB), posA < posB ? orderA : orderB,
+                posA < posB ? b : a, Math.max(posA, posB), posA < posB ? orderB : orderA));
+        if (listener != null) {
+            listener.grouped(group, wire);
+            listener.rootChanged(group);
+        }
+    }
+
+    /** Sets a value of c through setter (e.g. {@code r::setResistance}); before is the current one. */
+    public void changeValue(Components c, DoubleConsumer setter, double before, double after) {
+        changeValues(c, new DoubleConsumer[] { setter }, new double[] { before }, new double[] { after });
+    }
+
+    /**
+     * Sets several values of c as one edit, e.g. a source's voltage and frequency from one
+     * dialog: setters[i] takes value i from before[i] to after[i].
+     */
+    public void changeValues(Components c, DoubleConsumer[] setters, double[] before, double[] after) {
+        if (Arrays.equals(before, after)) return;
+        Valued edit = new Valued(c, setters, before, after);
+        edit.redo(); // tells the listener
+        record(edit);
+    }
+
+    /** Reverts the newest edit; false if there is none. */
+    public boolean undo() {
+        Edit e = undo.pollLast();
+        if (e == null) return false;
+        long started = UNDO.start();
+        e.undo();
+        UNDO.stop(started);
+        redo.addLast(e);
+        return true;
+    }
+
+    /** Applies the last undone edit again; false if there is none. */
+    public boolean redo() {
+        Edit e = redo.pollLast();
+        if (e == null) return false;
+        long started = UNDO.start();
+        e.redo();
+        UNDO.stop(started);
+        undo.addLast(e);
+        return true;
+    }
+
+    public boolean canUndo() {
+        return !undo.isEmpty();
+    }
+
+    public boolean canRedo() {
+        return !redo.isEmpty();
+    }
+
+    /** Entries that can be undone. */
+    public int size() {
+        return undo.size();
+    }
+
+    /** Estimated memory held by undo and redo entries together. */
+    public long bytes() {
+        return bytes;
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public void clear() {
+        undo.clear();
+        redo.clear();
+        bytes = 0;
+        if (listener != null) listener.cleared();
+    }
+
+    /** Replaces the listener; null for none. */
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    private void record(Edit e) {
+        for (Edit r : redo) bytes -= r.bytes();
+        redo.clear();
+        undo.addLast(e);
+        bytes += e.bytes();
+        while (bytes > budget && undo.size() > 1) bytes -= undo.pollFirst().bytes();
+    }
+
+    private static void members(Components c, Set<Components> out) {
+        out.add(c);
+        if (c instanceof CompositeComponent group) {
+            for (Components child : group.getChildren()) members(child, out);
+        }
+    }
+
+    private static int leaves(Components c) {
+        if (!(c instanceof CompositeComponent group)) return 1;
+        int n = 0;
+        for (Components child : group.getChildren()) n += leaves(child);
+        return n;
+    }
+
+    // ---- edits ----
+
+    /** Undo and redo of another edit swapped, e.g. a removal is an addition played backwards. */
+    private record Inverse(Edit edit) implements Edit {
+        public void undo() {
+            edit.redo();
+        }
+
+        public void redo() {
+            edit.undo();
+        }
+
+        public long bytes() {
+            return edit.bytes();
+        }
+    }
+
+    /**
+     * c was put on the board at position / order; the root went from rootWithout to rootWith.
+     * The wires between its members come and go with it, at indexes wireAt of the wire list.
+     */
+    private final class Placed implements Edit {
+        final Components c;
+        final int position, order;
+        final CompositeComponent rootWithout, rootWith;
+        final int[] wireAt;
+        final List<Wire> attached;
+        final long size;
+
+        Placed(Components c, int position, int order, CompositeComponent rootWithout, CompositeComponent rootWith,
+               int[] wireAt, List<Wire> attached) {
+            this.c = c;
+            this.position = position;
+            this.order = order;
+            this.rootWithout = rootWithout;
+            this.rootWith = rootWith;
+            this.wireAt = wireAt;
+            this.attached = attached;
+            this.size = EDIT_BYTES + (long) PART_BYTES * leaves(c) + (long) WIRE_BYTES * attached.size();
+        }
+
+        public void undo() {
+            wires.removeAll(wireAt);
+            circuit.detachComponent(c);
+            circuit.setRoot(rootWithout);
+            if (listener != null) {
+                listener.removed(c);
+                listener.rootChanged(rootWithout);
+            }
+        }
+
+        public void redo() {
+            wires.insertAll(wireAt, attached);
+            circuit.restoreComponent(c, position, order);
+            circuit.setRoot(rootWith);
+            if (listener != null) {
+                listener.placed(c);
+                listener.rootChanged(rootWith);
+            }
+        }
+
+        public long bytes() {
+            return size;
+        }
+    }
+
+    private final class Moved implements Edit {
+        final Components c;
+        final int fromX, fromY, toX, toY;
+
+        Moved(Components c, int fromX, int fromY, int toX, int toY) {
+            this.c = c;
+            this.fromX = fromX;
+            this.fromY = fromY;
+            this.toX = toX;
+            this.toY = toY;
+        }
+
+        public void undo() {
+            circuit.moveComponent(c, fromX, fromY);
+            if (listener != null) listener.moved(c);
+        }
+
+        public void redo() {
+            circuit.moveComponent(c, toX, toY);
+            if (listener != null) listener.moved(c);
+        }
+
+        public long bytes() {
+            return EDIT_BYTES;
+        }
+    }
+
+    /** first and second are a and b in list order, so putting them back in that order is exact. */
+    private final class Connected implements Edit {
+        final Wire wire;
+        final CompositeComponent group;
+        final int groupPosition, groupOrder;
+        final CompositeComponent rootBefore;
+        final Components first, second;
+        final int firstPosition, firstOrder, secondPosition, secondOrder;
+
+        Connected(Wire wire, CompositeComponent group, int groupPosition, int groupOrder,
+                  CompositeComponent rootBefore, Components first, int firstPosition, int firstOrder,
+                  Components second, int secondPosition, int secondOrder) {
+            this.wire = wire;
+            this.group = group;
+            this.groupPosition = groupPosition;
+            this.groupOrder = groupOrder;
+            this.rootBefore = rootBefore;
+            this.first = first;
+            this.firstPosition = firstPosition;
+            this.firstOrder = firstOrder;
+            this.second = second;
+            this.secondPosition = secondPosition;
+            this.secondOrder = secondOrder;
+        }
+
+        public void undo() {
+            // normally the last wire: whatever was wired after it has been undone already
+            wires.remove(wires.lastIndexOf(wire));
+            circuit.detachComponent(group);
+            group.unlink();
+            circuit.restoreComponent(first, firstPosition, firstOrder);
+            circuit.restoreComponent(second, secondPosition, secondOrder);
+            circuit.setRoot(rootBefore);
+            if (listener != null) {
+                listener.ungrouped(group, wire);
+                listener.rootChanged(rootBefore);
+            }
+        }
+
+        public void redo() {
+            wires.add(wire);
+            circuit.detachComponent(first);
+            circuit.detachComponent(second);
+            group.relink();
+            circuit.restoreComponent(group, groupPosition, groupOrder);
+            circuit.setRoot(group);
+            if (listener != null) {
+                listener.grouped(group, wire);
+                listener.rootChanged(group);
+            }
+        }
+
+        public long bytes() {
+            return EDIT_BYTES + PART_BYTES + WIRE_BYTES;
+        }
+    }
+
+    private final class Valued implements Edit {
+        final Components c;
+        final DoubleConsumer[] setters;
+        final double[] before, after;
+
+        Valued(Components c, DoubleConsumer[] setters, double[] before, double[] after) {
+            this.c = c;
+            this.setters = setters;
+            this.before = before;
+            this.after = after;
+        }
+
+        public void undo() {
+            for (int i = setters.length - 1; i >= 0; i--) setters[i].accept(before[i]);
+            circuit.valueChanged(c);
+            if (listener != null) listener.valueChanged(c);
+        }
+
+        public void redo() {
+            for (int i = 0; i < setters.length; i++) setters[i].accept(after[i]);
+            circuit.valueChanged(c);
+            if (listener != null) listener.valueChanged(c);
+        }
+
+        public long bytes() {
+            return EDIT_BYTES;
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package model;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Immutable array of slots that is changed by making a new version, in the manner of Clojure's
+ * vectors: a trie of 32-wide nodes where {@link #set} copies only the nodes on the path to the
+ * slot (a handful of 32-element arrays, however large the vector) and shares all others with the
+ * old version. Keeping a version around is therefore free, and any thread may read it.
+ *
+ * Slots may be null, e.g. for parts no longer on the board; {@link #forEach} skips them.
+ */
+public final class PersistentVector<T> {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+
+    private static final PersistentVector<?> EMPTY = new PersistentVector<>(new Object[WIDTH], 0, 0, 0);
+
+    private final Object[] root;
+    private final int shift; // bits below the root's index digit; 0 when the root holds the slots
+    private final int size;
+    private final int count;
+
+    private PersistentVector(Object[] root, int shift, int size, int count) {
+        this.root = root;
+        this.shift = shift;
+        this.size = size;
+        this.count = count;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> PersistentVector<T> empty() {
+        return (PersistentVector<T>) EMPTY;
+    }
+
+    /** Slots 0 to n - 1 holding items in order, built in O(n) rather than by n calls to set. */
+    public static <T> PersistentVector<T> of(List<? extends T> items) {
+        int n = items.size(), count = 0;
+        if (n == 0) return empty();
+        Object[] level = new Object[(n + MASK) >>> BITS];
+        for (int i = 0; i < n; i++) {
+            T v = items.get(i);
+            if (v == null) continue;
+            if (level[i >>> BITS] == null) level[i >>> BITS] = new Object[WIDTH];
+            ((Object[]) level[i >>> BITS])[i & MASK] = v;
+            count++;
+        }
+        int shift = 0;
+        for (; level.length > 1; shift += BITS) {
+            Object[] up = new Object[(level.length + MASK) >>> BITS];
+            for (int i = 0; i < level.length; i++) {
+                if (up[i >>> BITS] == null) up[i >>> BITS] = new Object[WIDTH];
+                ((Object[]) up[i >>> BITS])[i & MASK] = level[i];
+            }
+            level = up;
+        }
+        Object[] root = (level[0] != null) ? (Object[]) level[0] : new Object[WIDTH];
+        return new PersistentVector<>(root, shift, n, count);
+    }
+
+    /** One more than the highest slot ever set and not popped since. */
+    public int size() {
+        return size;
+    }
+
+    /** Slots that are not null. */
+    public int count() {
+        return count;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T get(int i) {
+        if (i < 0 || i >= size) throw new IndexOutOfBoundsException(i);
+        Object[] node = root;
+        for (int s = shift; s > 0; s -= BITS) {
+            node = (Object[]) node[(i >>> s) & MASK];
+            if (node == null) return null;
+        }
+        return (T) node[i & MASK];
+    }
+
+    /** This vector with slot i set to v, grown to i + 1 slots if it was smaller. */
+    public PersistentVector<T> set(int i, T v) {
+        if (i < 0) throw new IndexOutOfBoundsException(i);
+        T old = (i < size) ? get(i) : null;
+        if (old == v && i < size) return this;
+        Object[] r = root;
+        int s = shift;
+        while ((i >>> s) > MASK) { // deeper trie: the old root becomes the first child
+            Object[] up = new Object[WIDTH];
+            up[0] = r;
+            r = up;
+            s += BITS;
+        }
+        int n = count + (old == null ? 0 : -1) + (v == null ? 0 : 1);
+        return new PersistentVector<>(setIn(r, s, i, v), s, Math.max(size, i + 1), n);
+    }
+
+    /** This vector with v in a new last slot. */
+    public PersistentVector<T> append(T v) {
+        return set(size, v);
+    }
+
+    /** This vector without its last slot. */
+    public PersistentVector<T> pop() {
+        if (size == 0) throw new IllegalStateException("empty");
+        T last = get(size - 1);
+        Object[] r = (last != null) ? setIn(root, shift, size - 1, null) : root;
+        return new PersistentVector<>(r, shift, size - 1, count - (last != null ? 1 : 0));
+    }
+
+    /** Every slot that is not null, lowest first. */
+    public void forEach(Consumer<? super T> action) {
+        forEach(root, shift, action);
+    }
+
+    /** The 32 slots from i &amp; ~31 on (null past the end of the trie), for walking in blocks. */
+    Object[] block(int i) {
+        Object[] node = root;
+        for (int s = shift; s > 0 && node != null; s -= BITS) node = (Object[]) node[(i >>> s) & MASK];
+        return node;
+    }
+
+    private static Object[] setIn(Object[] node, int s, int i, Object v) {
+        Object[] copy = (node != null) ? node.clone() : new Object[WIDTH];
+        int d = (i >>> s) & MASK;
+        copy[d] = (s == 0) ? v : setIn((Object[]) copy[d], s - BITS, i, v);
+        return copy;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> void forEach(Object[] node, int s, Consumer<? super T> action) {
+        for (Object o : node) {
+            if (o == null) continue;
+            if (s == 0) action.accept((T) o);
+            else forEach((Object[]) o, s - BITS, action);
+        }
+    }
+}
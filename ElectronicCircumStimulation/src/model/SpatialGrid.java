@@ -0,0 +1,257 @@
+package model;
+
+import components.Components;
+
+import java.awt.Rectangle;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Uniform grid over the top-level components of a {@link Circuit}, keyed on their hit area.
+ *
+ * Each component is listed in every cell its rectangle overlaps; cells live in an open-addressing
+ * table keyed by packed cell coordinates, so the board needs no fixed extent. A point query looks
+ * at one cell and does not allocate; a rectangle query only visits the cells it covers. Updates
+ * only touch the cells a component leaves or enters.
+ */
+class SpatialGrid {
+    static final int CELL_SHIFT = 6;
+    static final int CELL = 1 << CELL_SHIFT; // px
+
+    static final class Entry {
+        final Components component;
+        int order;                   // drawing order among top-level components (higher = on top)
+        int x0, y0, x1, y1;          // hit area, inclusive-exclusive like Rectangle
+        int cx0, cy0, cx1, cy1;      // covered cells, inclusive
+        int mark;                    // last query that reported this entry
+
+        Entry(Components component) {
+            this.component = component;
+        }
+
+        boolean contains(int px, int py) {
+            return px >= x0 && py >= y0 && px < x1 && py < y1;
+        }
+    }
+
+    private static final class Cell {
+        Entry[] items = new Entry[4];
+        int size;
+
+        void add(Entry e) {
+            if (size == items.length) items = Arrays.copyOf(items, size * 2);
+            items[size++] = e;
+        }
+
+        void remove(Entry e) {
+            for (int i = 0; i < size; i++) {
+                if (items[i] == e) {
+                    items[i] = items[--size];
+                    items[size] = null;
+                    return;
+                }
+            }
+        }
+    }
+
+    private Map<Components, Entry> entries = new IdentityHashMap<>();
+    private long[] keys = new long[64];
+    private Cell[] cells = new Cell[64];
+    private int used = 0;
+    private int nextOrder = 0;
+    private int stamp = 0;
+    private Entry[] found = new Entry[64];   // query scratch
+    private Entry[] byOrder = new Entry[64];  // live entries by order, null where removed
+    private static final Comparator<Entry> BY_ORDER = Comparator.comparingInt(e -> e.order);
+
+    int size() {
+        return entries.size();
+    }
+
+    void clear() {
+        clear(0);
+    }
+
+    /** Empties the grid, making room for about expected components to be added right away. */
+    void clear(int expected) {
+        entries = new IdentityHashMap<>(expected);
+        byOrder = new Entry[Math.max(64, expected)];
+        keys = new long[64];
+        cells = new Cell[64];
+        used = 0;
+        nextOrder = 0;
+    }
+
+    /** Adds c on top of everything indexed so far. */
+    void add(Components c, Rectangle area) {
+        add(c, area, nextOrder++);
+    }
+
+    /**
+     * Adds c back at the drawing order it had before it was removed (see {@link #orderOf}). Orders
+     * are never handed out twice, so the slot is still free unless the grid was cleared since.
+     */
+    void add(Components c, Rectangle area, int order) {
+        Entry e = new Entry(c);
+        e.order = order;
+        if (order >= nextOrder) nextOrder = order + 1;
+        if (order >= byOrder.length) byOrder = Arrays.copyOf(byOrder, Math.max(order + 1, byOrder.length * 2));
+        byOrder[order] = e;
+        entries.put(c, e);
+        place(e, area);
+        for (int cy = e.cy0; cy <= e.cy1; cy++) {
+            for (int cx = e.cx0; cx <= e.cx1; cx++) cell(cx, cy, true).add(e);
+        }
+    }
+
+    /** Drawing order of c, or -1 if c is not indexed. */
+    int orderOf(Components c) {
+        Entry e = entries.get(c);
+        return (e != null) ? e.order : -1;
+    }
+
+    void remove(Components c) {
+        Entry e = entries.remove(c);
+        if (e == null) return;
+        byOrder[e.order] = null;
+        for (int cy = e.cy0; cy <= e.cy1; cy++) {
+            for (int cx = e.cx0; cx <= e.cx1; cx++) {
+                Cell cell = cell(cx, cy, false);
+                if (cell != null) cell.remove(e);
+            }
+        }
+    }
+
+    /** New hit area for c; cells are only touched if the covered range changes. */
+    void update(Components c, Rectangle area) {
+        Entry e = entries.get(c);
+        if (e == null) return;
+        int ox0 = e.cx0, oy0 = e.cy0, ox1 = e.cx1, oy1 = e.cy1;
+        place(e, area);
+        if (ox0 == e.cx0 && oy0 == e.cy0 && ox1 == e.cx1 && oy1 == e.cy1) return;
+        for (int cy = oy0; cy <= oy1; cy++) {
+            for (int cx = ox0; cx <= ox1; cx++) {
+                if (cx < e.cx0 || cx > e.cx1 || cy < e.cy0 || cy > e.cy1) cell(cx, cy, false).remove(e);
+            }
+        }
+        for (int cy = e.cy0; cy <= e.cy1; cy++) {
+            for (int cx = e.cx0; cx <= e.cx1; cx++) {
+                if (cx < ox0 || cx > ox1 || cy < oy0 || cy > oy1) cell(cx, cy, true).add(e);
+            }
+        }
+    }
+
+    /** Topmost entry whose hit area contains the point and that also passes the precise test. */
+    Entry topmostAt(int px, int py, HitTest test) {
+        Cell cell = cell(px >> CELL_SHIFT, py >> CELL_SHIFT, false);
+        if (cell == null) return null;
+        Entry best = null;
+        for (int i = 0; i < cell.size; i++) {
+            Entry e = cell.items[i];
+            if ((best == null || e.order > best.order) && e.contains(px, py) && test.hit(e.component, px, py)) {
+                best = e;
+            }
+        }
+        return best;
+    }
+
+    /** Appends every component whose hit area intersects area to out, each once, bottom first. */
+    void query(int x, int y, int w, int h, List<Components> out) {
+        if (w <= 0 || h <= 0) return;
+        int x1 = x + w, y1 = y + h;
+        int q = ++stamp;
+        int n = 0;
+        for (int cy = y >> CELL_SHIFT; cy <= (y1 - 1) >> CELL_SHIFT; cy++) {
+            for (int cx = x >> CELL_SHIFT; cx <= (x1 - 1) >> CELL_SHIFT; cx++) {
+                Cell cell = cell(cx, cy, false);
+                if (cell == null) continue;
+                for (int i = 0; i < cell.size; i++) {
+                    Entry e = cell.items[i];
+                    if (e.mark == q) continue;
+                    e.mark = q;
+                    if (e.x0 < x1 && e.y0 < y1 && e.x1 > x && e.y1 > y) {
+                        if (n == found.length) found = Arrays.copyOf(found, n * 2);
+                        found[n++] = e;
+                    }
+                }
+            }
+        }
+        // a big hit set (zoomed far out) comes out in order faster by walking all entries
+        if ((long) n * (32 - Integer.numberOfLeadingZeros(n)) > nextOrder) {
+            for (int i = 0; i < n; i++) found[i] = null;
+            for (int i = 0; i < nextOrder; i++) {
+                Entry e = byOrder[i];
+                if (e != null && e.mark == q && e.x0 < x1 && e.y0 < y1 && e.x1 > x && e.y1 > y) out.add(e.component);
+            }
+            return;
+        }
+        Arrays.sort(found, 0, n, BY_ORDER);
+        for (int i = 0; i < n; i++) {
+            out.add(found[i].component);
+            found[i] = null;
+        }
+    }
+
+    interface HitTest {
+        boolean hit(Components c, int px, int py);
+    }
+
+    private static void place(Entry e, Rectangle r) {
+        e.x0 = r.x;
+        e.y0 = r.y;
+        e.x1 = r.x + Math.max(1, r.width);
+        e.y1 = r.y + Math.max(1, r.height);
+        e.cx0 = e.x0 >> CELL_SHIFT;
+        e.cy0 = e.y0 >> CELL_SHIFT;
+        e.cx1 = (e.x1 - 1) >> CELL_SHIFT;
+        e.cy1 = (e.y1 - 1) >> CELL_SHIFT;
+    }
+
+    // ---- open-addressing cell table (linear probing, cells are never removed) ----
+
+    private static long key(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private static int hash(long k) {
+        long h = k * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private Cell cell(int cx, int cy, boolean create) {
+        long k = key(cx, cy);
+        int mask = cells.length - 1;
+        int i = hash(k) & mask;
+        while (cells[i] != null) {
+            if (keys[i] == k) return cells[i];
+            i = (i + 1) & mask;
+        }
+        if (!create) return null;
+        if (2 * (used + 1) > cells.length) {
+            grow();
+            return cell(cx, cy, true);
+        }
+        keys[i] = k;
+        cells[i] = new Cell();
+        used++;
+        return cells[i];
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Cell[] oldCells = cells;
+        keys = new long[oldKeys.length * 2];
+        cells = new Cell[oldCells.length * 2];
+        int mask = cells.length - 1;
+        for (int j = 0; j < oldCells.length; j++) {
+            if (oldCells[j] == null) continue;
+            int i = hash(oldKeys[j]) & mask;
+            while (cells[i] != null) i = (i + 1) & mask;
+            keys[i] = oldKeys[j];
+            cells[i] = oldCells[j];
+        }
+    }
+}
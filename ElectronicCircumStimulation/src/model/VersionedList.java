@@ -0,0 +1,156 @@
+package model;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+
+/**
+ * Ordinary list whose contents live in a {@link PersistentVector}, so {@link #version()} hands
+ * out a read-only copy in O(1). Adding and removing at the end, {@link #set} and reading are
+ * O(log n) with a tiny constant; inserting or removing anywhere else rebuilds the vector.
+ */
+public class VersionedList<E> extends AbstractList<E> implements RandomAccess {
+    private PersistentVector<E> items = PersistentVector.empty();
+
+    /** The contents as they are now; later edits make new versions and leave this one alone. */
+    public PersistentVector<E> version() {
+        return items;
+    }
+
+    @Override
+    public int size() {
+        return items.size();
+    }
+
+    @Override
+    public E get(int index) {
+        return items.get(index);
+    }
+
+    @Override
+    public E set(int index, E element) {
+        E old = items.get(index);
+        items = items.set(index, element);
+        return old;
+    }
+
+    @Override
+    public boolean add(E e) {
+        items = items.append(e);
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> c) {
+        if (items.size() != 0 || c.isEmpty()) return super.addAll(c);
+        items = PersistentVector.of(new ArrayList<>(c)); // filling an empty list, e.g. with a board just read
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public void add(int index, E element) {
+        if (index == items.size()) {
+            add(element);
+            return;
+        }
+        if (index < 0 || index > items.size()) throw new IndexOutOfBoundsException(index);
+        rebuild(index, element, -1);
+    }
+
+    @Override
+    public E remove(int index) {
+        E old = items.get(index);
+        if (index == items.size() - 1) {
+            items = items.pop();
+            modCount++;
+        } else {
+            rebuild(-1, null, index);
+        }
+        return old;
+    }
+
+    /**
+     * Removes the elements at the given indexes, which must be ascending, in one pass over
+     * everything from the first of them on.
+     */
+    public void removeAll(int[] at) {
+        if (at.length == 0) return;
+        PersistentVector<E> old = items, v = trimmed(old, at[0]);
+        for (int i = at[0], k = 0; i < old.size(); i++) {
+            if (k < at.length && at[k] == i) k++;
+            else v = v.append(old.get(i));
+        }
+        items = v;
+        modCount++;
+    }
+
+    /**
+     * Inserts elements.get(k) so that it ends up at index at[k]; the indexes must be ascending.
+     * Exactly undoes {@link #removeAll(int[])} of the same indexes.
+     */
+    public void insertAll(int[] at, List<? extends E> elements) {
+        if (at.length == 0) return;
+        PersistentVector<E> old = items, v = trimmed(old, at[0]);
+        for (int i = at[0], k = 0; k < at.length || i < old.size(); ) {
+            if (k < at.length && at[k] == v.size()) v = v.append(elements.get(k++));
+            else v = v.append(old.get(i++));
+        }
+        items = v;
+        modCount++;
+    }
+
+    // the first n elements of v
+    private static <E> PersistentVector<E> trimmed(PersistentVector<E> v, int n) {
+        while (v.size() > n) v = v.pop();
+        return v;
+    }
+
+    @Override
+    public void clear() {
+        items = PersistentVector.empty();
+        modCount++;
+    }
+
+    // walks a block of 32 at a time instead of descending the trie for every element
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<>() {
+            final PersistentVector<E> v = items;
+            final int expected = modCount;
+            Object[] block;
+            int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < v.size();
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public E next() {
+                if (modCount != expected) throw new ConcurrentModificationException();
+                if (next >= v.size()) throw new NoSuchElementException();
+                if ((next & 31) == 0 || block == null) block = v.block(next);
+                return (E) block[next++ & 31];
+            }
+        };
+    }
+
+    // copy with element inserted at insertAt and/or the element at skip left out
+    private void rebuild(int insertAt, E element, int skip) {
+        PersistentVector<E> old = items, v = PersistentVector.empty();
+        for (int i = 0; i <= old.size(); i++) {
+            if (i == insertAt) v = v.append(element);
+            if (i < old.size() && i != skip) v = v.append(old.get(i));
+        }
+        items = v;
+        modCount++;
+    }
+}
@@ -1,9 +1,14 @@
 module application {
     requires java.desktop;
+    requires jdk.httpserver;
     requires javafx.controls;
     requires javafx.fxml;
     exports main;
     exports components;
     exports controller;
     exports view;
+    exports simulation;
+    exports io;
+    exports metrics;
+    exports server;
 }
\ No newline at end of file
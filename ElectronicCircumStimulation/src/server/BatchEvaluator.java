@@ -0,0 +1,175 @@
+package server;
+
+import io.CircuitFile;
+import simulation.CompiledCircuit;
+import simulation.OperatingPoint;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Collects circuits submitted from many request threads and evaluates those that share a
+ * topology together with {@link CompiledCircuit#evaluateBatch}.
+ *
+ * A single dispatcher thread takes whatever is queued (waiting at most {@link #MAX_WAIT_MICROS}
+ * for more once the first request arrives, and never more than {@link #MAX_BATCH}), groups it by
+ * opcode stream and runs one vectorised pass per group. Under load batches fill up by themselves;
+ * a lone request only pays the short wait.
+ *
+ * At most {@link #QUEUE_CAPACITY} circuits wait at a time. Beyond that {@link #submit} fails
+ * straight away with a {@link RejectedExecutionException}, so an overload turns into refusals the
+ * caller can retry instead of a queue whose wait grows without bound.
+ */
+public class BatchEvaluator implements AutoCloseable {
+    public static final int MAX_BATCH = 256;
+    public static final long MAX_WAIT_MICROS = 200;
+    /** About 30 ms of work at the evaluator's single-core rate. */
+    public static final int QUEUE_CAPACITY = 16 * MAX_BATCH;
+
+    private record Job(CircuitFile circuit, CompletableFuture<OperatingPoint> result) { }
+
+    private final ArrayBlockingQueue<Job> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    // dispatcher-only scratch, grown on demand
+    private double[] freq = new double[0], r = new double[0], l = new double[0], s = new double[0];
+    private double[] stRe = new double[0], stIm = new double[0], zRe = new double[0], zIm = new double[0];
+
+    private long batches = 0, evaluated = 0;
+    private final LongAdder rejected = new LongAdder();
+
+    public BatchEvaluator() {
+        dispatcher = new Thread(this::loop, "simulation-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    public CompletableFuture<OperatingPoint> submit(CircuitFile circuit) {
+        CompletableFuture<OperatingPoint> f = new CompletableFuture<>();
+        if (!running) {
+            f.completeExceptionally(new IllegalStateException("Evaluator closed"));
+            return f;
+        }
+        if (!queue.offer(new Job(circuit, f))) {
+            rejected.increment();
+            f.completeExceptionally(new RejectedExecutionException("Evaluator queue is full"));
+        }
+        return f;
+    }
+
+    /** Average circuits per vectorised pass so far. */
+    public synchronized double averageBatch() {
+        return batches == 0 ? 0.0 : (double) evaluated / batches;
+    }
+
+    /** Circuits turned away because the queue was full. */
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+    }
+
+    private void loop() {
+        List<Job> pending = new ArrayList<>(MAX_BATCH);
+        Map<Integer, List<Job>> groups = new HashMap<>();
+        try {
+            while (running) {
+                Job first = queue.take();
+                pending.add(first);
+                long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(MAX_WAIT_MICROS);
+                while (pending.size() < MAX_BATCH) {
+                    if (queue.drainTo(pending, MAX_BATCH - pending.size()) > 0) continue;
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) break;
+                    Job next = queue.poll(left, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    pending.add(next);
+                }
+
+                for (Job job : pending) {
+                    groups.computeIfAbsent(job.circuit.program.topologyHash(), h -> new ArrayList<>()).add(job);
+                }
+                for (List<Job> group : groups.values()) runGroup(group);
+                groups.clear();
+                pending.clear();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        for (Job job : pending) job.result.completeExceptionally(new IllegalStateException("Evaluator closed"));
+        for (Job job : queue) job.result.completeExceptionally(new IllegalStateException("Evaluator closed"));
+    }
+
+    // a hash bucket may still mix topologies: peel off runs that really match the first job
+    private void runGroup(List<Job> group) {
+        while (!group.isEmpty()) {
+            CompiledCircuit program = group.get(0).circuit.program;
+            List<Job> lanes = new ArrayList<>(group.size());
+            List<Job> rest = new ArrayList<>();
+            for (Job j : group) {
+                if (program.sameTopology(j.circuit.program)) lanes.add(j); else rest.add(j);
+            }
+            try {
+                evaluate(program, lanes);
+            } catch (RuntimeException ex) {
+                for (Job j : lanes) j.result.completeExceptionally(ex);
+            }
+            group = rest;
+        }
+    }
+
+    private void evaluate(CompiledCircuit program, List<Job> jobs) {
+        int n = jobs.size();
+        int leaves = program.leafCount();
+        ensure(n, leaves, program.batchStackSize(n));
+        for (int k = 0; k < n; k++) {
+            CircuitFile c = jobs.get(k).circuit;
+            freq[k] = c.frequency;
+            double[] cr = c.program.resistances(), cl = c.program.inductances(), cs = c.program.elastances();
+            for (int j = 0; j < leaves; j++) {
+                r[j * n + k] = cr[j];
+                l[j * n + k] = cl[j];
+                s[j * n + k] = cs[j];
+            }
+        }
+        program.evaluateBatch(n, freq, r, l, s, stRe, stIm, zRe, zIm);
+        for (int k = 0; k < n; k++) {
+            CircuitFile c = jobs.get(k).circuit;
+            double rBulb = c.bulb >= 0 ? c.program.resistances()[c.bulb] : Double.NaN;
+            jobs.get(k).result.complete(OperatingPoint.of(c.voltage, c.frequency, zRe[k], zIm[k], rBulb, c.bulbRatedPower));
+        }
+        synchronized (this) {
+            batches++;
+            evaluated += n;
+        }
+    }
+
+    private void ensure(int lanes, int leaves, int stack) {
+        if (freq.length < lanes) {
+            freq = new double[lanes];
+            zRe = new double[lanes];
+            zIm = new double[lanes];
+        }
+        if (r.length < lanes * leaves) {
+            r = new double[lanes * leaves];
+            l = new double[lanes * leaves];
+            s = new double[lanes * leaves];
+        }
+        if (stRe.length < stack) {
+            stRe = new double[stack];
+            stIm = new double[stack];
+        }
+    }
+}
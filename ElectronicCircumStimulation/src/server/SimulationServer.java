@@ -0,0 +1,222 @@
+package server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.CircuitFile;
+import io.ResultFormat;
+import metrics.LatencyHistogram;
+import simulation.OperatingPoint;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Optional localhost service: POST a circuit in the {@link CircuitFile} format to /simulate and
+ * get the {@link OperatingPoint} back as JSON (or CSV with ?format=csv). A body may hold up to
+ * {@link #MAX_CIRCUITS} circuits separated by lines of "---"; the answer is then a JSON array (or
+ * one CSV row each) in the same order, with an error entry for any circuit that does not parse.
+ * GET /stats reports request latency percentiles.
+ *
+ * Every request runs on its own virtual thread and parks while {@link BatchEvaluator} evaluates
+ * its circuits together with other queued circuits of the same topology. When the evaluator's
+ * queue is full the request is refused with 503 and Retry-After rather than queued.
+ *
+ * Responses go out as soon as they are written: without TCP_NODELAY the JDK server's separate
+ * header and body writes meet the client's delayed ACK and every keep-alive request waits about
+ * 40 ms.
+ *
+ * <pre>
+ *   java -cp bin server.SimulationServer [port]      (default 8642)
+ * </pre>
+ */
+public class SimulationServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8642;
+    public static final int MAX_CIRCUITS = 4 * BatchEvaluator.MAX_BATCH;
+
+    static {
+        // read once, when the JDK server first starts; an explicit -D setting wins
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer http;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final BatchEvaluator evaluator = new BatchEvaluator();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public SimulationServer(int port) throws IOException {
+        http = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 256);
+        http.setExecutor(executor);
+        http.createContext("/simulate", this::simulate);
+        http.createContext("/stats", this::stats);
+    }
+
+    public void start() {
+        http.start();
+    }
+
+    public int getPort() {
+        return http.getAddress().getPort();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public void close() {
+        http.stop(0);
+        evaluator.close();
+        executor.shutdown();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        SimulationServer server = new SimulationServer(port);
+        server.start();
+        System.err.println("Simulation server on http://localhost:" + server.getPort() + "/simulate");
+    }
+
+    private void simulate(HttpExchange ex) throws IOException {
+        long start = System.nanoTime();
+        try (ex) {
+            if (!"POST".equals(ex.getRequestMethod())) {
+                send(ex, 405, "text/plain", "POST a circuit description\n");
+                return;
+            }
+            boolean csv = "format=csv".equals(ex.getRequestURI().getQuery());
+            String text = new String(ex.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            List<int[]> circuits = split(text);
+            if (circuits.size() > MAX_CIRCUITS) {
+                String msg = circuits.size() + " circuits, at most " + MAX_CIRCUITS + " per request";
+                send(ex, 413, csv ? "text/csv" : "application/json", error(csv, "request", msg) + "\n");
+                return;
+            }
+            boolean single = circuits.size() == 1;
+
+            // parse and queue everything first, so the circuits of one request share batches
+            int n = circuits.size();
+            String[] names = new String[n];
+            String[] rows = new String[n];
+            List<CompletableFuture<OperatingPoint>> pending = new ArrayList<>(n);
+            for (int k = 0; k < n; k++) {
+                names[k] = single ? "request" : "request#" + (k + 1);
+                try {
+                    int[] range = circuits.get(k);
+                    pending.add(evaluator.submit(CircuitFile.parse(names[k], text, range[0], range[1])));
+                } catch (IOException e) {
+                    pending.add(null);
+                    rows[k] = row(csv, names[k], e.getMessage());
+                }
+            }
+
+            int status = 200;
+            try {
+                for (int k = 0; k < n; k++) {
+                    if (pending.get(k) == null) {
+                        if (single) status = 400;
+                        continue;
+                    }
+                    try {
+                        OperatingPoint op = pending.get(k).get();
+                        rows[k] = csv ? ResultFormat.csv(names[k], op) : ResultFormat.json(names[k], op);
+                    } catch (ExecutionException e) {
+                        if (e.getCause() instanceof RejectedExecutionException) {
+                            ex.getResponseHeaders().set("Retry-After", "1");
+                            send(ex, 503, csv ? "text/csv" : "application/json",
+                                    error(csv, names[k], "server busy, retry later") + "\n");
+                            return;
+                        }
+                        if (single) status = 400;
+                        rows[k] = row(csv, names[k], e.getCause() != null ? e.getCause().toString() : e.toString());
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                send(ex, 503, "application/json", ResultFormat.jsonError("request", "interrupted") + "\n");
+                return;
+            }
+            send(ex, status, csv ? "text/csv" : "application/json", body(csv, single, rows));
+        } finally {
+            latency.record(System.nanoTime() - start);
+        }
+    }
+
+    // [start, end) of each circuit in a body, split at lines that hold only "---"
+    static List<int[]> split(String text) {
+        List<int[]> circuits = new ArrayList<>(1);
+        int start = 0, at = 0, len = text.length();
+        while (at <= len) {
+            int nl = text.indexOf('\n', at);
+            int end = nl < 0 ? len : nl;
+            boolean last = nl < 0;
+            if (last || text.startsWith("---", at) && text.substring(at + 3, end).isBlank()) {
+                int to = last ? len : at;
+                if (!text.substring(start, to).isBlank() || circuits.isEmpty() && last) {
+                    circuits.add(new int[] { start, to });
+                }
+                start = end + 1;
+            }
+            if (last) break;
+            at = end + 1;
+        }
+        return circuits;
+    }
+
+    private static String row(boolean csv, String name, String msg) {
+        return csv ? ResultFormat.csvError(name, msg) : ResultFormat.jsonError(name, msg);
+    }
+
+    // a whole response that is one error
+    private static String error(boolean csv, String name, String msg) {
+        return csv ? ResultFormat.CSV_HEADER + "\n" + row(true, name, msg) : row(false, name, msg);
+    }
+
+    private static String body(boolean csv, boolean single, String[] rows) {
+        StringBuilder sb = new StringBuilder(rows.length * 160 + 64);
+        if (csv) {
+            sb.append(ResultFormat.CSV_HEADER).append('\n');
+            for (String row : rows) sb.append(row).append('\n');
+        } else if (single) {
+            sb.append(rows[0]).append('\n');
+        } else {
+            sb.append("[\n");
+            for (int k = 0; k < rows.length; k++) sb.append("  ").append(rows[k]).append(k + 1 < rows.length ? ",\n" : "\n");
+            sb.append("]\n");
+        }
+        return sb.toString();
+    }
+
+    private void stats(HttpExchange ex) throws IOException {
+        try (ex) {
+            String body = String.format(Locale.ROOT,
+                    "{\"requests\": %d, \"mean_us\": %.1f, \"p50_us\": %.1f, \"p90_us\": %.1f, \"p99_us\": %.1f, "
+                            + "\"p999_us\": %.1f, \"max_us\": %.1f, \"avg_batch\": %.2f, \"rejected\": %d}\n",
+                    latency.count(), latency.mean() / 1e3, latency.percentile(0.50) / 1e3,
+                    latency.percentile(0.90) / 1e3, latency.percentile(0.99) / 1e3,
+                    latency.percentile(0.999) / 1e3, latency.max() / 1e3, evaluator.averageBatch(), evaluator.rejected());
+            send(ex, 200, "application/json", body);
+        }
+    }
+
+    private static void send(HttpExchange ex, int status, String type, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        ex.getResponseHeaders().set("Content-Type", type + "; charset=utf-8");
+        ex.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = ex.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
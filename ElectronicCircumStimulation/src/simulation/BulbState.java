@@ -0,0 +1,20 @@
+package simulation;
+
+/**
+ * How a bulb looks for a given dissipated power, relative to its rated power.
+ */
+public enum BulbState {
+    BLOWN, BRIGHT, OFF;
+
+    /** At or above this multiple of the rated power the bulb blows. */
+    public static final double BLOWN_RATIO = 1.5;
+    /** At or above this multiple (and below BLOWN_RATIO) the bulb is lit. */
+    public static final double BRIGHT_RATIO = 0.4;
+
+    public static BulbState classify(double power, double ratedPower) {
+        if (ratedPower <= 1e-9) ratedPower = 1.0;
+        if (power >= ratedPower * BLOWN_RATIO) return BLOWN;
+        if (power >= ratedPower * BRIGHT_RATIO) return BRIGHT;
+        return OFF;
+    }
+}
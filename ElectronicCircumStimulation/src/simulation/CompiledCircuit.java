@@ -0,0 +1,412 @@
+package simulation;
+
+import components.*;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A component tree lowered to a flat program, for evaluating the same topology many times.
+ *
+ * The program is a postfix opcode stream over a value stack: {@code LEAF i} pushes the impedance of
+ * leaf i, {@code SERIES n} / {@code PARALLEL n} pop n values and push their combination, {@code OPEN}
+ * pushes an open circuit (empty group). Leaves are stored as struct-of-arrays:
+ * Z = r + j(wL - s/w), where s = 1/C is the elastance (0 for parts without a capacitor).
+ *
+ * Evaluation does not allocate. Parameter edits are picked up with {@link #refreshParameters()},
+ * which patches the arrays in place; only a topology change needs a new program.
+ */
+public class CompiledCircuit {
+    public static final int LEAF = 0, SERIES = 1, PARALLEL = 2, OPEN = 3;
+
+    private final int[] code;
+    private final int codeLength;
+    private final int maxStack;
+
+    private final double[] resistance;
+    private final double[] inductance;
+    private final double[] elastance;
+
+    private final Components[] leaves;   // null when built without components
+    private final int[] leafRevision;
+    private final double[] stack;
+
+    private CompiledCircuit(Builder b) {
+        this.code = Arrays.copyOf(b.code, b.codeLength);
+        this.codeLength = b.codeLength;
+        this.maxStack = Math.max(1, b.maxDepth);
+        this.resistance = Arrays.copyOf(b.r, b.leafCount);
+        this.inductance = Arrays.copyOf(b.l, b.leafCount);
+        this.elastance = Arrays.copyOf(b.s, b.leafCount);
+        this.leaves = b.parts == null ? null : Arrays.copyOf(b.parts, b.leafCount);
+        this.leafRevision = new int[b.leafCount];
+        if (leaves != null) {
+            for (int i = 0; i < leaves.length; i++) leafRevision[i] = leaves[i].getRevision();
+        }
+        this.stack = newStack();
+    }
+
+    /** Lowers the tree under root (root may be a single part). */
+    public static CompiledCircuit compile(Components root) {
+        Builder b = new Builder();
+        b.parts = new Components[16];
+        emit(b, root);
+        return b.build();
+    }
+
+    private static void emit(Builder b, Components c) {
+        if (c instanceof CompositeComponent group) {
+            List<Components> children = group.getChildren();
+            if (children.isEmpty()) {
+                b.open();
+                return;
+            }
+            for (Components child : children) emit(b, child);
+            b.combine(group.getMode(), children.size());
+            return;
+        }
+        int i = b.leaf(0, 0, 0);
+        b.parts[i] = c;
+        read(c, b.r, b.l, b.s, i);
+    }
+
+    /** Reads the parameters of one part into slot i of the given arrays. */
+    static void read(Components c, double[] r, double[] l, double[] s, int i) {
+        if (c instanceof Capacitor cap) {
+            r[i] = 0.0;
+            l[i] = 0.0;
+            s[i] = cap.getCapacitance() > 0 ? 1.0 / cap.getCapacitance() : Double.POSITIVE_INFINITY;
+        } else if (c instanceof Inductor ind) {
+            r[i] = ind.getResistanceOhms();
+            l[i] = ind.getInductance();
+            s[i] = 0.0;
+        } else {
+            r[i] = c.getImpedance(0); // Resistor, Bulb, PowerSource: frequency independent
+            l[i] = 0.0;
+            s[i] = 0.0;
+        }
+    }
+
+    public int leafCount() {
+        return resistance.length;
+    }
+
+    public Components leaf(int i) {
+        return leaves == null ? null : leaves[i];
+    }
+
+    /** Index of the given part in the parameter arrays, or -1. */
+    public int indexOf(Components part) {
+        if (leaves == null) return -1;
+        for (int i = 0; i < leaves.length; i++) if (leaves[i] == part) return i;
+        return -1;
+    }
+
+    public double[] resistances() { return resistance; }
+    public double[] inductances() { return inductance; }
+    public double[] elastances() { return elastance; }
+
+    /** Re-reads the parameters of parts whose value changed since the last read. */
+    public void refreshParameters() {
+        if (leaves == null) return;
+        for (int i = 0; i < leaves.length; i++) {
+            int rev = leaves[i].getRevision();
+            if (rev != leafRevision[i]) {
+                read(leaves[i], resistance, inductance, elastance, i);
+                leafRevision[i] = rev;
+            }
+        }
+    }
+
+    /**
+     * Takes the parts from another copy of the tree this program was compiled from, e.g. a newer
+     * frozen copy after value edits, and re-reads the parameters of those that changed. Returns
+     * false, leaving the program unusable until it is compiled again, when root does not have the
+     * shape of the program.
+     */
+    public boolean refreshParameters(Components root) {
+        if (leaves == null) return false;
+        return rebind(root, 0) == leaves.length;
+    }
+
+    // leaf index after c's leaves, or past the end once the shapes differ
+    private int rebind(Components c, int i) {
+        if (c instanceof CompositeComponent group) {
+            List<Components> children = group.getChildren();
+            for (int k = 0; k < children.size() && i <= leaves.length; k++) i = rebind(children.get(k), i);
+            return i;
+        }
+        if (i >= leaves.length) return leaves.length + 1;
+        if (leaves[i] != c) {
+            leaves[i] = c;
+            if (c.getRevision() != leafRevision[i]) {
+                read(c, resistance, inductance, elastance, i);
+                leafRevision[i] = c.getRevision();
+            }
+        }
+        return i + 1;
+    }
+
+    /** A scratch stack for {@link #evaluate(double, double[], double[], double[], double[], double[])}. */
+    public double[] newStack() {
+        return new double[2 * maxStack];
+    }
+
+    /** Complex impedance of the whole program into z (open = z[0] infinite). Not thread safe. */
+    public void evaluate(double frequency, double[] z) {
+        evaluate(frequency, resistance, inductance, elastance, stack, z);
+    }
+
+    /**
+     * Evaluates the program with caller-owned parameter arrays and stack, so several threads can
+     * run the same program with their own values.
+     */
+    public void evaluate(double frequency, double[] r, double[] l, double[] s, double[] st, double[] z) {
+        double w = 2.0 * Math.PI * frequency;
+        int sp = 0; // next free slot (in pairs)
+        int[] ops = code;
+        for (int pc = 0; pc < codeLength; pc += 2) {
+            int op = ops[pc], arg = ops[pc + 1];
+            switch (op) {
+                case LEAF -> {
+                    double re, im;
+                    double sv = s[arg];
+                    if (sv != 0.0 && (w <= 0 || Double.isInfinite(sv))) {
+                        re = Double.POSITIVE_INFINITY; // capacitor at DC
+                        im = 0.0;
+                    } else {
+                        re = r[arg];
+                        im = w * l[arg] - (sv == 0.0 ? 0.0 : sv / w);
+                    }
+                    st[2 * sp] = re;
+                    st[2 * sp + 1] = im;
+                    sp++;
+                }
+                case SERIES -> {
+                    double re = 0.0, im = 0.0;
+                    boolean open = false;
+                    for (int k = sp - arg; k < sp; k++) {
+                        double cr = st[2 * k];
+                        if (Double.isInfinite(cr)) open = true;
+                        re += cr;
+                        im += st[2 * k + 1];
+                    }
+                    sp -= arg;
+                    st[2 * sp] = open ? Double.POSITIVE_INFINITY : re;
+                    st[2 * sp + 1] = open ? 0.0 : im;
+                    sp++;
+                }
+                case PARALLEL -> {
+                    double yRe = 0.0, yIm = 0.0;
+                    boolean shorted = false;
+                    for (int k = sp - arg; k < sp; k++) {
+                        double cr = st[2 * k], ci = st[2 * k + 1];
+                        if (Double.isInfinite(cr)) continue;
+                        double mag2 = cr * cr + ci * ci;
+                        if (mag2 <= 1e-18) {
+                            shorted = true;
+                            continue;
+                        }
+                        yRe += cr / mag2;
+                        yIm -= ci / mag2;
+                    }
+                    sp -= arg;
+                    double y2 = yRe * yRe + yIm * yIm;
+                    if (shorted) {
+                        st[2 * sp] = 0.0;
+                        st[2 * sp + 1] = 0.0;
+                    } else if (y2 == 0.0) {
+                        st[2 * sp] = Double.POSITIVE_INFINITY;
+                        st[2 * sp + 1] = 0.0;
+                    } else {
+                        st[2 * sp] = yRe / y2;
+                        st[2 * sp + 1] = -yIm / y2;
+                    }
+                    sp++;
+                }
+                default -> { // OPEN
+                    st[2 * sp] = Double.POSITIVE_INFINITY;
+                    st[2 * sp + 1] = 0.0;
+                    sp++;
+                }
+            }
+        }
+        z[0] = st[0];
+        z[1] = st[1];
+    }
+
+    /** Size of each of the two stacks {@link #evaluateBatch} needs for the given number of lanes. */
+    public int batchStackSize(int lanes) {
+        return maxStack * lanes;
+    }
+
+    /**
+     * Evaluates lanes circuits with this topology in one pass over the program, each opcode
+     * running over all lanes. Parameters are leaf-major ({@code r[leaf * lanes + k]} for lane k),
+     * so the inner loops walk contiguous memory.
+     */
+    public void evaluateBatch(int lanes, double[] frequency, double[] r, double[] l, double[] s,
+                              double[] stRe, double[] stIm, double[] zRe, double[] zIm) {
+        int sp = 0; // next free slot, in units of lanes
+        int[] ops = code;
+        for (int pc = 0; pc < codeLength; pc += 2) {
+            int op = ops[pc], arg = ops[pc + 1];
+            switch (op) {
+                case LEAF -> {
+                    int out = sp * lanes, in = arg * lanes;
+                    for (int k = 0; k < lanes; k++) {
+                        double w = 2.0 * Math.PI * frequency[k];
+                        double sv = s[in + k];
+                        if (sv != 0.0 && (w <= 0 || Double.isInfinite(sv))) {
+                            stRe[out + k] = Double.POSITIVE_INFINITY;
+                            stIm[out + k] = 0.0;
+                        } else {
+                            stRe[out + k] = r[in + k];
+                            stIm[out + k] = w * l[in + k] - (sv == 0.0 ? 0.0 : sv / w);
+                        }
+                    }
+                    sp++;
+                }
+                case SERIES -> {
+                    int base = (sp - arg) * lanes;
+                    for (int c = 1; c < arg; c++) {
+                        int from = base + c * lanes;
+                        for (int k = 0; k < lanes; k++) {
+                            // an infinite real part stays infinite, so open propagates by itself
+                            stRe[base + k] += stRe[from + k];
+                            stIm[base + k] += stIm[from + k];
+                        }
+                    }
+                    for (int k = 0; k < lanes; k++) {
+                        if (Double.isInfinite(stRe[base + k])) stIm[base + k] = 0.0;
+                    }
+                    sp -= arg - 1;
+                }
+                case PARALLEL -> {
+                    int base = (sp - arg) * lanes;
+                    for (int k = 0; k < lanes; k++) {
+                        double yRe = 0.0, yIm = 0.0;
+                        boolean shorted = false;
+                        for (int c = 0; c < arg; c++) {
+                            double cr = stRe[base + c * lanes + k], ci = stIm[base + c * lanes + k];
+                            if (Double.isInfinite(cr)) continue;
+                            double mag2 = cr * cr + ci * ci;
+                            if (mag2 <= 1e-18) {
+                                shorted = true;
+                                break;
+                            }
+                            yRe += cr / mag2;
+                            yIm -= ci / mag2;
+                        }
+                        double y2 = yRe * yRe + yIm * yIm;
+                        if (shorted) {
+                            stRe[base + k] = 0.0;
+                            stIm[base + k] = 0.0;
+                        } else if (y2 == 0.0) {
+                            stRe[base + k] = Double.POSITIVE_INFINITY;
+                            stIm[base + k] = 0.0;
+                        } else {
+                            stRe[base + k] = yRe / y2;
+                            stIm[base + k] = -yIm / y2;
+                        }
+                    }
+                    sp -= arg - 1;
+                }
+                default -> {
+                    int out = sp * lanes;
+                    for (int k = 0; k < lanes; k++) {
+                        stRe[out + k] = Double.POSITIVE_INFINITY;
+                        stIm[out + k] = 0.0;
+                    }
+                    sp++;
+                }
+            }
+        }
+        System.arraycopy(stRe, 0, zRe, 0, lanes);
+        System.arraycopy(stIm, 0, zIm, 0, lanes);
+    }
+
+    /** Same topology check used by callers that batch programs: equal code and leaf count. */
+    public boolean sameTopology(CompiledCircuit other) {
+        return other != null && codeLength == other.codeLength && resistance.length == other.resistance.length
+                && Arrays.equals(code, 0, codeLength, other.code, 0, other.codeLength);
+    }
+
+    /** Hash of the opcode stream, consistent with {@link #sameTopology(CompiledCircuit)}. */
+    public int topologyHash() {
+        int h = 1;
+        for (int i = 0; i < codeLength; i++) h = 31 * h + code[i];
+        return h;
+    }
+
+    /** Emits a program directly, for callers that have no component objects. */
+    public static class Builder {
+        private int[] code = new int[32];
+        private int codeLength = 0;
+        private int depth = 0, maxDepth = 0;
+        private double[] r = new double[16], l = new double[16], s = new double[16];
+        private Components[] parts;
+        private int leafCount = 0;
+
+        /** Pushes a leaf Z = r + j(wL - s/w) and returns its parameter index. */
+        public int leaf(double resistance, double inductance, double elastance) {
+            if (leafCount == r.length) {
+                int cap = leafCount * 2;
+                r = Arrays.copyOf(r, cap);
+                l = Arrays.copyOf(l, cap);
+                s = Arrays.copyOf(s, cap);
+                if (parts != null) parts = Arrays.copyOf(parts, cap);
+            }
+            r[leafCount] = resistance;
+            l[leafCount] = inductance;
+            s[leafCount] = elastance;
+            op(LEAF, leafCount);
+            push(1);
+            return leafCount++;
+        }
+
+        public int resistor(double ohms) { return leaf(ohms, 0, 0); }
+        public int inductor(double henry, double seriesOhms) { return leaf(seriesOhms, henry, 0); }
+        public int capacitor(double farad) { return leaf(0, 0, farad > 0 ? 1.0 / farad : Double.POSITIVE_INFINITY); }
+
+        public void open() {
+            op(OPEN, 0);
+            push(1);
+        }
+
+        /** Combines the last count values on the stack. */
+        public void combine(CompositeComponent.Mode mode, int count) {
+            combine(mode == CompositeComponent.Mode.SERIES ? SERIES : PARALLEL, count);
+        }
+
+        public void series(int count) {
+            combine(SERIES, count);
+        }
+
+        public void parallel(int count) {
+            combine(PARALLEL, count);
+        }
+
+        private void combine(int opcode, int count) {
+            if (count < 1 || count > depth) throw new IllegalStateException("Nothing to combine");
+            op(opcode, count);
+            depth -= count - 1;
+        }
+
+        public CompiledCircuit build() {
+            if (depth != 1) throw new IllegalStateException("Program leaves " + depth + " values on the stack");
+            return new CompiledCircuit(this);
+        }
+
+        private void op(int op, int arg) {
+            if (codeLength + 2 > code.length) code = Arrays.copyOf(code, code.length * 2);
+            code[codeLength++] = op;
+            code[codeLength++] = arg;
+        }
+
+        private void push(int n) {
+            depth += n;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package simulation;
+
+import components.*;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates a component tree over many frequencies at once.
+ *
+ * The tree is walked once per block of {@link #BLOCK} frequencies: every leaf reads its
+ * parameters once and fills the whole block, groups combine the blocks of their children. The
+ * root result is its impedance; each probe gets the transfer function V_probe / V_source, worked
+ * out top-down with the series voltage divider (parallel branches see the parent's voltage).
+ */
+public class FrequencySweep {
+    public static final int BLOCK = 64;
+
+    public static class Result {
+        public final double[] frequencies;
+        /** |Z| of the root in ohms (infinite for an open circuit) and its phase in degrees. */
+        public final double[] magnitude;
+        public final double[] phase;
+        public final Components[] probes;
+        /** |V_probe / V_source| and its phase in degrees, one row per probe. */
+        public final double[][] probeGain;
+        public final double[][] probePhase;
+
+        Result(double[] frequencies, Components[] probes) {
+            int n = frequencies.length;
+            this.frequencies = frequencies;
+            this.magnitude = new double[n];
+            this.phase = new double[n];
+            this.probes = probes;
+            this.probeGain = new double[probes.length][n];
+            this.probePhase = new double[probes.length][n];
+        }
+    }
+
+    public static double[] linear(double from, double to, int points) {
+        double[] f = new double[points];
+        if (points == 1) {
+            f[0] = from;
+            return f;
+        }
+        double step = (to - from) / (points - 1);
+        for (int i = 0; i < points; i++) f[i] = from + i * step;
+        return f;
+    }
+
+    public static double[] logarithmic(double from, double to, int points) {
+        if (from <= 0 || to <= 0) throw new IllegalArgumentException("Log sweep needs positive frequencies");
+        double[] f = new double[points];
+        if (points == 1) {
+            f[0] = from;
+            return f;
+        }
+        double a = Math.log10(from);
+        double step = (Math.log10(to) - a) / (points - 1);
+        for (int i = 0; i < points; i++) f[i] = Math.pow(10, a + i * step);
+        return f;
+    }
+
+    public static Result run(Components root, double[] frequencies, Components... probes) {
+        return new FrequencySweep(root, probes).sweep(frequencies);
+    }
+
+    /**
+     * Sweeps a netlist by nodal analysis, one solve per frequency; the symbolic analysis is shared
+     * by all of them. The result is Z as the driving source sees it, and each probe element gets
+     * the voltage across it over the source voltage. A frequency at which the matrix is singular
+     * shows as an open circuit with silent probes.
+     */
+    public static Result run(Netlist net, double[] frequencies, int... probeElements) {
+        Components[] probes = new Components[probeElements.length];
+        for (int p = 0; p < probes.length; p++) probes[p] = net.partOf(probeElements[p]);
+        Result out = new Result(frequencies, probes);
+        MnaSolver solver = new MnaSolver();
+        double[] v = new double[2];
+        for (int i = 0; i < frequencies.length; i++) {
+            MnaSolver.Result r;
+            try {
+                r = solver.compute(net, frequencies[i]);
+            } catch (IllegalStateException singular) {
+                r = null;
+            }
+            if (r == null || r.sourceVoltage == 0.0) {
+                out.magnitude[i] = Double.POSITIVE_INFINITY;
+                out.phase[i] = 0.0;
+                continue; // probe rows stay 0
+            }
+            out.magnitude[i] = r.getImpedance();
+            out.phase[i] = r.getPhase();
+            for (int p = 0; p < probes.length; p++) {
+                r.voltageAcross(net, probeElements[p], v);
+                store(v[0] / r.sourceVoltage, v[1] / r.sourceVoltage, out.probeGain[p], out.probePhase[p], i);
+            }
+        }
+        return out;
+    }
+
+    // ===== evaluation state (one sweep) =====
+
+    private final Components root;
+    private final Components[] probes;
+    private final Map<Components, double[]> pathBlocks = new IdentityHashMap<>(); // Z re|im, V re|im
+    private final List<Components> path = new ArrayList<>();
+    private final double[][] zRe, zIm, accRe, accIm;
+    private final boolean[][] flag;
+    private final double[] tmp = new double[2];
+
+    private FrequencySweep(Components root, Components[] probes) {
+        this.root = root;
+        this.probes = probes;
+        int depth = depth(root) + 1;
+        zRe = new double[depth][BLOCK];
+        zIm = new double[depth][BLOCK];
+        accRe = new double[depth][BLOCK];
+        accIm = new double[depth][BLOCK];
+        flag = new boolean[depth][BLOCK];
+
+        pathBlocks.put(root, new double[4 * BLOCK]);
+        for (Components p : probes) {
+            path.clear();
+            if (findPath(root, p)) {
+                for (Components c : path) pathBlocks.computeIfAbsent(c, k -> new double[4 * BLOCK]);
+            }
+        }
+    }
+
+    private Result sweep(double[] frequencies) {
+        Result out = new Result(frequencies, probes);
+        for (int off = 0; off < frequencies.length; off += BLOCK) {
+            int len = Math.min(BLOCK, frequencies.length - off);
+            evaluate(root, 0, frequencies, off, len);
+
+            double[] rb = pathBlocks.get(root);
+            for (int i = 0; i < len; i++) {
+                rb[2 * BLOCK + i] = 1.0; // V_root = V_source
+                rb[3 * BLOCK + i] = 0.0;
+                store(rb[i], rb[BLOCK + i], out.magnitude, out.phase, off + i);
+            }
+            propagate(root, len);
+
+            for (int p = 0; p < probes.length; p++) {
+                double[] pb = pathBlocks.get(probes[p]);
+                for (int i = 0; i < len; i++) {
+                    if (pb == null) {
+                        out.probeGain[p][off + i] = 0.0;
+                        out.probePhase[p][off + i] = 0.0;
+                    } else {
+                        store(pb[2 * BLOCK + i], pb[3 * BLOCK + i], out.probeGain[p], out.probePhase[p], off + i);
+                    }
+                }
+            }
+        }
+        return out;
+    }
+
+    private static void store(double re, double im, double[] mag, double[] phase, int i) {
+        if (Double.isInfinite(re)) {
+            mag[i] = Double.POSITIVE_INFINITY;
+            phase[i] = 0.0;
+        } else {
+            mag[i] = Math.hypot(re, im);
+            phase[i] = Math.toDegrees(Math.atan2(im, re));
+        }
+    }
+
+    /** Fills zRe[d], zIm[d] with the impedance of c over the block. */
+    private void evaluate(Components c, int d, double[] f, int off, int len) {
+        double[] re = zRe[d], im = zIm[d];
+        if (c instanceof CompositeComponent group) {
+            evaluateGroup(group, d, f, off, len);
+        } else if (c instanceof Resistor || c instanceof Bulb || c instanceof PowerSource) {
+            double r = c.getResistanceOhms();
+            for (int i = 0; i < len; i++) {
+                re[i] = r;
+                im[i] = 0.0;
+            }
+        } else if (c instanceof Capacitor cap) {
+            double cv = cap.getCapacitance();
+            for (int i = 0; i < len; i++) {
+                double w = 2.0 * Math.PI * f[off + i];
+                if (w <= 0 || cv <= 0) {
+                    re[i] = Double.POSITIVE_INFINITY;
+                    im[i] = 0.0;
+                } else {
+                    re[i] = 0.0;
+                    im[i] = -1.0 / (w * cv);
+                }
+            }
+        } else if (c instanceof Inductor ind) {
+            double l = ind.getInductance();
+            double r = ind.getResistanceOhms();
+            for (int i = 0; i < len; i++) {
+                re[i] = r;
+                im[i] = 2.0 * Math.PI * f[off + i] * l;
+            }
+        } else {
+            for (int i = 0; i < len; i++) {
+                c.getImpedance(f[off + i], tmp);
+                re[i] = tmp[0];
+                im[i] = tmp[1];
+            }
+        }
+
+        double[] keep = pathBlocks.get(c);
+        if (keep != null) {
+            System.arraycopy(re, 0, keep, 0, len);
+            System.arraycopy(im, 0, keep, BLOCK, len);
+        }
+    }
+
+    // same rules as CompositeComponent.getImpedance(double, double[]), vectorised over the block
+    private void evaluateGroup(CompositeComponent group, int d, double[] f, int off, int len) {
+        double[] re = zRe[d], im = zIm[d];
+        double[] aRe = accRe[d], aIm = accIm[d];
+        boolean[] special = flag[d]; // series: open, parallel: short
+        List<Components> children = group.getChildren();
+        if (children.isEmpty()) {
+            for (int i = 0; i < len; i++) {
+                re[i] = Double.POSITIVE_INFINITY;
+                im[i] = 0.0;
+            }
+            return;
+        }
+        for (int i = 0; i < len; i++) {
+            aRe[i] = 0.0;
+            aIm[i] = 0.0;
+            special[i] = false;
+        }
+        boolean series = group.getMode() == CompositeComponent.Mode.SERIES;
+        double[] cRe = zRe[d + 1], cIm = zIm[d + 1];
+        for (Components child : children) {
+            evaluate(child, d + 1, f, off, len);
+            for (int i = 0; i < len; i++) {
+                if (Double.isInfinite(cRe[i])) {
+                    if (series) special[i] = true;
+                    continue;
+                }
+                if (series) {
+                    aRe[i] += cRe[i];
+                    aIm[i] += cIm[i];
+                } else {
+                    double mag2 = cRe[i] * cRe[i] + cIm[i] * cIm[i];
+                    if (mag2 <= 1e-18) {
+                        special[i] = true;
+                        continue;
+                    }
+                    aRe[i] += cRe[i] / mag2;
+                    aIm[i] -= cIm[i] / mag2;
+                }
+            }
+        }
+        for (int i = 0; i < len; i++) {
+            if (series) {
+                re[i] = special[i] ? Double.POSITIVE_INFINITY : aRe[i];
+                im[i] = special[i] ? 0.0 : aIm[i];
+            } else if (special[i]) {
+                re[i] = 0.0;
+                im[i] = 0.0;
+            } else {
+                double y2 = aRe[i] * aRe[i] + aIm[i] * aIm[i];
+                re[i] = (y2 == 0.0) ? Double.POSITIVE_INFINITY : aRe[i] / y2;
+                im[i] = (y2 == 0.0) ? 0.0 : -aIm[i] / y2;
+            }
+        }
+    }
+
+    /** Pushes the voltage of a path node down to its children that are on a probe path. */
+    private void propagate(Components node, int len) {
+        if (!(node instanceof CompositeComponent group)) return;
+        double[] pb = pathBlocks.get(node);
+        boolean series = group.getMode() == CompositeComponent.Mode.SERIES;
+        for (Components child : group.getChildren()) {
+            double[] cb = pathBlocks.get(child);
+            if (cb == null) continue;
+            for (int i = 0; i < len; i++) {
+                double vRe = pb[2 * BLOCK + i], vIm = pb[3 * BLOCK + i];
+                if (series) {
+                    double zpRe = pb[i], zpIm = pb[BLOCK + i];
+                    double zcRe = cb[i], zcIm = cb[BLOCK + i];
+                    double outRe, outIm;
+                    if (Double.isInfinite(zpRe)) {
+                        // open in series: the whole voltage sits across the open part
+                        outRe = Double.isInfinite(zcRe) ? vRe : 0.0;
+                        outIm = Double.isInfinite(zcRe) ? vIm : 0.0;
+                    } else {
+                        double den = zpRe * zpRe + zpIm * zpIm;
+                        if (den == 0.0) {
+                            outRe = 0.0;
+                            outIm = 0.0;
+                        } else {
+                            // ratio = Zc / Zp
+                            double rRe = (zcRe * zpRe + zcIm * zpIm) / den;
+                            double rIm = (zcIm * zpRe - zcRe * zpIm) / den;
+                            outRe = vRe * rRe - vIm * rIm;
+                            outIm = vRe * rIm + vIm * rRe;
+                        }
+                    }
+                    cb[2 * BLOCK + i] = outRe;
+                    cb[3 * BLOCK + i] = outIm;
+                } else {
+                    cb[2 * BLOCK + i] = vRe;
+                    cb[3 * BLOCK + i] = vIm;
+                }
+            }
+            propagate(child, len);
+        }
+    }
+
+    private boolean findPath(Components node, Components target) {
+        path.add(node);
+        if (node == target) return true;
+        if (node instanceof CompositeComponent group) {
+            for (Components child : group.getChildren()) {
+                if (findPath(child, target)) return true;
+            }
+        }
+        path.remove(path.size() - 1);
+        return false;
+    }
+
+    private static int depth(Components c) {
+        if (!(c instanceof CompositeComponent group)) return 0;
+        int max = 0;
+        for (Components child : group.getChildren()) max = Math.max(max, depth(child));
+        return max + 1;
+    }
+}
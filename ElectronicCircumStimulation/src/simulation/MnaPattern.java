@@ -0,0 +1,119 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * The structural half of an MNA system: matrix pattern, where each element stamps into it, and
+ * the symbolic LU analysis. Built once per netlist structure; new element values only go through
+ * {@link #load(double[])} and {@link SparseLU#factor(double[])}, or their complex counterparts
+ * for AC admittances.
+ *
+ * Unknowns are the node voltages (node k at index k - 1, ground excluded) followed by one branch
+ * current per source, in element order. GMIN and the source stamps never change and sit in the
+ * base values.
+ */
+class MnaPattern {
+    final int nodes;
+    final int size;
+    final SparseLU lu;
+    /** Branch unknown of each source element, -1 for the others. */
+    final int[] branch;
+
+    private final double[] base;
+    private final double[] values;
+    private double[] valuesIm; // complex loads only
+    private final int[][] slot; // per passive element: aa, bb, ab, ba (-1 when a node is ground)
+
+    // structure the pattern was built for
+    private final int nodeCount;
+    private final Netlist.Kind[] kinds;
+    private final int[] nodeA, nodeB;
+
+    MnaPattern(Netlist net) {
+        int elements = net.elementCount();
+        nodeCount = net.nodeCount();
+        nodes = nodeCount - 1;
+        size = nodes + net.sourceCount();
+        kinds = new Netlist.Kind[elements];
+        nodeA = new int[elements];
+        nodeB = new int[elements];
+        branch = new int[elements];
+        slot = new int[elements][];
+
+        SparseMatrix a = new SparseMatrix(size);
+        for (int k = 0; k < nodes; k++) a.add(k, k, MnaSolver.GMIN);
+        int[][] triplets = new int[elements][];
+        int next = nodes;
+        for (int e = 0; e < elements; e++) {
+            kinds[e] = net.kindOf(e);
+            nodeA[e] = net.nodeA(e);
+            nodeB[e] = net.nodeB(e);
+            int na = nodeA[e] - 1, nb = nodeB[e] - 1;
+            if (kinds[e] == Netlist.Kind.SOURCE) {
+                branch[e] = next;
+                MnaSolver.stampSource(a, na, nb, next++);
+                continue;
+            }
+            branch[e] = -1;
+            int[] t = { -1, -1, -1, -1 };
+            if (na >= 0) t[0] = a.add(na, na, 0.0);
+            if (nb >= 0) t[1] = a.add(nb, nb, 0.0);
+            if (na >= 0 && nb >= 0) {
+                t[2] = a.add(na, nb, 0.0);
+                t[3] = a.add(nb, na, 0.0);
+            }
+            triplets[e] = t;
+        }
+        a.compress();
+        base = a.getValues().clone();
+        values = new double[base.length];
+        for (int e = 0; e < elements; e++) {
+            if (triplets[e] == null) continue;
+            int[] s = new int[4];
+            for (int k = 0; k < 4; k++) s[k] = triplets[e][k] < 0 ? -1 : a.slotOf(triplets[e][k]);
+            slot[e] = s;
+        }
+        lu = new SparseLU(a, nodes);
+    }
+
+    /** True if net has the nodes, element kinds and connections this pattern was built for. */
+    boolean matches(Netlist net) {
+        if (net.nodeCount() != nodeCount || net.elementCount() != kinds.length) return false;
+        for (int e = 0; e < kinds.length; e++) {
+            if (net.kindOf(e) != kinds[e] || net.nodeA(e) != nodeA[e] || net.nodeB(e) != nodeB[e]) return false;
+        }
+        return true;
+    }
+
+    /** Stamps the element conductances g (ignored for sources) and refactors numerically. */
+    void load(double[] g) {
+        System.arraycopy(base, 0, values, 0, base.length);
+        for (int e = 0; e < slot.length; e++) {
+            int[] s = slot[e];
+            if (s == null) continue;
+            double ge = g[e];
+            if (s[0] >= 0) values[s[0]] += ge;
+            if (s[1] >= 0) values[s[1]] += ge;
+            if (s[2] >= 0) values[s[2]] -= ge;
+            if (s[3] >= 0) values[s[3]] -= ge;
+        }
+        lu.factor(values);
+    }
+
+    /** Stamps complex element admittances yRe + j yIm (ignored for sources) and refactors. */
+    void load(double[] yRe, double[] yIm) {
+        if (valuesIm == null) valuesIm = new double[base.length];
+        System.arraycopy(base, 0, values, 0, base.length);
+        Arrays.fill(valuesIm, 0.0);
+        for (int e = 0; e < slot.length; e++) {
+            int[] s = slot[e];
+            if (s == null) continue;
+            double gr = yRe[e], gi = yIm[e];
+            if (s[0] >= 0) { values[s[0]] += gr; valuesIm[s[0]] += gi; }
+            if (s[1] >= 0) { values[s[1]] += gr; valuesIm[s[1]] += gi; }
+            if (s[2] >= 0) { values[s[2]] -= gr; valuesIm[s[2]] -= gi; }
+            if (s[3] >= 0) { values[s[3]] -= gr; valuesIm[s[3]] -= gi; }
+        }
+        lu.factor(values, valuesIm);
+    }
+}
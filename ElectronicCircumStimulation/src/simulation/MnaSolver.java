@@ -0,0 +1,264 @@
+package simulation;
+
+import components.*;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Modified nodal analysis over the {@link Wire} graph.
+ *
+ * Unknowns are the node voltages (ground excluded) followed by one branch current per power
+ * source. Every part is stamped as its complex admittance 1/Z(f), so reactances combine with
+ * resistances by phase as in the tree evaluator of {@link CompositeComponent}, while this solver
+ * also handles bridges and meshes. Results are written back with
+ * {@link Components#setSimulationState(double, double)} as magnitudes.
+ */
+public class MnaSolver {
+    /** Small conductance from every node to ground so floating nodes do not make A singular. */
+    public static final double GMIN = 1e-12;
+    /** Impedances below this are treated as this value (an ideal short would have G = infinity). */
+    public static final double MIN_IMPEDANCE = 1e-6;
+
+    private MnaPattern pattern;
+    private double[] yRe = new double[0], yIm = new double[0];
+    private final double[] z = new double[2];
+    private int symbolicCount = 0, numericCount = 0;
+
+    public static class Result {
+        public final double sourceVoltage;
+        /** Magnitude of the current the driving source delivers. */
+        public final double sourceCurrent;
+        private final double currentRe, currentIm;
+        private final double[] yRe, yIm;      // per element admittance, 0 for sources
+        private final double[] xRe, xIm;      // node voltages, then branch currents
+
+        Result(double sourceVoltage, double currentRe, double currentIm, double[] yRe, double[] yIm,
+               double[] xRe, double[] xIm) {
+            this.sourceVoltage = sourceVoltage;
+            this.sourceCurrent = Math.hypot(currentRe, currentIm);
+            this.currentRe = currentRe;
+            this.currentIm = currentIm;
+            this.yRe = yRe;
+            this.yIm = yIm;
+            this.xRe = xRe;
+            this.xIm = xIm;
+        }
+
+        /** |Z| seen by the driving source (infinite if no current flows). */
+        public double getImpedance() {
+            if (sourceCurrent <= 1e-12) return Double.POSITIVE_INFINITY;
+            return Math.abs(sourceVoltage) / sourceCurrent;
+        }
+
+        /** Magnitude of the current through passive element e of the netlist this was computed for. */
+        public double currentThrough(Netlist net, int e) {
+            int a = net.nodeA(e) - 1, b = net.nodeB(e) - 1;
+            double dr = (a >= 0 ? xRe[a] : 0.0) - (b >= 0 ? xRe[b] : 0.0);
+            double di = (a >= 0 ? xIm[a] : 0.0) - (b >= 0 ? xIm[b] : 0.0);
+            return Math.hypot(dr, di) * Math.hypot(yRe[e], yIm[e]);
+        }
+
+        /** Complex voltage across element e (node a minus node b) into v[0] (real) and v[1] (imaginary). */
+        public void voltageAcross(Netlist net, int e, double[] v) {
+            int a = net.nodeA(e) - 1, b = net.nodeB(e) - 1;
+            v[0] = (a >= 0 ? xRe[a] : 0.0) - (b >= 0 ? xRe[b] : 0.0);
+            v[1] = (a >= 0 ? xIm[a] : 0.0) - (b >= 0 ? xIm[b] : 0.0);
+        }
+
+        /** Phase of Z = V / I seen by the driving source in degrees (0 if no current flows). */
+        public double getPhase() {
+            if (sourceCurrent <= 1e-12) return 0.0;
+            double phase = -Math.toDegrees(Math.atan2(currentIm, currentRe));
+            return sourceVoltage < 0 ? phase + 180.0 : phase;
+        }
+    }
+
+    /**
+     * Solves the wired circuit at the given frequency.
+     *
+     * @return the result, or null if no power source is wired in (callers then fall back to the
+     *         series/parallel tree)
+     */
+    public Result solve(List<Wire> wires, double frequency) {
+        Netlist net = Netlist.fromWires(wires);
+        if (net == null) return null;
+        return solve(net, frequency);
+    }
+
+    /**
+     * Solves a netlist at the given frequency and writes the result back to its parts. The
+     * symbolic analysis (ordering, elimination tree, L/U pattern) is kept from the previous call
+     * when the netlist has the same structure, so a value change only costs a numeric
+     * refactorization.
+     */
+    public Result solve(Netlist net, double frequency) {
+        Result result = compute(net, frequency);
+        writeBack(net, result);
+        return result;
+    }
+
+    /**
+     * Like {@link #solve(Netlist, double)} but without touching any component, for solving a
+     * {@link Netlist#freeze frozen} netlist off the UI thread. Apply the result later with
+     * {@link #writeBack(Netlist, Result)}.
+     */
+    public Result compute(Netlist net, double frequency) {
+        if (pattern == null || !pattern.matches(net)) {
+            pattern = new MnaPattern(net);
+            symbolicCount++;
+        }
+        int elements = net.elementCount();
+        if (yRe.length < elements) {
+            yRe = new double[elements];
+            yIm = new double[elements];
+        }
+        double[] re = new double[pattern.size], im = new double[pattern.size];
+
+        double driveVoltage = 0.0;
+        int driveBranch = -1;
+        for (int e = 0; e < elements; e++) {
+            if (net.kindOf(e) == Netlist.Kind.SOURCE) {
+                double v = net.valueOf(e);
+                re[pattern.branch[e]] = v;
+                if (driveBranch < 0) {
+                    driveBranch = pattern.branch[e];
+                    driveVoltage = v;
+                }
+                yRe[e] = 0.0;
+                yIm[e] = 0.0;
+            } else {
+                net.impedanceOf(e, frequency, z);
+                admittance(z);
+                yRe[e] = z[0];
+                yIm[e] = z[1];
+            }
+        }
+
+        pattern.load(yRe, yIm);
+        numericCount++;
+        pattern.lu.solve(re, im);
+
+        // the branch current flows into the + terminal; the source delivers its negative
+        double iRe = driveBranch >= 0 ? -re[driveBranch] : 0.0;
+        double iIm = driveBranch >= 0 ? -im[driveBranch] : 0.0;
+        return new Result(driveVoltage, iRe, iIm, Arrays.copyOf(yRe, elements), Arrays.copyOf(yIm, elements), re, im);
+    }
+
+    /** Number of symbolic analyses so far (one per new circuit structure). */
+    public int symbolicCount() {
+        return symbolicCount;
+    }
+
+    /** Number of numeric factorizations so far (one per solve). */
+    public int numericCount() {
+        return numericCount;
+    }
+
+    static double conductance(double z) {
+        if (Double.isInfinite(z) || Double.isNaN(z)) return 0.0;
+        return 1.0 / Math.max(Math.abs(z), MIN_IMPEDANCE);
+    }
+
+    /** Replaces the impedance in y[0], y[1] by its admittance; open (infinite) gives 0. */
+    static void admittance(double[] y) {
+        double r = y[0], x = y[1];
+        if (Double.isInfinite(r) || Double.isNaN(r) || Double.isNaN(x)) {
+            y[0] = 0.0;
+            y[1] = 0.0;
+            return;
+        }
+        double mag2 = r * r + x * x;
+        if (mag2 < MIN_IMPEDANCE * MIN_IMPEDANCE) {
+            y[0] = 1.0 / MIN_IMPEDANCE;
+            y[1] = 0.0;
+            return;
+        }
+        y[0] = r / mag2;
+        y[1] = -x / mag2;
+    }
+
+    /** Voltage source from na (-) to nb (+), branch current in unknown m. */
+    static void stampSource(SparseMatrix a, int na, int nb, int m) {
+        if (nb >= 0) {
+            a.add(nb, m, 1.0);
+            a.add(m, nb, 1.0);
+        }
+        if (na >= 0) {
+            a.add(na, m, -1.0);
+            a.add(m, na, -1.0);
+        }
+        a.add(m, m, 0.0); // keep the diagonal in the pattern
+    }
+
+    /**
+     * Sets voltage drop and current of every part and group of net from a result computed for it.
+     * Both are magnitudes; a group's current is the phasor sum of its branches. For a netlist of
+     * {@link Components#frozen() frozen copies} they go to the components the copies were taken
+     * from.
+     */
+    public static void writeBack(Netlist net, Result result) {
+        double[] xr = result.xRe, xi = result.xIm;
+        int elements = net.elementCount();
+        int branch = net.nodeCount() - 1;
+        double[] iRe = new double[elements], iIm = new double[elements];
+        for (int e = 0; e < elements; e++) {
+            Components part = net.partOf(e);
+            int a = net.nodeA(e) - 1, b = net.nodeB(e) - 1;
+            double dr = (b >= 0 ? xr[b] : 0.0) - (a >= 0 ? xr[a] : 0.0);
+            double di = (b >= 0 ? xi[b] : 0.0) - (a >= 0 ? xi[a] : 0.0);
+            if (net.kindOf(e) == Netlist.Kind.SOURCE) {
+                iRe[e] = -xr[branch];
+                iIm[e] = -xi[branch++];
+            } else {
+                // current a -> b through the part: Y * (Va - Vb)
+                double gr = result.yRe[e], gi = result.yIm[e];
+                iRe[e] = -(gr * dr - gi * di);
+                iIm[e] = -(gr * di + gi * dr);
+            }
+            if (part != null) live(part).setSimulationState(Math.hypot(dr, di), Math.hypot(iRe[e], iIm[e]));
+        }
+        Map<Components, Integer> elementOf = null;
+        double[] i = new double[2];
+        for (CompositeComponent group : net.groups()) {
+            if (elementOf == null) {
+                elementOf = new IdentityHashMap<>();
+                for (int e = 0; e < elements; e++) if (net.partOf(e) != null) elementOf.put(net.partOf(e), e);
+            }
+            int[] t = net.nodesOf(group);
+            int a = t[0] - 1, b = t[1] - 1;
+            double dr = (b >= 0 ? xr[b] : 0.0) - (a >= 0 ? xr[a] : 0.0);
+            double di = (b >= 0 ? xi[b] : 0.0) - (a >= 0 ? xi[a] : 0.0);
+            groupCurrent(group, elementOf, iRe, iIm, i);
+            live(group).setSimulationState(Math.hypot(dr, di), Math.hypot(i[0], i[1]));
+        }
+    }
+
+    // a netlist built from frozen copies reports to the parts on the board
+    private static Components live(Components c) {
+        return (c.getOriginal() != null) ? c.getOriginal() : c;
+    }
+
+    // series: the same current flows through every child; parallel: branch currents add up
+    private static void groupCurrent(CompositeComponent group, Map<Components, Integer> elementOf,
+                                     double[] iRe, double[] iIm, double[] out) {
+        List<Components> children = group.getChildren();
+        double sumRe = 0.0, sumIm = 0.0;
+        for (Components c : children) {
+            if (c instanceof CompositeComponent cc) {
+                groupCurrent(cc, elementOf, iRe, iIm, out);
+            } else {
+                Integer e = elementOf.get(c);
+                out[0] = (e != null) ? iRe[e] : 0.0;
+                out[1] = (e != null) ? iIm[e] : 0.0;
+            }
+            sumRe += out[0];
+            sumIm += out[1];
+            if (group.getMode() == CompositeComponent.Mode.SERIES) return;
+        }
+        out[0] = sumRe;
+        out[1] = sumIm;
+    }
+}
@@ -0,0 +1,239 @@
+package simulation;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Tolerance analysis: evaluates a circuit many times with every part value scaled by an
+ * independent uniform factor in [1 - tolerance, 1 + tolerance]. A board the labels solve by nodal
+ * analysis is sampled through {@link MnaSolver} on a {@link Netlist#freeze frozen} netlist,
+ * anything else through its {@link CompiledCircuit}, so the spread is around the values on screen.
+ *
+ * Samples are split into chunks on the fork-join pool. Each chunk copies the parameter arrays and
+ * an evaluation stack (or the netlist and a solver) once and then runs allocation-free. Random
+ * streams come from {@link SplittableRandom#split()} along a task tree that depends only on the
+ * sample count, so a seed gives the same results on any number of cores. Current and bulb power
+ * follow {@code CircuitController.updateCircuit}: I = V / |Z| and P = I^2 R_bulb, with the bulb's
+ * own current on a nodal board.
+ */
+public class MonteCarlo {
+    public static final int CHUNK = 2048;
+    public static final int BINS = 40;
+
+    public static class Histogram {
+        public final double min, max, mean, stdDev;
+        public final long[] counts;
+        /** Samples left out of the bins (open circuit: infinite Z). */
+        public final long excluded;
+
+        Histogram(double[] data, int bins) {
+            double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY, sum = 0.0;
+            long n = 0, skipped = 0;
+            for (double v : data) {
+                if (!Double.isFinite(v)) {
+                    skipped++;
+                    continue;
+                }
+                lo = Math.min(lo, v);
+                hi = Math.max(hi, v);
+                sum += v;
+                n++;
+            }
+            double m = n > 0 ? sum / n : Double.NaN;
+            double sq = 0.0;
+            counts = new long[bins];
+            double width = (hi > lo) ? (hi - lo) / bins : 1.0;
+            for (double v : data) {
+                if (!Double.isFinite(v)) continue;
+                sq += (v - m) * (v - m);
+                int b = (int) ((v - lo) / width);
+                counts[Math.min(bins - 1, Math.max(0, b))]++;
+            }
+            this.min = n > 0 ? lo : Double.NaN;
+            this.max = n > 0 ? hi : Double.NaN;
+            this.mean = m;
+            this.stdDev = n > 1 ? Math.sqrt(sq / (n - 1)) : 0.0;
+            this.excluded = skipped;
+        }
+
+        public double binStart(int bin) {
+            return min + bin * (max - min) / counts.length;
+        }
+    }
+
+    public static class Result {
+        public final int samples;
+        public final double tolerance;
+        public final Histogram impedance;
+        public final Histogram current;
+        public final Histogram power;
+        /** Samples per {@link BulbState}, indexed by ordinal (all OFF when there is no bulb). */
+        public final long[] states;
+
+        Result(int samples, double tolerance, Histogram impedance, Histogram current, Histogram power, long[] states) {
+            this.samples = samples;
+            this.tolerance = tolerance;
+            this.impedance = impedance;
+            this.current = current;
+            this.power = power;
+            this.states = states;
+        }
+
+        public double fraction(BulbState state) {
+            return samples == 0 ? 0.0 : (double) states[state.ordinal()] / samples;
+        }
+    }
+
+    private final CompiledCircuit program;
+    private final Netlist net;
+    private final double frequency, voltage, tolerance;
+    private final int bulb;
+    private final double[] z, i, p;
+
+    private MonteCarlo(CompiledCircuit program, Netlist net, double frequency, double voltage, int bulb,
+                       double tolerance, int samples) {
+        this.program = program;
+        this.net = net;
+        this.frequency = frequency;
+        this.voltage = voltage;
+        this.bulb = bulb;
+        this.tolerance = tolerance;
+        this.z = new double[samples];
+        this.i = new double[samples];
+        this.p = new double[samples];
+    }
+
+    /**
+     * @param bulb       parameter index of the bulb in the program ({@link CompiledCircuit#indexOf}), or -1
+     * @param tolerance  relative spread, e.g. 0.05 for +-5%
+     */
+    public static Result run(CompiledCircuit program, double frequency, double voltage, int bulb, double ratedPower,
+                             double tolerance, int samples, long seed) {
+        return run(ForkJoinPool.commonPool(), program, frequency, voltage, bulb, ratedPower, tolerance, samples, seed);
+    }
+
+    public static Result run(ForkJoinPool pool, CompiledCircuit program, double frequency, double voltage, int bulb,
+                             double ratedPower, double tolerance, int samples, long seed) {
+        if (samples <= 0) throw new IllegalArgumentException("Need at least one sample");
+        return collect(pool, new MonteCarlo(program, null, frequency, voltage, bulb, tolerance, samples), ratedPower, seed);
+    }
+
+    /**
+     * Nodal analysis of a frozen netlist at the frequency it was frozen at.
+     *
+     * @param bulb element index of the bulb in net, or -1
+     */
+    public static Result run(Netlist net, double voltage, int bulb, double ratedPower, double tolerance, int samples,
+                             long seed) {
+        return run(ForkJoinPool.commonPool(), net, voltage, bulb, ratedPower, tolerance, samples, seed);
+    }
+
+    public static Result run(ForkJoinPool pool, Netlist net, double voltage, int bulb, double ratedPower,
+                             double tolerance, int samples, long seed) {
+        if (samples <= 0) throw new IllegalArgumentException("Need at least one sample");
+        if (Double.isNaN(net.frozenAt())) throw new IllegalArgumentException("Netlist is not frozen");
+        return collect(pool, new MonteCarlo(null, net, net.frozenAt(), voltage, bulb, tolerance, samples), ratedPower, seed);
+    }
+
+    private static Result collect(ForkJoinPool pool, MonteCarlo mc, double ratedPower, long seed) {
+        int samples = mc.z.length, bulb = mc.bulb;
+        double tolerance = mc.tolerance;
+        pool.invoke(mc.new Chunk(0, samples, new SplittableRandom(seed)));
+
+        long[] states = new long[BulbState.values().length];
+        for (int k = 0; k < samples; k++) {
+            BulbState s = bulb >= 0 ? BulbState.classify(mc.p[k], ratedPower) : BulbState.OFF;
+            states[s.ordinal()]++;
+        }
+        return new Result(samples, tolerance, new Histogram(mc.z, BINS), new Histogram(mc.i, BINS),
+                new Histogram(mc.p, BINS), states);
+    }
+
+    private class Chunk extends RecursiveAction {
+        private final int from, to;
+        private final SplittableRandom random;
+
+        Chunk(int from, int to, SplittableRandom random) {
+            this.from = from;
+            this.to = to;
+            this.random = random;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK) {
+                int mid = (from + to) >>> 1;
+                Chunk left = new Chunk(from, mid, random.split());
+                Chunk right = new Chunk(mid, to, random);
+                left.fork();
+                right.compute();
+                left.join();
+                return;
+            }
+            if (net != null) nodal();
+            else tree();
+        }
+
+        private void tree() {
+            double[] r0 = program.resistances(), l0 = program.inductances(), s0 = program.elastances();
+            int n = r0.length;
+            double[] r = new double[n], l = new double[n], s = new double[n];
+            double[] stack = program.newStack();
+            double[] zz = new double[2];
+            double width = 2.0 * tolerance;
+
+            for (int k = from; k < to; k++) {
+                for (int j = 0; j < n; j++) {
+                    r[j] = r0[j] * (1.0 - tolerance + width * random.nextDouble());
+                    l[j] = l0[j] * (1.0 - tolerance + width * random.nextDouble());
+                    // elastance = 1/C, so vary C and invert
+                    s[j] = s0[j] / (1.0 - tolerance + width * random.nextDouble());
+                }
+                program.evaluate(frequency, r, l, s, stack, zz);
+                double mag = Double.isInfinite(zz[0]) ? Double.POSITIVE_INFINITY : Math.hypot(zz[0], zz[1]);
+                double current = (Double.isInfinite(mag) || mag <= 1e-12) ? 0.0 : voltage / mag;
+                z[k] = mag;
+                i[k] = current;
+                p[k] = bulb >= 0 ? current * current * r[bulb] : 0.0;
+            }
+        }
+
+        // per element one factor on its value (and one on an inductor's series resistance)
+        private void nodal() {
+            Netlist sample = net.freeze(frequency);
+            MnaSolver solver = new MnaSolver();
+            int n = net.elementCount();
+            double[] zz = new double[2];
+            double width = 2.0 * tolerance;
+            double rBulb = bulb >= 0 ? net.valueOf(bulb) : 0.0;
+
+            for (int k = from; k < to; k++) {
+                for (int e = 0; e < n; e++) {
+                    Netlist.Kind kind = net.kindOf(e);
+                    if (kind == Netlist.Kind.SOURCE) continue;
+                    double value = net.valueOf(e) * (1.0 - tolerance + width * random.nextDouble());
+                    double series = kind == Netlist.Kind.INDUCTOR
+                            ? net.seriesResistanceOf(e) * (1.0 - tolerance + width * random.nextDouble()) : 0.0;
+                    Netlist.impedance(kind, value, series, frequency, zz);
+                    sample.setImpedance(e, zz[0], zz[1]);
+                    if (e == bulb) rBulb = value;
+                }
+                MnaSolver.Result r;
+                try {
+                    r = solver.compute(sample, frequency);
+                } catch (IllegalStateException singular) {
+                    z[k] = Double.POSITIVE_INFINITY;
+                    i[k] = 0.0;
+                    p[k] = 0.0;
+                    continue;
+                }
+                double mag = r.getImpedance();
+                z[k] = mag;
+                i[k] = (Double.isInfinite(mag) || mag <= 1e-12) ? 0.0 : voltage / mag;
+                double ib = bulb >= 0 ? r.currentThrough(sample, bulb) : 0.0;
+                p[k] = ib * ib * rBulb;
+            }
+        }
+    }
+}
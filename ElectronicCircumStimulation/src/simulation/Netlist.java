@@ -0,0 +1,387 @@
+package simulation;
+
+import components.*;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Node/element view of a circuit for nodal analysis.
+ *
+ * Every leaf part is a two-terminal element (left terminal = a, right terminal = b). Node 0 is
+ * ground. {@link #fromWires(List)} derives the nodes from the {@link Wire} graph: a SERIES wire
+ * joins the right terminal of one side to the left terminal of the other, a PARALLEL wire joins
+ * left to left and right to right. Groups ({@link CompositeComponent}) are expanded the same way.
+ */
+public class Netlist {
+    public enum Kind { RESISTOR, CAPACITOR, INDUCTOR, SOURCE }
+
+    private int nodeCount = 1; // ground
+    private int size = 0;
+    private Kind[] kinds;
+    private int[] nodeA;
+    private int[] nodeB;
+    private Components[] parts;
+    private double[] values; // for elements without a component
+    private double[] resistances; // their series resistance, null while every one is 0
+    // set by freeze(): part values copied out, so the parts may change while this copy is solved
+    private double[] series, impedanceRe, impedanceIm;
+    private double frozenAt = Double.NaN;
+
+    // group terminals, filled by fromWires (for write-back of group voltages)
+    private final Map<CompositeComponent, int[]> groupNodes = new IdentityHashMap<>();
+
+    public Netlist() {
+        this(16);
+    }
+
+    /** An empty netlist with room for capacity elements before it has to grow. */
+    public Netlist(int capacity) {
+        int n = Math.max(capacity, 1);
+        kinds = new Kind[n];
+        nodeA = new int[n];
+        nodeB = new int[n];
+        parts = new Components[n];
+        values = new double[n];
+    }
+
+    public int newNode() {
+        return nodeCount++;
+    }
+
+    /** Adds an element between nodes a and b; part may be null for elements without a component. */
+    public int addElement(Kind kind, int a, int b, Components part) {
+        if (impedanceRe != null) throw new IllegalStateException("Netlist is frozen");
+        if (a < 0 || b < 0 || a >= nodeCount || b >= nodeCount) {
+            throw new IllegalArgumentException("Unknown node " + a + " or " + b);
+        }
+        if (size == kinds.length) {
+            int cap = size * 2;
+            kinds = Arrays.copyOf(kinds, cap);
+            nodeA = Arrays.copyOf(nodeA, cap);
+            nodeB = Arrays.copyOf(nodeB, cap);
+            parts = Arrays.copyOf(parts, cap);
+            values = Arrays.copyOf(values, cap);
+            if (resistances != null) resistances = Arrays.copyOf(resistances, cap);
+        }
+        kinds[size] = kind;
+        nodeA[size] = a;
+        nodeB[size] = b;
+        parts[size] = part;
+        values[size] = 0.0;
+        return size++;
+    }
+
+    /**
+     * Adds an element that has no component, only a value: ohms, farads, henries (no series
+     * resistance) or volts (DC) depending on kind.
+     */
+    public int addElement(Kind kind, int a, int b, double value) {
+        int e = addElement(kind, a, b, (Components) null);
+        values[e] = value;
+        return e;
+    }
+
+    /** Same as {@link #addElement(Kind, int, int, double)} for an inductor with series resistance. */
+    public int addElement(Kind kind, int a, int b, double value, double seriesResistance) {
+        int e = addElement(kind, a, b, value);
+        if (seriesResistance != 0.0) {
+            if (resistances == null) resistances = new double[kinds.length];
+            resistances[e] = seriesResistance;
+        }
+        return e;
+    }
+
+    public int nodeCount() { return nodeCount; }
+    public int elementCount() { return size; }
+    public Kind kindOf(int e) { return kinds[e]; }
+    public int nodeA(int e) { return nodeA[e]; }
+    public int nodeB(int e) { return nodeB[e]; }
+    public Components partOf(int e) { return parts[e]; }
+
+    /** Resistance (ohms), capacitance (F), inductance (H) or voltage (V) of element e. */
+    public double valueOf(int e) {
+        Components part = parts[e];
+        if (part == null || impedanceRe != null) return values[e];
+        if (part instanceof Capacitor c) return c.getCapacitance();
+        if (part instanceof Inductor l) return l.getInductance();
+        if (part instanceof PowerSource ps) return ps.getVoltage();
+        return part.getResistanceOhms();
+    }
+
+    /** Series resistance of an inductor element (0 for the others). */
+    public double seriesResistanceOf(int e) {
+        if (series != null) return series[e];
+        if (kinds[e] != Kind.INDUCTOR) return 0.0;
+        if (parts[e] != null) return parts[e].getResistanceOhms();
+        return (resistances != null) ? resistances[e] : 0.0;
+    }
+
+    /**
+     * Complex impedance of element e at the given frequency into z[0] (real) and z[1]
+     * (imaginary), like {@link Components#getImpedance(double, double[])}; an open element has
+     * z[0] = +infinity.
+     */
+    public void impedanceOf(int e, double frequency, double[] z) {
+        if (impedanceRe != null) {
+            if (frequency == frozenAt) {
+                z[0] = impedanceRe[e];
+                z[1] = impedanceIm[e];
+                return;
+            }
+        } else if (parts[e] != null) {
+            parts[e].getImpedance(frequency, z);
+            return;
+        }
+        impedance(kinds[e], values[e], seriesResistanceOf(e), frequency, z);
+    }
+
+    /** Complex impedance of an element of the given kind and value into z, as {@link #impedanceOf}. */
+    static void impedance(Kind kind, double value, double seriesResistance, double frequency, double[] z) {
+        double w = 2.0 * Math.PI * frequency;
+        z[1] = 0.0;
+        switch (kind) {
+            case CAPACITOR -> {
+                if (w <= 0 || value <= 0) {
+                    z[0] = Double.POSITIVE_INFINITY;
+                } else {
+                    z[0] = 0.0;
+                    z[1] = -1.0 / (w * value);
+                }
+            }
+            case INDUCTOR -> {
+                z[0] = seriesResistance;
+                z[1] = w * value;
+            }
+            case SOURCE -> z[0] = 0.0;
+            default -> z[0] = value;
+        }
+    }
+
+    /** Replaces the impedance a frozen copy holds for element e at its frequency. */
+    void setImpedance(int e, double re, double im) {
+        if (impedanceRe == null) throw new IllegalStateException("Netlist is not frozen");
+        impedanceRe[e] = re;
+        impedanceIm[e] = im;
+    }
+
+    /** Frequency a frozen copy was taken at, NaN if this netlist is not frozen. */
+    public double frozenAt() {
+        return frozenAt;
+    }
+
+    /**
+     * Copy with every part's value, series resistance and impedance at the given frequency read
+     * out now. Nodes, kinds, parts and group terminals are kept, so results still map back to the
+     * components, but solving the copy never reads them; it can be handed to another thread while
+     * the board keeps changing. The copy cannot be extended.
+     */
+    public Netlist freeze(double frequency) {
+        Netlist copy = new Netlist();
+        copy.nodeCount = nodeCount;
+        copy.size = size;
+        copy.kinds = Arrays.copyOf(kinds, size);
+        copy.nodeA = Arrays.copyOf(nodeA, size);
+        copy.nodeB = Arrays.copyOf(nodeB, size);
+        copy.parts = Arrays.copyOf(parts, size);
+        copy.values = new double[size];
+        copy.series = new double[size];
+        copy.impedanceRe = new double[size];
+        copy.impedanceIm = new double[size];
+        double[] z = new double[2];
+        for (int e = 0; e < size; e++) {
+            copy.values[e] = valueOf(e);
+            copy.series[e] = seriesResistanceOf(e);
+            impedanceOf(e, frequency, z);
+            copy.impedanceRe[e] = z[0];
+            copy.impedanceIm[e] = z[1];
+        }
+        copy.frozenAt = frequency;
+        copy.groupNodes.putAll(groupNodes);
+        return copy;
+    }
+
+    /**
+     * Copy with the same nodes and element i bound to parts.get(i), e.g. the parts this netlist
+     * was read for, or their frozen copies. Values of elements without a part are kept; group
+     * terminals are not.
+     */
+    public Netlist withParts(List<? extends Components> parts) {
+        if (parts.size() != size) throw new IllegalArgumentException(parts.size() + " parts for " + size + " elements");
+        Netlist copy = new Netlist(size);
+        copy.nodeCount = nodeCount;
+        copy.size = size;
+        System.arraycopy(kinds, 0, copy.kinds, 0, size);
+        System.arraycopy(nodeA, 0, copy.nodeA, 0, size);
+        System.arraycopy(nodeB, 0, copy.nodeB, 0, size);
+        System.arraycopy(values, 0, copy.values, 0, size);
+        if (resistances != null) copy.resistances = Arrays.copyOf(resistances, Math.max(size, 1));
+        for (int e = 0; e < size; e++) copy.parts[e] = parts.get(e);
+        return copy;
+    }
+
+    public int sourceCount() {
+        int count = 0;
+        for (int e = 0; e < size; e++) if (kinds[e] == Kind.SOURCE) count++;
+        return count;
+    }
+
+    /** Left/right node of a group that was expanded by {@link #fromWires(List)}, or null. */
+    public int[] nodesOf(CompositeComponent group) {
+        return groupNodes.get(group);
+    }
+
+    public Iterable<CompositeComponent> groups() {
+        return groupNodes.keySet();
+    }
+
+    public static Kind kindFor(Components c) {
+        if (c instanceof PowerSource) return Kind.SOURCE;
+        if (c instanceof Capacitor) return Kind.CAPACITOR;
+        if (c instanceof Inductor) return Kind.INDUCTOR;
+        return Kind.RESISTOR; // Resistor, Bulb and anything else that only has an impedance
+    }
+
+    /**
+     * Builds the netlist of everything reachable from the wires.
+     *
+     * The first power source's left terminal is ground. If that terminal is left dangling (the
+     * usual "source, then a chain of parts" drawing) and exactly one other terminal of the board
+     * is dangling too, the two are joined to close the loop, like the tree evaluator assumes.
+     *
+     * @return the netlist, or null if no power source is wired in
+     */
+    public static Netlist fromWires(List<Wire> wires) {
+        TerminalMap tm = new TerminalMap();
+        for (Wire w : wires) {
+            if (w.getA() == null || w.getB() == null) continue;
+            tm.expand(w.getA());
+            tm.expand(w.getB());
+            if (w.getType() == Wire.Type.SERIES) {
+                tm.union(tm.right(w.getA()), tm.left(w.getB()));
+            } else {
+                tm.union(tm.left(w.getA()), tm.left(w.getB()));
+                tm.union(tm.right(w.getA()), tm.right(w.getB()));
+            }
+        }
+
+        int leaves = tm.leafCount;
+        int driver = -1;
+        for (int i = 0; i < leaves; i++) {
+            if (tm.leaves[i] instanceof PowerSource) {
+                driver = i;
+                break;
+            }
+        }
+        if (driver < 0) return null;
+
+        // close the loop through the source if it is only wired on one side
+        int[] degree = new int[2 * leaves];
+        for (int t = 0; t < 2 * leaves; t++) degree[tm.find(t)]++;
+        int srcMinus = tm.find(2 * driver);
+        int srcPlus = tm.find(2 * driver + 1);
+        if (srcMinus != srcPlus) {
+            int sourceEnd = degree[srcMinus] == 1 ? srcMinus : (degree[srcPlus] == 1 ? srcPlus : -1);
+            if (sourceEnd >= 0) {
+                int other = -1, dangling = 0;
+                for (int t = 0; t < 2 * leaves; t++) {
+                    if (tm.find(t) == t && degree[t] == 1 && t != srcMinus && t != srcPlus) {
+                        other = t;
+                        dangling++;
+                    }
+                }
+                if (dangling == 1) tm.union(sourceEnd, other);
+            }
+        }
+
+        // number the nodes, ground first
+        Netlist net = new Netlist();
+        int[] nodeOf = new int[2 * leaves];
+        Arrays.fill(nodeOf, -1);
+        nodeOf[tm.find(2 * driver)] = 0;
+        for (int t = 0; t < 2 * leaves; t++) {
+            int r = tm.find(t);
+            if (nodeOf[r] < 0) nodeOf[r] = net.newNode();
+        }
+        for (int i = 0; i < leaves; i++) {
+            Components c = tm.leaves[i];
+            net.addElement(kindFor(c), nodeOf[tm.find(2 * i)], nodeOf[tm.find(2 * i + 1)], c);
+        }
+        for (CompositeComponent group : tm.groups) {
+            if (group.getChildren().isEmpty()) continue;
+            net.groupNodes.put(group, new int[] {
+                    nodeOf[tm.find(tm.left(group))], nodeOf[tm.find(tm.right(group))] });
+        }
+        return net;
+    }
+
+    /** Union-find over leaf terminals: leaf i owns terminals 2i (left) and 2i+1 (right). */
+    private static class TerminalMap {
+        Components[] leaves = new Components[16];
+        int leafCount = 0;
+        final Map<Components, Integer> index = new IdentityHashMap<>();
+        final Set<CompositeComponent> groups = Collections.newSetFromMap(new IdentityHashMap<>());
+        int[] parent = new int[32];
+
+        void expand(Components c) {
+            if (c instanceof CompositeComponent group) {
+                if (!groups.add(group)) return;
+                List<Components> children = group.getChildren();
+                for (Components child : children) expand(child);
+                for (int k = 1; k < children.size(); k++) {
+                    Components prev = children.get(k - 1), cur = children.get(k);
+                    if (group.getMode() == CompositeComponent.Mode.SERIES) {
+                        union(right(prev), left(cur));
+                    } else {
+                        union(left(prev), left(cur));
+                        union(right(prev), right(cur));
+                    }
+                }
+                return;
+            }
+            if (index.containsKey(c)) return;
+            if (leafCount == leaves.length) leaves = Arrays.copyOf(leaves, leafCount * 2);
+            if (2 * leafCount + 2 > parent.length) parent = Arrays.copyOf(parent, parent.length * 2);
+            leaves[leafCount] = c;
+            index.put(c, leafCount);
+            parent[2 * leafCount] = 2 * leafCount;
+            parent[2 * leafCount + 1] = 2 * leafCount + 1;
+            leafCount++;
+        }
+
+        int left(Components c) {
+            if (c instanceof CompositeComponent group) {
+                List<Components> ch = group.getChildren();
+                return ch.isEmpty() ? -1 : left(ch.get(0));
+            }
+            return 2 * index.get(c);
+        }
+
+        int right(Components c) {
+            if (c instanceof CompositeComponent group) {
+                List<Components> ch = group.getChildren();
+                if (ch.isEmpty()) return -1;
+                return right(group.getMode() == CompositeComponent.Mode.SERIES ? ch.get(ch.size() - 1) : ch.get(0));
+            }
+            return 2 * index.get(c) + 1;
+        }
+
+        int find(int t) {
+            while (parent[t] != t) {
+                parent[t] = parent[parent[t]];
+                t = parent[t];
+            }
+            return t;
+        }
+
+        void union(int a, int b) {
+            if (a < 0 || b < 0) return;
+            int ra = find(a), rb = find(b);
+            if (ra != rb) parent[ra] = rb;
+        }
+    }
+}
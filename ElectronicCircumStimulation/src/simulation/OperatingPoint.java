@@ -0,0 +1,71 @@
+package simulation;
+
+/**
+ * Steady-state figures of a series/parallel circuit, computed the way the tree path of
+ * {@code CircuitController.updateCircuit} does: Z_Total from the tree, I_Total = V / |Z| and the
+ * bulb power I^2 R_bulb with the bulb in the main current path.
+ */
+public class OperatingPoint {
+    public final double voltage;
+    public final double frequency;
+    /** |Z_Total| in ohms (infinite for an open circuit) and its phase in degrees. */
+    public final double impedance;
+    public final double phase;
+    public final double current;
+    /** Bulb power in watts and its state, or NaN / null when there is no bulb. */
+    public final double bulbPower;
+    public final BulbState bulbState;
+
+    private OperatingPoint(double voltage, double frequency, double impedance, double phase, double current,
+                           double bulbPower, BulbState bulbState) {
+        this.voltage = voltage;
+        this.frequency = frequency;
+        this.impedance = impedance;
+        this.phase = phase;
+        this.current = current;
+        this.bulbPower = bulbPower;
+        this.bulbState = bulbState;
+    }
+
+    /**
+     * @param z    scratch for the complex impedance (two doubles)
+     * @param bulb parameter index of the bulb in the program, or -1
+     */
+    public static OperatingPoint evaluate(CompiledCircuit program, double voltage, double frequency, int bulb,
+                                          double ratedPower, double[] z) {
+        program.evaluate(frequency, z);
+        double rBulb = bulb >= 0 ? program.resistances()[bulb] : Double.NaN;
+        return of(voltage, frequency, z[0], z[1], rBulb, ratedPower);
+    }
+
+    /**
+     * Builds the figures from an already evaluated impedance.
+     *
+     * @param bulbResistance resistance of the bulb, or NaN when there is none
+     */
+    public static OperatingPoint of(double voltage, double frequency, double zRe, double zIm, double bulbResistance,
+                                    double ratedPower) {
+        boolean open = Double.isInfinite(zRe);
+        double zeq = open ? Double.POSITIVE_INFINITY : Math.hypot(zRe, zIm);
+        double phase = open ? 0.0 : Math.toDegrees(Math.atan2(zIm, zRe));
+        double itotal = (Double.isInfinite(zeq) || zeq <= 1e-12 || voltage <= 0) ? 0.0 : voltage / zeq;
+        if (Double.isNaN(bulbResistance)) {
+            return new OperatingPoint(voltage, frequency, zeq, phase, itotal, Double.NaN, null);
+        }
+        double power = itotal * itotal * bulbResistance;
+        return new OperatingPoint(voltage, frequency, zeq, phase, itotal, power, BulbState.classify(power, ratedPower));
+    }
+
+    /**
+     * Figures from a nodal solution ({@link MnaSolver}): Z_Total and its phase as the source
+     * sees them, and the bulb power is what the bulb dissipates wherever it sits.
+     *
+     * @param bulbPower watts in the bulb, or NaN when there is none
+     */
+    public static OperatingPoint ofNodal(double voltage, double frequency, MnaSolver.Result result, double bulbPower,
+                                         double ratedPower) {
+        double current = Math.abs(result.sourceCurrent);
+        BulbState state = Double.isNaN(bulbPower) ? null : BulbState.classify(bulbPower, ratedPower);
+        return new OperatingPoint(voltage, frequency, result.getImpedance(), result.getPhase(), current, bulbPower, state);
+    }
+}
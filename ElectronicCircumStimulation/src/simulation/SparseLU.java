@@ -0,0 +1,418 @@
+package simulation;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * Sparse LU factorization for structurally symmetric matrices (the MNA matrices we build are).
+ *
+ * The constructor does the symbolic work once: minimum-degree ordering, elimination tree and the
+ * exact nonzero pattern of L and U. {@link #factor(double[])} then only does numeric work, so the
+ * same object can be re-factored whenever the values change but the pattern does not.
+ *
+ * Pivoting is static: unknowns with index >= deferFrom (the voltage-source branch currents in MNA)
+ * are eliminated last, after every node they touch, so their zero diagonal has been filled in by
+ * the time it becomes a pivot.
+ *
+ * {@link #factor(double[], double[])} and {@link #solve(double[], double[])} do the same in
+ * complex arithmetic for AC admittance matrices, with real and imaginary parts in separate arrays.
+ */
+public class SparseLU {
+    private final int n;
+    private final int[] colPtr; // pattern of A (original ordering)
+    private final int[] rowIdx;
+
+    private final int[] perm; // new index -> old index
+    private final int[] pinv; // old index -> new index
+    private final int[] parent; // elimination tree
+
+    private final int[] lp, li; // L (unit diagonal, strictly lower) by columns
+    private final int[] up, ui; // U (strictly upper) by columns, diagonal kept apart
+    private final double[] lx, ux, udiag;
+
+    private final double[] work;
+    private double[] lxIm, uxIm, udiagIm, workIm; // complex factorization only
+    private boolean factored = false, complex = false;
+
+    public SparseLU(SparseMatrix a, int deferFrom) {
+        this(a.size(), a.getColPtr(), a.getRowIdx(), deferFrom);
+    }
+
+    public SparseLU(int n, int[] colPtr, int[] rowIdx, int deferFrom) {
+        this.n = n;
+        this.colPtr = colPtr;
+        this.rowIdx = rowIdx;
+
+        int[][] adj = symmetricAdjacency(n, colPtr, rowIdx);
+        this.perm = minimumDegree(n, adj, deferFrom);
+        this.pinv = new int[n];
+        for (int k = 0; k < n; k++) pinv[perm[k]] = k;
+
+        // permuted adjacency: C = P (A + A^T) P^T
+        int[][] cadj = new int[n][];
+        for (int k = 0; k < n; k++) {
+            int[] src = adj[perm[k]];
+            int[] dst = new int[src.length];
+            for (int p = 0; p < src.length; p++) dst[p] = pinv[src[p]];
+            cadj[k] = dst;
+        }
+
+        this.parent = eliminationTree(n, cadj);
+
+        // U(:,k) pattern = ereach(k); L(:,j) pattern is its transpose
+        int[] uPtr = new int[n + 1];
+        int[] uIdx = new int[Math.max(16, n)];
+        int[] stack = new int[n];
+        int[] mark = new int[n];
+        Arrays.fill(mark, -1);
+        int unz = 0;
+        for (int k = 0; k < n; k++) {
+            uPtr[k] = unz;
+            int top = ereach(cadj[k], k, parent, mark, stack);
+            int len = n - top;
+            if (unz + len > uIdx.length) uIdx = Arrays.copyOf(uIdx, Math.max(unz + len, uIdx.length * 2));
+            System.arraycopy(stack, top, uIdx, unz, len);
+            Arrays.sort(uIdx, unz, unz + len);
+            unz += len;
+        }
+        uPtr[n] = unz;
+        this.up = uPtr;
+        this.ui = Arrays.copyOf(uIdx, unz);
+
+        int[] lPtr = new int[n + 1];
+        for (int p = 0; p < unz; p++) lPtr[ui[p] + 1]++;
+        for (int j = 0; j < n; j++) lPtr[j + 1] += lPtr[j];
+        int[] next = Arrays.copyOf(lPtr, n);
+        int[] lIdx = new int[unz];
+        for (int k = 0; k < n; k++) {
+            for (int p = up[k]; p < up[k + 1]; p++) lIdx[next[ui[p]]++] = k;
+        }
+        this.lp = lPtr;
+        this.li = lIdx;
+
+        this.lx = new double[unz];
+        this.ux = new double[unz];
+        this.udiag = new double[n];
+        this.work = new double[n];
+    }
+
+    public int size() {
+        return n;
+    }
+
+    /** Nonzeros in L + U, diagonal included. */
+    public int factorNonZeros() {
+        return 2 * ui.length + n;
+    }
+
+    /**
+     * Numeric factorization of a matrix with the pattern given to the constructor.
+     *
+     * @param values CSC values in the original ordering
+     * @throws IllegalStateException if a pivot is zero (singular matrix)
+     */
+    public void factor(double[] values) {
+        double[] x = work;
+        for (int k = 0; k < n; k++) {
+            // scatter C(:,k) = A(perm[k], perm[k]) block column, permuted
+            int oc = perm[k];
+            for (int p = colPtr[oc]; p < colPtr[oc + 1]; p++) x[pinv[rowIdx[p]]] += values[p];
+
+            // left-looking update with the already finished columns of L
+            for (int p = up[k]; p < up[k + 1]; p++) {
+                int j = ui[p];
+                double ujk = x[j];
+                ux[p] = ujk;
+                x[j] = 0.0;
+                if (ujk == 0.0) continue;
+                for (int q = lp[j]; q < lp[j + 1]; q++) x[li[q]] -= lx[q] * ujk;
+            }
+
+            double pivot = x[k];
+            x[k] = 0.0;
+            if (pivot == 0.0 || !Double.isFinite(pivot)) {
+                factored = false;
+                for (int q = lp[k]; q < lp[k + 1]; q++) x[li[q]] = 0.0;
+                throw new IllegalStateException("Singular matrix at pivot " + k + " (unknown " + oc + ")");
+            }
+            udiag[k] = pivot;
+            for (int q = lp[k]; q < lp[k + 1]; q++) {
+                lx[q] = x[li[q]] / pivot;
+                x[li[q]] = 0.0;
+            }
+        }
+        factored = true;
+        complex = false;
+    }
+
+    /**
+     * Complex numeric factorization of a matrix with the pattern given to the constructor.
+     *
+     * @param re real parts of the CSC values in the original ordering
+     * @param im imaginary parts, same layout
+     * @throws IllegalStateException if a pivot is zero (singular matrix)
+     */
+    public void factor(double[] re, double[] im) {
+        if (workIm == null) {
+            lxIm = new double[lx.length];
+            uxIm = new double[ux.length];
+            udiagIm = new double[n];
+            workIm = new double[n];
+        }
+        double[] x = work, xi = workIm;
+        for (int k = 0; k < n; k++) {
+            int oc = perm[k];
+            for (int p = colPtr[oc]; p < colPtr[oc + 1]; p++) {
+                int r = pinv[rowIdx[p]];
+                x[r] += re[p];
+                xi[r] += im[p];
+            }
+
+            for (int p = up[k]; p < up[k + 1]; p++) {
+                int j = ui[p];
+                double ur = x[j], uim = xi[j];
+                ux[p] = ur;
+                uxIm[p] = uim;
+                x[j] = 0.0;
+                xi[j] = 0.0;
+                if (ur == 0.0 && uim == 0.0) continue;
+                for (int q = lp[j]; q < lp[j + 1]; q++) {
+                    int i = li[q];
+                    x[i] -= lx[q] * ur - lxIm[q] * uim;
+                    xi[i] -= lx[q] * uim + lxIm[q] * ur;
+                }
+            }
+
+            double pr = x[k], pi = xi[k];
+            x[k] = 0.0;
+            xi[k] = 0.0;
+            double mag = pr * pr + pi * pi;
+            if (mag == 0.0 || !Double.isFinite(mag)) {
+                factored = false;
+                for (int q = lp[k]; q < lp[k + 1]; q++) {
+                    x[li[q]] = 0.0;
+                    xi[li[q]] = 0.0;
+                }
+                throw new IllegalStateException("Singular matrix at pivot " + k + " (unknown " + oc + ")");
+            }
+            udiag[k] = pr;
+            udiagIm[k] = pi;
+            // 1 / pivot
+            double ir = pr / mag, ii = -pi / mag;
+            for (int q = lp[k]; q < lp[k + 1]; q++) {
+                int i = li[q];
+                lx[q] = x[i] * ir - xi[i] * ii;
+                lxIm[q] = x[i] * ii + xi[i] * ir;
+                x[i] = 0.0;
+                xi[i] = 0.0;
+            }
+        }
+        factored = true;
+        complex = true;
+    }
+
+    /** Solves A x = b in place (b is overwritten by x). */
+    public void solve(double[] b) {
+        if (!factored) throw new IllegalStateException("Matrix has not been factored");
+        if (complex) throw new IllegalStateException("Matrix was factored in complex arithmetic");
+        double[] y = work;
+        for (int k = 0; k < n; k++) y[k] = b[perm[k]];
+
+        for (int j = 0; j < n; j++) {
+            double yj = y[j];
+            if (yj == 0.0) continue;
+            for (int q = lp[j]; q < lp[j + 1]; q++) y[li[q]] -= lx[q] * yj;
+        }
+        for (int j = n - 1; j >= 0; j--) {
+            double yj = y[j] / udiag[j];
+            y[j] = yj;
+            if (yj == 0.0) continue;
+            for (int p = up[j]; p < up[j + 1]; p++) y[ui[p]] -= ux[p] * yj;
+        }
+
+        for (int k = 0; k < n; k++) {
+            b[perm[k]] = y[k];
+            y[k] = 0.0;
+        }
+    }
+
+    /** Solves A x = b in place after {@link #factor(double[], double[])}; b = re + j im. */
+    public void solve(double[] re, double[] im) {
+        if (!factored) throw new IllegalStateException("Matrix has not been factored");
+        if (!complex) throw new IllegalStateException("Matrix was factored in real arithmetic");
+        double[] y = work, yi = workIm;
+        for (int k = 0; k < n; k++) {
+            y[k] = re[perm[k]];
+            yi[k] = im[perm[k]];
+        }
+
+        for (int j = 0; j < n; j++) {
+            double yr = y[j], yim = yi[j];
+            if (yr == 0.0 && yim == 0.0) continue;
+            for (int q = lp[j]; q < lp[j + 1]; q++) {
+                int i = li[q];
+                y[i] -= lx[q] * yr - lxIm[q] * yim;
+                yi[i] -= lx[q] * yim + lxIm[q] * yr;
+            }
+        }
+        for (int j = n - 1; j >= 0; j--) {
+            double dr = udiag[j], di = udiagIm[j], mag = dr * dr + di * di;
+            double yr = (y[j] * dr + yi[j] * di) / mag;
+            double yim = (yi[j] * dr - y[j] * di) / mag;
+            y[j] = yr;
+            yi[j] = yim;
+            if (yr == 0.0 && yim == 0.0) continue;
+            for (int p = up[j]; p < up[j + 1]; p++) {
+                int i = ui[p];
+                y[i] -= ux[p] * yr - uxIm[p] * yim;
+                yi[i] -= ux[p] * yim + uxIm[p] * yr;
+            }
+        }
+
+        for (int k = 0; k < n; k++) {
+            re[perm[k]] = y[k];
+            im[perm[k]] = yi[k];
+            y[k] = 0.0;
+            yi[k] = 0.0;
+        }
+    }
+
+    // ===== symbolic helpers =====
+
+    private static int[][] symmetricAdjacency(int n, int[] colPtr, int[] rowIdx) {
+        int[] deg = new int[n];
+        for (int j = 0; j < n; j++) {
+            for (int p = colPtr[j]; p < colPtr[j + 1]; p++) {
+                int i = rowIdx[p];
+                if (i == j) continue;
+                deg[i]++;
+                deg[j]++;
+            }
+        }
+        int[][] adj = new int[n][];
+        for (int i = 0; i < n; i++) adj[i] = new int[deg[i]];
+        Arrays.fill(deg, 0);
+        for (int j = 0; j < n; j++) {
+            for (int p = colPtr[j]; p < colPtr[j + 1]; p++) {
+                int i = rowIdx[p];
+                if (i == j) continue;
+                adj[i][deg[i]++] = j;
+                adj[j][deg[j]++] = i;
+            }
+        }
+        // drop duplicates (A and A^T both contribute)
+        int[] mark = new int[n];
+        Arrays.fill(mark, -1);
+        for (int i = 0; i < n; i++) {
+            int len = 0;
+            for (int v : adj[i]) {
+                if (mark[v] != i) {
+                    mark[v] = i;
+                    adj[i][len++] = v;
+                }
+            }
+            adj[i] = Arrays.copyOf(adj[i], len);
+        }
+        return adj;
+    }
+
+    /**
+     * Minimum-degree ordering on an explicit elimination graph. Indices >= deferFrom are appended
+     * at the end in their natural order.
+     */
+    private static int[] minimumDegree(int n, int[][] adjacency, int deferFrom) {
+        int[][] adj = new int[n][];
+        int[] deg = new int[n];
+        for (int i = 0; i < n; i++) {
+            adj[i] = adjacency[i].clone();
+            deg[i] = adj[i].length;
+        }
+        boolean[] eliminated = new boolean[n];
+        int[] mark = new int[n];
+        Arrays.fill(mark, -1);
+
+        PriorityQueue<Long> queue = new PriorityQueue<>();
+        for (int i = 0; i < deferFrom && i < n; i++) queue.add(((long) deg[i] << 32) | i);
+
+        int[] order = new int[n];
+        int count = 0;
+        int[] nbrs = new int[n];
+        while (!queue.isEmpty()) {
+            long top = queue.poll();
+            int v = (int) top;
+            if (eliminated[v] || (int) (top >>> 32) != deg[v]) continue; // stale entry
+
+            eliminated[v] = true;
+            order[count++] = v;
+
+            int nn = 0;
+            for (int k = 0; k < deg[v]; k++) {
+                int u = adj[v][k];
+                if (!eliminated[u]) nbrs[nn++] = u;
+            }
+            adj[v] = null;
+
+            // neighbours of v become a clique
+            for (int a = 0; a < nn; a++) {
+                int u = nbrs[a];
+                int[] au = adj[u];
+                int len = 0;
+                for (int k = 0; k < deg[u]; k++) {
+                    int w = au[k];
+                    if (!eliminated[w]) {
+                        au[len++] = w;
+                        mark[w] = u;
+                    }
+                }
+                mark[u] = u;
+                for (int b = 0; b < nn; b++) {
+                    int w = nbrs[b];
+                    if (mark[w] == u) continue;
+                    if (len == au.length) au = Arrays.copyOf(au, Math.max(4, au.length * 2));
+                    au[len++] = w;
+                    mark[w] = u;
+                }
+                adj[u] = au;
+                deg[u] = len;
+                if (u < deferFrom) queue.add(((long) len << 32) | u);
+            }
+        }
+        for (int i = Math.max(deferFrom, 0); i < n; i++) order[count++] = i;
+        return order;
+    }
+
+    private static int[] eliminationTree(int n, int[][] cadj) {
+        int[] parent = new int[n];
+        int[] ancestor = new int[n];
+        for (int k = 0; k < n; k++) {
+            parent[k] = -1;
+            ancestor[k] = -1;
+            for (int i : cadj[k]) {
+                while (i != -1 && i < k) {
+                    int next = ancestor[i];
+                    ancestor[i] = k;
+                    if (next == -1) parent[i] = k;
+                    i = next;
+                }
+            }
+        }
+        return parent;
+    }
+
+    /** Pattern of row k of L (= column k of U), returned in stack[top..n). */
+    private static int ereach(int[] column, int k, int[] parent, int[] mark, int[] stack) {
+        int n = stack.length;
+        int top = n;
+        mark[k] = k;
+        for (int i : column) {
+            if (i > k) continue;
+            int len = 0;
+            for (; mark[i] != k; i = parent[i]) {
+                stack[len++] = i;
+                mark[i] = k;
+            }
+            while (len > 0) stack[--top] = stack[--len];
+        }
+        return top;
+    }
+}
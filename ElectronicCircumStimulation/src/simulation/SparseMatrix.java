@@ -0,0 +1,124 @@
+package simulation;
+
+import java.util.Arrays;
+
+/**
+ * Square sparse matrix in compressed-column (CSC) form, assembled from (row, col, value) triplets.
+ * Duplicate triplets are summed. {@link #slotOf(int)} tells where each triplet ended up so callers
+ * can re-stamp new values into the same pattern without compressing again.
+ */
+public class SparseMatrix {
+    private final int n;
+
+    // triplet form (while building)
+    private int[] tRow = new int[16];
+    private int[] tCol = new int[16];
+    private double[] tVal = new double[16];
+    private int count = 0;
+
+    // compressed form
+    private int[] colPtr;
+    private int[] rowIdx;
+    private double[] values;
+    private int[] slots; // triplet index -> position in values
+
+    public SparseMatrix(int n) {
+        this.n = n;
+    }
+
+    public int size() {
+        return n;
+    }
+
+    /** Adds a triplet and returns its index (use it with {@link #slotOf(int)} after compress). */
+    public int add(int row, int col, double value) {
+        if (row < 0 || col < 0 || row >= n || col >= n) {
+            throw new IndexOutOfBoundsException("(" + row + "," + col + ") outside " + n + "x" + n);
+        }
+        if (count == tRow.length) {
+            int cap = count * 2;
+            tRow = Arrays.copyOf(tRow, cap);
+            tCol = Arrays.copyOf(tCol, cap);
+            tVal = Arrays.copyOf(tVal, cap);
+        }
+        tRow[count] = row;
+        tCol[count] = col;
+        tVal[count] = value;
+        colPtr = null;
+        return count++;
+    }
+
+    /** Sorts the triplets into CSC form, summing duplicates. */
+    public void compress() {
+        int[] cnt = new int[n + 1];
+        for (int k = 0; k < count; k++) cnt[tCol[k] + 1]++;
+        for (int j = 0; j < n; j++) cnt[j + 1] += cnt[j];
+
+        // bucket by column, then sort rows inside each column
+        int[] order = new int[count];
+        int[] next = Arrays.copyOf(cnt, n);
+        for (int k = 0; k < count; k++) order[next[tCol[k]]++] = k;
+
+        int[] ptr = new int[n + 1];
+        int[] rows = new int[count];
+        slots = new int[count];
+        int nz = 0;
+        long[] keys = new long[0];
+        for (int j = 0; j < n; j++) {
+            int start = cnt[j], end = cnt[j + 1];
+            ptr[j] = nz;
+            int len = end - start;
+            if (keys.length < len) keys = new long[Math.max(len, keys.length * 2)];
+            for (int p = 0; p < len; p++) {
+                int k = order[start + p];
+                keys[p] = ((long) tRow[k] << 32) | k;
+            }
+            Arrays.sort(keys, 0, len);
+            int lastRow = -1;
+            for (int p = 0; p < len; p++) {
+                int row = (int) (keys[p] >>> 32);
+                int k = (int) keys[p];
+                if (row != lastRow) {
+                    rows[nz++] = row;
+                    lastRow = row;
+                }
+                slots[k] = nz - 1;
+            }
+        }
+        ptr[n] = nz;
+
+        colPtr = ptr;
+        rowIdx = Arrays.copyOf(rows, nz);
+        values = new double[nz];
+        for (int k = 0; k < count; k++) values[slots[k]] += tVal[k];
+    }
+
+    public int slotOf(int triplet) {
+        ensureCompressed();
+        return slots[triplet];
+    }
+
+    public int[] getColPtr() {
+        ensureCompressed();
+        return colPtr;
+    }
+
+    public int[] getRowIdx() {
+        ensureCompressed();
+        return rowIdx;
+    }
+
+    public double[] getValues() {
+        ensureCompressed();
+        return values;
+    }
+
+    public int nonZeros() {
+        ensureCompressed();
+        return rowIdx.length;
+    }
+
+    private void ensureCompressed() {
+        if (colPtr == null) compress();
+    }
+}
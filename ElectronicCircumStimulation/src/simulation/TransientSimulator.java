@@ -0,0 +1,473 @@
+package simulation;
+
+import components.*;
+
+import java.util.Arrays;
+
+/**
+ * Time-domain simulation of a {@link Netlist} with companion models.
+ *
+ * Every capacitor and inductor is replaced, for one timestep h, by a conductance G in parallel
+ * with a current source Ieq that carries the history (element current i = G v - Ieq, v = V(a) - V(b)):
+ * <pre>
+ *   capacitor, backward Euler:   G = C/h               Ieq = G v'
+ *   capacitor, trapezoidal:      G = 2C/h              Ieq = G v' + i'
+ *   inductor (series R), BE:     G = 1/(R + L/h)       Ieq = -G (L/h) i'
+ *   inductor (series R), trap.:  G = 1/(R + 2L/h)      Ieq = -G (v' + (2L/h - R) i')
+ * </pre>
+ * (primes are the previous step). With a fixed h the matrix does not change, so it is factored
+ * once (twice for trapezoidal, whose first step is backward Euler) and every step is a
+ * right-hand side update plus one forward/back substitution.
+ *
+ * The circuit starts de-energised and sources switch on at t = 0: a DC source steps to its
+ * voltage, an AC source (frequency &gt; 0) follows V sin(2 pi f t).
+ */
+public class TransientSimulator {
+    public enum Method { BACKWARD_EULER, TRAPEZOIDAL }
+
+    public static class Result {
+        public final double[] times;
+        public final Components[] parts;
+        public final Netlist.Kind[] kinds;
+        /** Element voltage V(a) - V(b) and current a -> b, one row per element. */
+        public final double[][] voltage;
+        public final double[][] current;
+        /** Accepted steps, rejected steps (adaptive runs only) and matrix factorizations. */
+        public final int steps;
+        public final int rejections;
+        public final int factorizations;
+
+        Result(double[] times, Components[] parts, Netlist.Kind[] kinds, double[][] voltage, double[][] current,
+               int steps, int rejections, int factorizations) {
+            this.times = times;
+            this.parts = parts;
+            this.kinds = kinds;
+            this.voltage = voltage;
+            this.current = current;
+            this.steps = steps;
+            this.rejections = rejections;
+            this.factorizations = factorizations;
+        }
+
+        /** Row of the given component, or -1. */
+        public int indexOf(Components part) {
+            for (int e = 0; e < parts.length; e++) if (parts[e] == part) return e;
+            return -1;
+        }
+    }
+
+    /** Settings for {@link #runAdaptive(double, Adaptive)}; zero steps mean "pick from the duration". */
+    public static class Adaptive {
+        public Method method = Method.TRAPEZOIDAL;
+        /** Relative tolerance on capacitor voltages and inductor currents. */
+        public double reltol = 1e-3;
+        /** Absolute tolerance on capacitor voltages (V). */
+        public double vntol = 1e-6;
+        /** Absolute tolerance on inductor currents (A). */
+        public double abstol = 1e-9;
+        public double initialStep = 0.0;
+        public double minStep = 0.0;
+        public double maxStep = 0.0;
+        /** Keep at most one sample per interval in the result (0 = every accepted step). */
+        public double outputInterval = 0.0;
+        /** Times the simulation must land on exactly and restart from (e.g. a switch event). */
+        public double[] breakpoints = new double[0];
+    }
+
+    // a step size change smaller than this is not worth a refactorization
+    private static final double GROW_THRESHOLD = 1.2;
+
+    private static final int R = 0, C = 1, L = 2, V = 3;
+
+    private final Netlist net;
+    private final int size, elements;
+    private final int[] type, branch;
+    private final int[] ta, tb;          // element nodes as indices into x, ground = size
+    private final int[] sources, reactive;
+    private final double[] value, seriesR, amplitude, omega;
+
+    private final MnaPattern pattern;    // built once
+
+    // companion state
+    final double[] g, histV, histI, ieq, vPrev, iPrev, vNow, iNow;
+    final double[] x;   // unknowns, plus a trailing slot standing in for ground
+    private double stampedStep = Double.NaN;
+    private Method stampedMethod;
+    int factorizations = 0;
+
+    public TransientSimulator(Netlist net) {
+        this.net = net;
+        this.pattern = new MnaPattern(net);
+        this.elements = net.elementCount();
+        this.size = pattern.size;
+
+        type = new int[elements];
+        branch = pattern.branch;
+        value = new double[elements];
+        seriesR = new double[elements];
+        amplitude = new double[elements];
+        omega = new double[elements];
+        g = new double[elements];
+        histV = new double[elements];
+        histI = new double[elements];
+        ieq = new double[elements];
+        vPrev = new double[elements];
+        iPrev = new double[elements];
+        vNow = new double[elements];
+        iNow = new double[elements];
+        x = new double[size + 1];
+        ta = new int[elements];
+        tb = new int[elements];
+
+        for (int e = 0; e < elements; e++) {
+            int na = net.nodeA(e) - 1, nb = net.nodeB(e) - 1;
+            ta[e] = na >= 0 ? na : size;
+            tb[e] = nb >= 0 ? nb : size;
+            value[e] = net.valueOf(e);
+            seriesR[e] = net.seriesResistanceOf(e);
+            switch (net.kindOf(e)) {
+                case SOURCE -> {
+                    type[e] = V;
+                    amplitude[e] = value[e];
+                    double f = (net.partOf(e) instanceof PowerSource ps) ? ps.getFrequency() : 0.0;
+                    omega[e] = 2.0 * Math.PI * Math.max(f, 0.0);
+                }
+                case CAPACITOR -> type[e] = C;
+                case INDUCTOR -> type[e] = L;
+                default -> type[e] = R;
+            }
+        }
+
+        int ns = 0, nr = 0;
+        for (int e = 0; e < elements; e++) {
+            if (type[e] == V) ns++;
+            else if (type[e] != R) nr++;
+        }
+        sources = new int[ns];
+        reactive = new int[nr];
+        ns = 0;
+        nr = 0;
+        for (int e = 0; e < elements; e++) {
+            if (type[e] == V) sources[ns++] = e;
+            else if (type[e] != R) reactive[nr++] = e;
+        }
+    }
+
+    public Netlist getNetlist() {
+        return net;
+    }
+
+    public int factorizations() {
+        return factorizations;
+    }
+
+    /** Discharges every capacitor and inductor (the state at t = 0). */
+    public void reset() {
+        Arrays.fill(vPrev, 0.0);
+        Arrays.fill(iPrev, 0.0);
+    }
+
+    /**
+     * Runs from t = 0 to duration with a fixed step.
+     *
+     * @param sampleEvery keep every n-th step in the result (t = 0 is always kept)
+     */
+    public Result run(double step, double duration, Method method, int sampleEvery) {
+        if (step <= 0 || duration < 0) throw new IllegalArgumentException("Need step > 0 and duration >= 0");
+        int stride = Math.max(1, sampleEvery);
+        int steps = (int) Math.ceil(duration / step - 1e-9);
+        int samples = steps / stride + 1;
+        double[] times = new double[samples];
+        double[][] vOut = new double[elements][samples];
+        double[][] iOut = new double[elements][samples];
+        int factorsBefore = factorizations;
+
+        reset();
+        int s = 1;
+        for (int n = 1; n <= steps; n++) {
+            double t = n * step;
+            // the source switch-on is a discontinuity: take the first step with backward Euler, which
+            // needs no consistent initial current, then continue with the requested method
+            advance(t, step, n == 1 ? Method.BACKWARD_EULER : method);
+            accept();
+            if (n % stride == 0) {
+                times[s] = t;
+                for (int e = 0; e < elements; e++) {
+                    vOut[e][s] = vPrev[e];
+                    iOut[e][s] = iPrev[e];
+                }
+                s++;
+            }
+        }
+
+        return result(times, vOut, iOut, steps, 0, factorizations - factorsBefore);
+    }
+
+    /**
+     * Runs from t = 0 to duration, choosing the step from the local truncation error.
+     *
+     * After each solve the error of every capacitor voltage and inductor current is estimated from
+     * divided differences over the last accepted points (h^2 x''/2 for backward Euler, h^3 x'''/12
+     * for trapezoidal) and compared with reltol * |x| + abstol. A step over tolerance is rejected
+     * and retried smaller; otherwise the next step grows, but only when the change is large enough
+     * to pay for the refactorization it costs. Breakpoints restart the step sequence.
+     *
+     * Right after t = 0 and every breakpoint, where the sources switch, there are not yet enough
+     * points for that estimate. The first step is then taken as two backward Euler half steps and
+     * checked against one full step; the second uses the backward Euler estimate even when the
+     * method is trapezoidal. No step is accepted, or grows, without an estimate.
+     */
+    public Result runAdaptive(double duration, Adaptive opt) {
+        if (duration <= 0) throw new IllegalArgumentException("Need duration > 0");
+        double hMax = opt.maxStep > 0 ? opt.maxStep : duration / 50;
+        double hMin = opt.minStep > 0 ? opt.minStep : duration * 1e-12;
+        double hStart = Math.min(hMax, opt.initialStep > 0 ? opt.initialStep : duration * 1e-5);
+        int order = opt.method == Method.TRAPEZOIDAL ? 2 : 1;
+
+        double[] bps = breakpointsUpTo(opt.breakpoints, duration);
+        int nextBp = 0;
+        int nr = reactive.length;
+        // the last three accepted points, newest first: hist[k][r] is x of reactive element r
+        double[][] hist = new double[3][nr];
+        double[] histT = new double[3];
+        int known = 1;
+        double[] full = new double[nr];
+        double[][] saved = new double[2][elements];
+
+        int cap = 256;
+        double[] times = new double[cap];
+        double[][] vOut = new double[elements][cap];
+        double[][] iOut = new double[elements][cap];
+        int samples = 1;
+        double lastOut = 0.0;
+
+        int steps = 0, rejections = 0;
+        int factorsBefore = factorizations;
+        reset();
+
+        double t = 0.0;
+        double h = hStart;
+        boolean restart = true; // first step after t = 0 or a breakpoint
+        while (t < duration * (1 - 1e-12)) {
+            double limit = nextBp < bps.length ? bps[nextBp] : duration;
+            boolean hitsLimit = t + h >= limit * (1 - 1e-12);
+            double hTry = hitsLimit ? limit - t : h;
+
+            // order of the error estimate: backward Euler until there are points enough for more
+            int k = (restart || known < 3) ? 1 : order;
+            double ratio;
+            if (known < 2) {
+                ratio = halvedStepError(t, hTry, opt, saved, full);
+            } else {
+                advance(t + hTry, hTry, restart ? Method.BACKWARD_EULER : opt.method);
+                ratio = errorRatio(hist, histT, known, t + hTry, hTry, k, opt);
+            }
+
+            if (ratio > 1.0 && hTry > hMin) {
+                rejections++;
+                h = Math.max(hMin, hTry * Math.max(0.25, 0.9 * Math.pow(ratio, -1.0 / (k + 1))));
+                continue;
+            }
+
+            accept();
+            steps++;
+            t += hTry;
+            for (int kk = 2; kk > 0; kk--) {
+                System.arraycopy(hist[kk - 1], 0, hist[kk], 0, nr);
+                histT[kk] = histT[kk - 1];
+            }
+            for (int r = 0; r < nr; r++) hist[0][r] = stateOf(reactive[r]);
+            histT[0] = t;
+            known = Math.min(3, known + 1);
+            restart = false;
+
+            if (hitsLimit && nextBp < bps.length && limit == bps[nextBp]) {
+                nextBp++;
+                restart = true;
+                known = 1;
+                h = hStart;
+            } else {
+                double grow = ratio > 0 ? Math.min(2.0, 0.9 * Math.pow(ratio, -1.0 / (k + 1))) : 2.0;
+                if (grow < 1.0) h = Math.max(hMin, hTry * grow);
+                else if (grow >= GROW_THRESHOLD) h = Math.min(hMax, hTry * grow);
+                else h = hTry;
+            }
+
+            if (opt.outputInterval <= 0 || t - lastOut >= opt.outputInterval || t >= duration * (1 - 1e-12)) {
+                if (samples == cap) {
+                    cap *= 2;
+                    times = Arrays.copyOf(times, cap);
+                    for (int e = 0; e < elements; e++) {
+                        vOut[e] = Arrays.copyOf(vOut[e], cap);
+                        iOut[e] = Arrays.copyOf(iOut[e], cap);
+                    }
+                }
+                times[samples] = t;
+                for (int e = 0; e < elements; e++) {
+                    vOut[e][samples] = vPrev[e];
+                    iOut[e][samples] = iPrev[e];
+                }
+                samples++;
+                lastOut = t;
+            }
+        }
+
+        times = Arrays.copyOf(times, samples);
+        for (int e = 0; e < elements; e++) {
+            vOut[e] = Arrays.copyOf(vOut[e], samples);
+            iOut[e] = Arrays.copyOf(iOut[e], samples);
+        }
+        return result(times, vOut, iOut, steps, rejections, factorizations - factorsBefore);
+    }
+
+    /**
+     * Error ratio of a step with no history: two backward Euler half steps, whose error is about
+     * their difference from one full step. Leaves the half-step solution in vNow/iNow and the
+     * accepted state as it was.
+     */
+    private double halvedStepError(double t, double h, Adaptive opt, double[][] saved, double[] full) {
+        advance(t + h, h, Method.BACKWARD_EULER);
+        for (int r = 0; r < reactive.length; r++) {
+            int e = reactive[r];
+            full[r] = type[e] == C ? vNow[e] : iNow[e];
+        }
+        System.arraycopy(vPrev, 0, saved[0], 0, elements);
+        System.arraycopy(iPrev, 0, saved[1], 0, elements);
+        advance(t + h / 2, h / 2, Method.BACKWARD_EULER);
+        accept();
+        advance(t + h, h / 2, Method.BACKWARD_EULER);
+        System.arraycopy(saved[0], 0, vPrev, 0, elements);
+        System.arraycopy(saved[1], 0, iPrev, 0, elements);
+
+        double worst = 0.0;
+        for (int r = 0; r < reactive.length; r++) {
+            int e = reactive[r];
+            double x = type[e] == C ? vNow[e] : iNow[e];
+            double scale = Math.max(Math.abs(x), Math.abs(type[e] == C ? vPrev[e] : iPrev[e]));
+            double tol = opt.reltol * scale + (type[e] == C ? opt.vntol : opt.abstol);
+            worst = Math.max(worst, Math.abs(x - full[r]) / tol);
+        }
+        return worst;
+    }
+
+    // worst LTE / tolerance over the reactive elements for the solution in vNow/iNow
+    private double errorRatio(double[][] hist, double[] histT, int known, double t, double h, int k, Adaptive opt) {
+        double worst = 0.0;
+        for (int r = 0; r < reactive.length; r++) {
+            int e = reactive[r];
+            double x0 = type[e] == C ? vNow[e] : iNow[e];
+            double dd10 = (x0 - hist[0][r]) / (t - histT[0]);
+            double dd11 = (hist[0][r] - hist[1][r]) / (histT[0] - histT[1]);
+            double dd2 = (dd10 - dd11) / (t - histT[1]);
+            double lte;
+            if (k == 1 || known < 3) {
+                lte = h * h * Math.abs(dd2);
+            } else {
+                double dd12 = (hist[1][r] - hist[2][r]) / (histT[1] - histT[2]);
+                double dd21 = (dd11 - dd12) / (histT[0] - histT[2]);
+                double dd3 = (dd2 - dd21) / (t - histT[2]);
+                lte = h * h * h * Math.abs(dd3) / 2.0;
+            }
+            double scale = Math.max(Math.abs(x0), Math.abs(hist[0][r]));
+            double tol = opt.reltol * scale + (type[e] == C ? opt.vntol : opt.abstol);
+            worst = Math.max(worst, lte / tol);
+        }
+        return worst;
+    }
+
+    // the integrated quantity: capacitor voltage, inductor current
+    private double stateOf(int e) {
+        return type[e] == C ? vPrev[e] : iPrev[e];
+    }
+
+    private static double[] breakpointsUpTo(double[] breakpoints, double duration) {
+        double[] sorted = breakpoints.clone();
+        Arrays.sort(sorted);
+        int n = 0;
+        for (double b : sorted) {
+            if (b > 0 && b < duration && (n == 0 || b > sorted[n - 1])) sorted[n++] = b;
+        }
+        return Arrays.copyOf(sorted, n);
+    }
+
+    private Result result(double[] times, double[][] vOut, double[][] iOut, int steps, int rejections, int factors) {
+        Components[] parts = new Components[elements];
+        Netlist.Kind[] kinds = new Netlist.Kind[elements];
+        for (int e = 0; e < elements; e++) {
+            parts[e] = net.partOf(e);
+            kinds[e] = net.kindOf(e);
+        }
+        return new Result(times, parts, kinds, vOut, iOut, steps, rejections, factors);
+    }
+
+    /**
+     * Solves for t with step h from the accepted state; the solution goes to vNow/iNow. The
+     * matrix is only re-stamped and re-factored when h or the method changed.
+     */
+    void advance(double t, double h, Method method) {
+        if (h != stampedStep || method != stampedMethod) restamp(h, method);
+
+        double[] b = x;
+        Arrays.fill(b, 0.0);
+        for (int k = 0; k < sources.length; k++) {
+            int e = sources[k];
+            b[branch[e]] = omega[e] > 0 ? amplitude[e] * Math.sin(omega[e] * t) : amplitude[e];
+        }
+        for (int k = 0; k < reactive.length; k++) {
+            int e = reactive[k];
+            double hist = histV[e] * vPrev[e] + histI[e] * iPrev[e];
+            ieq[e] = hist;
+            b[ta[e]] += hist;
+            b[tb[e]] -= hist;
+        }
+        pattern.lu.solve(b);
+        b[size] = 0.0; // ground
+
+        for (int e = 0; e < elements; e++) {
+            double v = b[ta[e]] - b[tb[e]];
+            vNow[e] = v;
+            iNow[e] = g[e] * v - ieq[e];
+        }
+        for (int k = 0; k < sources.length; k++) {
+            int e = sources[k];
+            iNow[e] = -b[branch[e]];
+        }
+    }
+
+    /** Makes the last {@link #advance} result the new history. */
+    void accept() {
+        System.arraycopy(vNow, 0, vPrev, 0, elements);
+        System.arraycopy(iNow, 0, iPrev, 0, elements);
+    }
+
+    // G and the history coefficients (Ieq = histV v' + histI i') for step h, then one factorization
+    private void restamp(double h, Method method) {
+        boolean trap = method == Method.TRAPEZOIDAL;
+        double k = trap ? 2.0 : 1.0;
+        for (int e = 0; e < elements; e++) {
+            double ge = 0.0, hv = 0.0, hi = 0.0;
+            switch (type[e]) {
+                case R -> ge = MnaSolver.conductance(value[e]);
+                case C -> {
+                    ge = value[e] > 0 ? k * value[e] / h : 0.0;
+                    hv = ge;
+                    hi = trap ? 1.0 : 0.0;
+                }
+                case L -> {
+                    double lh = k * value[e] / h;
+                    ge = 1.0 / Math.max(seriesR[e] + lh, MnaSolver.MIN_IMPEDANCE);
+                    hv = trap ? -ge : 0.0;
+                    hi = trap ? -ge * (lh - seriesR[e]) : -ge * lh;
+                }
+                default -> { }
+            }
+            g[e] = ge;
+            histV[e] = hv;
+            histI[e] = hi;
+        }
+        pattern.load(g);
+        factorizations++;
+        stampedStep = h;
+        stampedMethod = method;
+    }
+}
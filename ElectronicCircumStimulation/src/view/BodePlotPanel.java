@@ -0,0 +1,166 @@
+package view;
+
+import simulation.FrequencySweep;
+
+import javax.swing.*;
+import java.awt.*;
+import java.awt.geom.Path2D;
+
+/**
+ * Bode plot of a {@link FrequencySweep.Result}: magnitude in dB on top, phase in degrees below,
+ * both against a logarithmic frequency axis. The root curve is the input impedance (dB re 1 ohm),
+ * probe curves are V_probe / V_source (dB).
+ */
+public class BodePlotPanel extends JPanel {
+    private static final Color[] SERIES_COLORS = {
+            new Color(0, 90, 200), new Color(200, 60, 0), new Color(0, 140, 60), new Color(140, 0, 160)
+    };
+    private static final Font AXIS_FONT = new Font("SansSerif", Font.PLAIN, 11);
+    private static final int PAD_LEFT = 56, PAD_RIGHT = 16, PAD_TOP = 24, PAD_BOTTOM = 28, GAP = 30;
+
+    private FrequencySweep.Result result;
+
+    public BodePlotPanel() {
+        setBackground(Color.WHITE);
+        setPreferredSize(new Dimension(520, 460));
+    }
+
+    public void setResult(FrequencySweep.Result result) {
+        this.result = result;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g2.setFont(AXIS_FONT);
+
+        if (result == null || result.frequencies.length < 2) {
+            g2.setColor(Color.DARK_GRAY);
+            g2.drawString("No sweep yet.", PAD_LEFT, PAD_TOP + 12);
+            return;
+        }
+
+        int w = getWidth() - PAD_LEFT - PAD_RIGHT;
+        int plotH = (getHeight() - PAD_TOP - PAD_BOTTOM - GAP) / 2;
+        Rectangle magRect = new Rectangle(PAD_LEFT, PAD_TOP, w, plotH);
+        Rectangle phaseRect = new Rectangle(PAD_LEFT, PAD_TOP + plotH + GAP, w, plotH);
+
+        int series = 1 + result.probes.length;
+        double[][] db = new double[series][];
+        double[][] ph = new double[series][];
+        String[] names = new String[series];
+        db[0] = toDb(result.magnitude);
+        ph[0] = result.phase;
+        names[0] = "|Z| (dBΩ)";
+        for (int p = 0; p < result.probes.length; p++) {
+            db[p + 1] = toDb(result.probeGain[p]);
+            ph[p + 1] = result.probePhase[p];
+            names[p + 1] = "V(" + result.probes[p].getId() + ")/V_src (dB)";
+        }
+
+        double[] dbRange = range(db);
+        drawPlot(g2, magRect, db, dbRange[0], dbRange[1], "dB");
+        drawPlot(g2, phaseRect, ph, -90, 90, "deg");
+
+        // legend
+        int lx = PAD_LEFT;
+        for (int s = 0; s < series; s++) {
+            g2.setColor(SERIES_COLORS[s % SERIES_COLORS.length]);
+            g2.fillRect(lx, 8, 10, 10);
+            g2.setColor(Color.DARK_GRAY);
+            g2.drawString(names[s], lx + 14, 17);
+            lx += g2.getFontMetrics().stringWidth(names[s]) + 30;
+        }
+    }
+
+    private void drawPlot(Graphics2D g2, Rectangle r, double[][] data, double lo, double hi, String unit) {
+        double[] f = result.frequencies;
+        double fLo = Math.log10(Math.max(f[0], 1e-12));
+        double fHi = Math.log10(Math.max(f[f.length - 1], 1e-12));
+        if (fHi <= fLo) fHi = fLo + 1;
+        if (hi <= lo) hi = lo + 1;
+
+        g2.setColor(new Color(250, 250, 250));
+        g2.fill(r);
+        g2.setColor(new Color(225, 225, 225));
+        for (int dec = (int) Math.ceil(fLo); dec <= (int) Math.floor(fHi); dec++) {
+            int x = r.x + (int) ((dec - fLo) / (fHi - fLo) * r.width);
+            g2.drawLine(x, r.y, x, r.y + r.height);
+            g2.setColor(Color.GRAY);
+            g2.drawString(decadeLabel(dec), x - 10, r.y + r.height + 14);
+            g2.setColor(new Color(225, 225, 225));
+        }
+        for (int k = 0; k <= 4; k++) {
+            int y = r.y + r.height - k * r.height / 4;
+            g2.drawLine(r.x, y, r.x + r.width, y);
+            g2.setColor(Color.GRAY);
+            g2.drawString(String.format("%.0f", lo + k * (hi - lo) / 4), r.x - 44, y + 4);
+            g2.setColor(new Color(225, 225, 225));
+        }
+        g2.setColor(Color.GRAY);
+        g2.draw(r);
+        g2.drawString(unit, r.x - 44, r.y - 6);
+
+        Shape clip = g2.getClip();
+        g2.clip(r);
+        g2.setStroke(new BasicStroke(1.5f));
+        for (int s = 0; s < data.length; s++) {
+            Path2D.Double line = new Path2D.Double();
+            boolean pen = false;
+            for (int i = 0; i < f.length; i++) {
+                double v = data[s][i];
+                if (!Double.isFinite(v) || f[i] <= 0) {
+                    pen = false;
+                    continue;
+                }
+                double x = r.x + (Math.log10(f[i]) - fLo) / (fHi - fLo) * r.width;
+                double y = r.y + r.height - (v - lo) / (hi - lo) * r.height;
+                if (pen) line.lineTo(x, y); else line.moveTo(x, y);
+                pen = true;
+            }
+            g2.setColor(SERIES_COLORS[s % SERIES_COLORS.length]);
+            g2.draw(line);
+        }
+        g2.setStroke(new BasicStroke(1));
+        g2.setClip(clip);
+    }
+
+    private static String decadeLabel(int dec) {
+        return switch (dec) {
+            case 0 -> "1Hz";
+            case 1 -> "10Hz";
+            case 2 -> "100Hz";
+            case 3 -> "1kHz";
+            case 4 -> "10kHz";
+            case 5 -> "100kHz";
+            case 6 -> "1MHz";
+            default -> "1e" + dec;
+        };
+    }
+
+    private static double[] toDb(double[] mag) {
+        double[] out = new double[mag.length];
+        for (int i = 0; i < mag.length; i++) out[i] = 20.0 * Math.log10(mag[i]);
+        return out;
+    }
+
+    // rounded to 10 dB, ignoring open/short points
+    private static double[] range(double[][] data) {
+        double lo = Double.POSITIVE_INFINITY, hi = Double.NEGATIVE_INFINITY;
+        for (double[] row : data) {
+            for (double v : row) {
+                if (!Double.isFinite(v)) continue;
+                lo = Math.min(lo, v);
+                hi = Math.max(hi, v);
+            }
+        }
+        if (lo > hi) return new double[] { -40, 40 };
+        lo = Math.floor(lo / 10) * 10;
+        hi = Math.ceil(hi / 10) * 10;
+        if (hi - lo < 20) hi = lo + 20;
+        return new double[] { lo, hi };
+    }
+}
@@ -1,12 +1,17 @@
 package view;
 
+import metrics.Probe;
+import model.CircuitListener;
 import model.CircuitModel;
 import components.*;
+import simulation.FrequencySweep;
+import simulation.MonteCarlo;
 
 import javax.swing.*;
 import javax.swing.border.EmptyBorder;
 import java.awt.*;
 import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 
 public class CircuitPanel extends JPanel {
     private final CircuitModel model;
@@ -16,13 +21,19 @@ public class CircuitPanel extends JPanel {
     private Rectangle toolboxDrawRect = new Rectangle(10, 10, 560, 120); // sẽ update trong doLayout()
 
     // ====== Board ======
+    // screen area of the board; the circuit inside it is infinite and seen through the viewport
     public final Rectangle boardRect = new Rectangle(10, 150, 965, 500);
+    public final Viewport viewport = new Viewport();
 
     // ====== Controller dùng ======
     public final JButton seriesBtn = new JButton("Series");
     public final JButton parallelBtn = new JButton("Parallel");
     public final JButton undoBtn = new JButton("Undo");
     public final JButton helpBtn = new JButton("Help");
+    public final JButton bodeBtn = new JButton("Bode");
+    public final JButton toleranceBtn = new JButton("±5%");
+    public final JButton openBtn = new JButton("Open");
+    public final JButton saveBtn = new JButton("Save");
 
     // Bulb mode buttons (1 lần chọn, có phản ứng màu)
     public final JToggleButton bulbParallelBtn = new JToggleButton("parallel");
@@ -32,7 +43,15 @@ public class CircuitPanel extends JPanel {
     public final JLabel circuitStatsLabel = new JLabel("Set source.");
     public final JLabel componentValuesLabel = new JLabel("Selected: None");
 
-    private final JLabel hintLabel = new JLabel("Click toolbox to add. Drag to move. Select two & connect.");
+    // Bode plot window (opened next to the board on demand)
+    private final BodePlotPanel bodePanel = new BodePlotPanel();
+    private JDialog bodeDialog;
+
+    // Monte Carlo tolerance window
+    private final TolerancePanel tolerancePanel = new TolerancePanel();
+    private JDialog toleranceDialog;
+
+    private final JLabel hintLabel = new JLabel("Click toolbox to add. Drag to move, drag the board to pan, wheel to zoom. Select two & connect.");
 
     // layout slots
     private final JPanel headerRow = new JPanel();
@@ -50,8 +69,34 @@ public class CircuitPanel extends JPanel {
     private static final Color ACTIVE_BLUE = new Color(190, 215, 245);
     private static final Color INACTIVE_BG = Color.WHITE;
 
+    private static final Color TOOLBOX_EDGE = new Color(160, 160, 160);
+    private static final Color BOARD_FILL = new Color(245, 255, 245);
+
+    // selection outline (parts) and group frame reach this far outside getBounds()
+    static final int OUTLINE_PAD = 8;
+
+    // Retained layer: the toolbox never changes between layouts, so it is drawn once into an
+    // image (at device resolution) and only blitted per paint. Null = rebuild. The board fill
+    // comes with the circuit tiles.
+    private BufferedImage toolboxLayer;
+    private double layerScale = 1.0;
+
+    // pre-rendered part bodies with labels; 1024 sprites of ~70x40 px stay around 12 MB
+    private final SpriteCache sprites = new SpriteCache(1024);
+    private Font partFont;
+
+    // the circuit itself, as tiles that survive panning
+    private final TileCache tiles;
+
+    // timings table (F3), refreshed twice a second while shown
+    private static final Probe PAINT = Probe.named("paint");
+    private final ProbeOverlay probes = new ProbeOverlay();
+    private final Timer probesRefresh = new Timer(500, e -> repaint(probes.bounds(boardRect)));
+
     public CircuitPanel(CircuitModel model) {
         this.model = model;
+        this.tiles = new TileCache(model, sprites, BOARD_FILL);
+        model.getCircuit().addListener(new BoardRepainter());
         setLayout(new BorderLayout());
         setBackground(Color.WHITE);
 
@@ -114,13 +159,33 @@ public class CircuitPanel extends JPanel {
                 HOW TO USE
                 - Click Toolbox to add components
                 - Drag to move
+                - Double-click a part to change its value
                 - Click two components to select
                 - Press Series / Parallel to connect
                 - Undo reverts last action
+                - Open / Save load and store boards
+                - F3 shows timings
                 """,
                 "Help",
                 JOptionPane.INFORMATION_MESSAGE
         ));
+
+        getInputMap(WHEN_IN_FOCUSED_WINDOW).put(KeyStroke.getKeyStroke("F3"), "toggleProbes");
+        getActionMap().put("toggleProbes", new AbstractAction() {
+            @Override
+            public void actionPerformed(java.awt.event.ActionEvent e) {
+                setProbesVisible(!probes.isVisible());
+            }
+        });
+        if (probes.isVisible()) probesRefresh.start();
+    }
+
+    /** Shows or hides the timings table; the probes only record while it is shown. */
+    public void setProbesVisible(boolean on) {
+        probes.setVisible(on);
+        if (on) probesRefresh.start();
+        else probesRefresh.stop();
+        repaint(probes.bounds(boardRect));
     }
 
     private JComponent buildMenuGrid() {
@@ -130,8 +195,12 @@ public class CircuitPanel extends JPanel {
 
         styleButton(undoBtn);
         styleButton(helpBtn);
+        styleButton(bodeBtn);
+        styleButton(toleranceBtn);
         styleButton(parallelBtn);
         styleButton(seriesBtn);
+        styleButton(openBtn);
+        styleButton(saveBtn);
 
         GridBagConstraints gbc = new GridBagConstraints();
         gbc.insets = new Insets(0, 0, 0, 0);
@@ -140,10 +209,14 @@ public class CircuitPanel extends JPanel {
 
         // Row 1
         gbc.gridy = 0;
-        gbc.gridx = 0; gbc.gridwidth = 2; gbc.weightx = 1;
+        gbc.gridx = 0; gbc.gridwidth = 1; gbc.weightx = 1;
         grid.add(wrapCell(undoBtn), gbc);
-        gbc.gridx = 2; gbc.gridwidth = 2;
+        gbc.gridx = 1;
         grid.add(wrapCell(helpBtn), gbc);
+        gbc.gridx = 2;
+        grid.add(wrapCell(bodeBtn), gbc);
+        gbc.gridx = 3;
+        grid.add(wrapCell(toleranceBtn), gbc);
 
         // Row 2: header Wire / Bulb
         gbc.gridy = 1;
@@ -159,6 +232,11 @@ public class CircuitPanel extends JPanel {
         gbc.gridx = 2; grid.add(wrapCell(bulbParallelBtn), gbc);
         gbc.gridx = 3; grid.add(wrapCell(bulbSeriesBtn), gbc);
 
+        // Row 4: board files
+        gbc.gridy = 3; gbc.gridwidth = 2;
+        gbc.gridx = 0; grid.add(wrapCell(openBtn), gbc);
+        gbc.gridx = 2; grid.add(wrapCell(saveBtn), gbc);
+
         return grid;
     }
 
@@ -188,6 +266,35 @@ public class CircuitPanel extends JPanel {
         return p;
     }
 
+    public void showBode(FrequencySweep.Result result) {
+        bodePanel.setResult(result);
+        if (bodeDialog == null) {
+            Window owner = SwingUtilities.getWindowAncestor(this);
+            bodeDialog = new JDialog(owner, "Bode Plot", Dialog.ModalityType.MODELESS);
+            bodeDialog.add(bodePanel);
+            bodeDialog.pack();
+            if (owner != null) {
+                // open beside the main window
+                bodeDialog.setLocation(owner.getX() + owner.getWidth(), owner.getY());
+            }
+        }
+        bodeDialog.setVisible(true);
+    }
+
+    public void showTolerance(MonteCarlo.Result result) {
+        tolerancePanel.setResult(result);
+        if (toleranceDialog == null) {
+            Window owner = SwingUtilities.getWindowAncestor(this);
+            toleranceDialog = new JDialog(owner, "Tolerance Analysis", Dialog.ModalityType.MODELESS);
+            toleranceDialog.add(tolerancePanel);
+            toleranceDialog.pack();
+            if (owner != null) {
+                toleranceDialog.setLocation(owner.getX() + owner.getWidth(), owner.getY() + 40);
+            }
+        }
+        toleranceDialog.setVisible(true);
+    }
+
     public boolean isInToolboxArea(Point p) {
         return toolboxDrawRect.contains(p);
     }
@@ -219,43 +326,166 @@ public class CircuitPanel extends JPanel {
         boardRect.y = topH + 10;
         boardRect.width = getWidth() - 20;
         boardRect.height = Math.max(200, getHeight() - boardRect.y - 20);
+
+        if (toolboxLayer != null && (toolboxLayer.getWidth() != layerSize(toolboxDrawRect.width)
+                || toolboxLayer.getHeight() != layerSize(toolboxDrawRect.height))) {
+            toolboxLayer = null;
+        }
     }
 
     @Override
     protected void paintComponent(Graphics g) {
+        long started = PAINT.start();
         super.paintComponent(g);
         Graphics2D g2 = (Graphics2D) g;
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
         Stroke originalStroke = g2.getStroke();
-        Shape originalClip = g2.getClip();
         AffineTransform originalTx = g2.getTransform();
 
+        // only what intersects the dirty region gets drawn (null clip = everything)
+        Rectangle clip = g2.getClipBounds();
+
+        // static layer, rebuilt only after a resize or a change of screen scale
+        double scale = originalTx.getScaleX();
+        if (scale != layerScale) {
+            layerScale = scale;
+            toolboxLayer = null;
+        }
+
         // TOOLBOX
-        g2.setClip(toolboxDrawRect);
-        g2.translate(toolboxDrawRect.x, toolboxDrawRect.y);
-        toolboxView.draw(g2);
-        g2.setTransform(originalTx);
-        g2.setClip(originalClip);
-
-        // toolbox bottom border (lấy lại viền dưới)
-        g2.setColor(new Color(160, 160, 160));
-        g2.drawLine(toolboxDrawRect.x, toolboxDrawRect.y + toolboxDrawRect.height,
-                toolboxDrawRect.x + toolboxDrawRect.width, toolboxDrawRect.y + toolboxDrawRect.height);
-
-        // BOARD
-        g2.setColor(new Color(245, 255, 245));
-        g2.fill(boardRect);
+        if (clip == null || clip.intersects(toolboxDrawRect.x, toolboxDrawRect.y,
+                toolboxDrawRect.width + 1, toolboxDrawRect.height + 1)) {
+            if (toolboxLayer == null) toolboxLayer = renderToolboxLayer();
+            blit(g2, toolboxLayer, toolboxDrawRect.x, toolboxDrawRect.y, toolboxDrawRect.width + 1, toolboxDrawRect.height + 1);
+        }
+
+        // BOARD: the tiles are opaque and fill it, the frame and title go on top
+        Rectangle visible = (clip == null) ? new Rectangle(boardRect) : clip.intersection(boardRect);
+        if (!visible.isEmpty()) {
+            g2.clip(boardRect);
+            paintCircuit(g2, visible, originalTx);
+            g2.setTransform(originalTx);
+            g2.setClip(clip);
+            paintBoardChrome(g2);
+        }
+
+        g2.setStroke(originalStroke);
+        PAINT.stop(started);
+
+        if (probes.isVisible()) {
+            Rectangle table = probes.bounds(boardRect);
+            if (clip == null || clip.intersects(table)) probes.paint(g2, boardRect);
+        }
+    }
+
+    // visible is the part of the board (panel coordinates) that needs drawing
+    private void paintCircuit(Graphics2D g2, Rectangle visible, AffineTransform panelTx) {
+        AffineTransform device = new AffineTransform(panelTx);
+        device.concatenate(viewport.getTransform());
+        Rectangle clip = panelTx.createTransformedShape(visible).getBounds();
+        Rectangle view = panelTx.createTransformedShape(boardRect).getBounds();
+        if (partFont == null) partFont = getFont().deriveFont(12f);
+
+        // tiles are blitted 1:1 in device space; the clip set above stays where it is
+        g2.setTransform(new AffineTransform());
+        tiles.paint(g2, clip, view, viewport.getZoom(), device.getScaleX(),
+                (int) Math.round(device.getTranslateX()), (int) Math.round(device.getTranslateY()), partFont);
+    }
+
+    // toolbox clipped to its slot, plus its bottom border (lấy lại viền dưới)
+    private BufferedImage renderToolboxLayer() {
+        int w = toolboxDrawRect.width, h = toolboxDrawRect.height;
+        BufferedImage img = newLayer(w + 1, h + 1);
+        Graphics2D g = layerGraphics(img);
+        g.setColor(getBackground());
+        g.fillRect(0, 0, w + 1, h + 1);
+        g.clipRect(0, 0, w, h);
+        toolboxView.draw(g);
+        g.setClip(null);
+        g.setColor(TOOLBOX_EDGE);
+        g.drawLine(0, h, w, h);
+        g.dispose();
+        return img;
+    }
+
+    private void paintBoardChrome(Graphics2D g2) {
         g2.setColor(Color.GRAY);
-        g2.draw(boardRect);
-        g2.setFont(g2.getFont().deriveFont(12f));
-        g2.setColor(Color.DARK_GRAY);
-        g2.drawString("Circuit Board", boardRect.x + 8, boardRect.y + 16);
+        g2.drawRect(boardRect.x, boardRect.y, boardRect.width, boardRect.height);
+        Graphics2D g = (Graphics2D) g2.create();
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(partFont);
+        g.setColor(Color.DARK_GRAY);
+        g.drawString("Circuit Board", boardRect.x + 8, boardRect.y + 16);
+        g.dispose();
+    }
 
-        for (Wire w : model.getWires()) w.draw(g2);
-        for (Components c : model.getCircuit().getComponents()) c.draw(g2);
+    private int layerSize(int logical) {
+        return (int) Math.ceil((logical + 1) * layerScale);
+    }
 
-        g2.setStroke(originalStroke);
+    private BufferedImage newLayer(int w, int h) {
+        int pw = (int) Math.ceil(w * layerScale), ph = (int) Math.ceil(h * layerScale);
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        return (gc != null)
+                ? gc.createCompatibleImage(pw, ph, Transparency.OPAQUE)
+                : new BufferedImage(pw, ph, BufferedImage.TYPE_INT_RGB);
+    }
+
+    private Graphics2D layerGraphics(BufferedImage img) {
+        Graphics2D g = img.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.scale(layerScale, layerScale);
+        return g;
+    }
+
+    // w x h logical pixels, which the layer covers one image pixel per device pixel
+    private static void blit(Graphics2D g2, BufferedImage img, int x, int y, int w, int h) {
+        g2.drawImage(img, x, y, w, h, null);
+    }
+
+    // r in world coordinates: drops the tiles showing it and repaints it
+    private void invalidatePadded(Rectangle r) {
+        r.grow(OUTLINE_PAD, OUTLINE_PAD);
+        tiles.invalidate(r);
+        Rectangle screen = viewport.toScreen(r).intersection(boardRect);
+        if (!screen.isEmpty()) repaint(screen);
+    }
+
+    /** Turns model notifications into tile invalidations and repaints of just the affected area. */
+    private class BoardRepainter implements CircuitListener {
+        @Override
+        public void componentMoved(Components c, Rectangle before) {
+            // old and new bounds of the part plus every wire attached to it, before and after
+            Rectangle dirty = before.union(c.getBounds());
+            for (Wire w : model.getWires()) {
+                if (w.getA() == c) {
+                    dirty.add(w.getBounds(before, w.getB().getBounds()));
+                    dirty.add(w.getBounds());
+                } else if (w.getB() == c) {
+                    dirty.add(w.getBounds(w.getA().getBounds(), before));
+                    dirty.add(w.getBounds());
+                }
+            }
+            invalidatePadded(dirty);
+        }
+
+        @Override
+        public void selectionChanged(Components c) {
+            invalidatePadded(c.getBounds());
+        }
+
+        @Override
+        public void valueChanged(Components c) {
+            invalidatePadded(c.getBounds());
+        }
+
+        @Override
+        public void structureChanged() {
+            tiles.invalidateAll();
+            repaint();
+        }
     }
 
     private void styleBulbToggle(JToggleButton b) {
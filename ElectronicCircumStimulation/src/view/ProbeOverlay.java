@@ -0,0 +1,59 @@
+package view;
+
+import metrics.LatencyHistogram;
+import metrics.Probe;
+
+import java.awt.*;
+
+/**
+ * Table of the {@link Probe} timings in the top-right corner of the board: count, p50, p99 and
+ * max per probe. Probes only record while the table is shown.
+ */
+class ProbeOverlay {
+    private static final Font FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+    private static final Color BACKGROUND = new Color(0, 0, 0, 170);
+    private static final int WIDTH = 380; // one ROW in FONT, plus padding
+    private static final int LINE = 14;
+    private static final int PAD = 6;
+    private static final String ROW = "%-14s %7s %9s %9s %9s";
+
+    private boolean visible = Probe.isEnabled();
+
+    boolean isVisible() {
+        return visible;
+    }
+
+    void setVisible(boolean on) {
+        visible = on;
+        Probe.setEnabled(on);
+    }
+
+    /** Area of the table on the given board, one row per probe known so far. */
+    Rectangle bounds(Rectangle board) {
+        int rows = Probe.all().size() + 1;
+        return new Rectangle(board.x + board.width - WIDTH - 8, board.y + 8, WIDTH, rows * LINE + 2 * PAD);
+    }
+
+    void paint(Graphics2D g2, Rectangle board) {
+        Rectangle r = bounds(board);
+        Graphics2D g = (Graphics2D) g2.create();
+        g.setColor(BACKGROUND);
+        g.fillRect(r.x, r.y, r.width, r.height);
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(FONT);
+        g.setColor(Color.WHITE);
+        int x = r.x + PAD, y = r.y + PAD + LINE - 3;
+        g.drawString(String.format(ROW, "probe", "count", "p50", "p99", "max"), x, y);
+        for (Probe p : Probe.all()) {
+            LatencyHistogram h = p.getHistogram();
+            y += LINE;
+            g.drawString(String.format(ROW, p.getName(), h.count(),
+                    ms(h.percentile(0.50)), ms(h.percentile(0.99)), ms(h.max())), x, y);
+        }
+        g.dispose();
+    }
+
+    private static String ms(long nanos) {
+        return String.format("%.2fms", nanos / 1e6);
+    }
+}
@@ -0,0 +1,317 @@
+package view;
+
+import components.*;
+import model.CircuitModel;
+
+import javax.swing.SwingUtilities;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The circuit cut into square tiles of {@link #TILE} device pixels, rendered once per zoom.
+ *
+ * Tiles are opaque (board fill included, so a blit needs no blending) and fixed in world space,
+ * so panning only blits images that already exist, and a model change only drops the tiles its
+ * area touches. Tiles around the view, and a few more ahead of the direction it last moved in,
+ * are rendered on a background thread from the parts' {@link Components#frozen() frozen copies};
+ * a tile dropped while that render runs is discarded when it comes back. Everything except the
+ * render itself runs on the EDT.
+ */
+class TileCache {
+    static final int TILE = 256; // device px
+
+    // level of detail by zoom: sprites, then outlined boxes, then bare boxes
+    static final double LOD_LABELS = 0.6;
+    static final double LOD_OUTLINES = 0.25;
+
+    private static final int AHEAD = 2;         // extra tile rows/columns prerendered while panning
+    private static final int MAX_PENDING = 32;  // background renders in flight
+    private static final int MIN_CAPACITY = 64; // tiles; at most 256 KB each, empty ones are free
+
+    private static final class Tile {
+        final int tx, ty;
+        BufferedImage image;    // null while pending; shared blank image when nothing is there
+        boolean ready;
+        volatile boolean stale; // no longer cached; a background render of it is thrown away
+
+        Tile(int tx, int ty) {
+            this.tx = tx;
+            this.ty = ty;
+        }
+    }
+
+    private final CircuitModel model;
+    private final Color background;
+    private final SpriteCache sprites;                              // EDT renders
+    private final SpriteCache workerSprites = new SpriteCache(256); // background renders
+    private final ExecutorService prerender = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "tile-prerender");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private int capacity = MIN_CAPACITY;
+    private final Map<Long, Tile> tiles = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Tile> eldest) {
+            if (size() <= capacity) return false;
+            eldest.getValue().stale = true;
+            return true;
+        }
+    };
+    private BufferedImage blank; // background only, shared by all empty tiles
+    private int pending;
+    private long hits, misses;
+
+    // what the cached tiles were rendered for; scale is device pixels per world unit
+    private double zoom = Double.NaN, scale = Double.NaN;
+    // last offset of the world origin against the view, and the direction it last moved
+    private int lastX, lastY, dirX, dirY;
+
+    // scratch
+    private final List<Components> parts = new ArrayList<>();
+    private final List<Wire> wires = new ArrayList<>();
+    private final List<Wire> candidates = new ArrayList<>();
+    private final List<Tile> missing = new ArrayList<>();
+
+    TileCache(CircuitModel model, SpriteCache sprites, Color background) {
+        this.model = model;
+        this.sprites = sprites;
+        this.background = background;
+    }
+
+    /**
+     * Blits the tiles covering clip, rendering the missing ones first, then queues prerendering
+     * around view. Both rectangles are in device pixels and g2 must carry no transform; world
+     * (0, 0) lands on device (ox, oy) and one world unit is s device pixels.
+     */
+    void paint(Graphics2D g2, Rectangle clip, Rectangle view, double zoom, double s, int ox, int oy, Font font) {
+        if (zoom != this.zoom || s != scale) {
+            invalidateAll();
+            this.zoom = zoom;
+            scale = s;
+            dirX = dirY = 0;
+        } else {
+            // content moving right uncovers tiles on the left
+            if (ox - view.x != lastX) dirX = -Integer.signum(ox - view.x - lastX);
+            if (oy - view.y != lastY) dirY = -Integer.signum(oy - view.y - lastY);
+        }
+        lastX = ox - view.x;
+        lastY = oy - view.y;
+
+        int vx0 = Math.floorDiv(view.x - ox, TILE), vx1 = Math.floorDiv(view.x + view.width - 1 - ox, TILE);
+        int vy0 = Math.floorDiv(view.y - oy, TILE), vy1 = Math.floorDiv(view.y + view.height - 1 - oy, TILE);
+        capacity = Math.max(MIN_CAPACITY, 3 * (vx1 - vx0 + 1 + 2 + AHEAD) * (vy1 - vy0 + 1 + 2 + AHEAD));
+
+        int cx0 = Math.floorDiv(clip.x - ox, TILE), cx1 = Math.floorDiv(clip.x + clip.width - 1 - ox, TILE);
+        int cy0 = Math.floorDiv(clip.y - oy, TILE), cy1 = Math.floorDiv(clip.y + clip.height - 1 - oy, TILE);
+        for (int ty = cy0; ty <= cy1; ty++) {
+            for (int tx = cx0; tx <= cx1; tx++) {
+                Tile t = tiles.get(key(tx, ty));
+                if (t != null && t.ready) {
+                    hits++;
+                    continue;
+                }
+                if (t != null) t.stale = true; // visible now: do not wait for the background
+                t = new Tile(tx, ty);
+                tiles.put(key(tx, ty), t);
+                missing.add(t);
+            }
+        }
+        if (!missing.isEmpty()) {
+            misses += missing.size();
+            candidatesIn(cx0, cy0, cx1, cy1);
+            for (Tile t : missing) {
+                collect(t);
+                t.image = render(t, parts, wires, zoom, s, sprites, font, background);
+                if (t.image == null) t.image = blank();
+                t.ready = true;
+            }
+            parts.clear();
+            wires.clear();
+            missing.clear();
+        }
+
+        for (int ty = cy0; ty <= cy1; ty++) {
+            for (int tx = cx0; tx <= cx1; tx++) {
+                Tile t = tiles.get(key(tx, ty));
+                if (t != null) g2.drawImage(t.image, ox + tx * TILE, oy + ty * TILE, null);
+            }
+        }
+
+        prefetch(vx0, vy0, vx1, vy1, font);
+    }
+
+    /** Drops the tiles that show any part of the world rectangle r. */
+    void invalidate(Rectangle r) {
+        if (Double.isNaN(scale) || tiles.isEmpty()) return;
+        int tx0 = Math.floorDiv((int) Math.floor(r.x * scale), TILE);
+        int ty0 = Math.floorDiv((int) Math.floor(r.y * scale), TILE);
+        int tx1 = Math.floorDiv((int) Math.ceil((r.x + r.width) * scale), TILE);
+        int ty1 = Math.floorDiv((int) Math.ceil((r.y + r.height) * scale), TILE);
+        if ((long) (tx1 - tx0 + 1) * (ty1 - ty0 + 1) > tiles.size()) {
+            for (Iterator<Tile> it = tiles.values().iterator(); it.hasNext(); ) {
+                Tile t = it.next();
+                if (t.tx >= tx0 && t.tx <= tx1 && t.ty >= ty0 && t.ty <= ty1) {
+                    t.stale = true;
+                    it.remove();
+                }
+            }
+            return;
+        }
+        for (int ty = ty0; ty <= ty1; ty++) {
+            for (int tx = tx0; tx <= tx1; tx++) {
+                Tile t = tiles.remove(key(tx, ty));
+                if (t != null) t.stale = true;
+            }
+        }
+    }
+
+    void invalidateAll() {
+        for (Tile t : tiles.values()) t.stale = true;
+        tiles.clear();
+    }
+
+    /** Tiles blitted as they were. */
+    long hits() {
+        return hits;
+    }
+
+    /** Tiles that had to be rendered on the EDT. */
+    long misses() {
+        return misses;
+    }
+
+    // one ring around the view, and AHEAD more rows/columns on the side it is moving towards
+    private void prefetch(int vx0, int vy0, int vx1, int vy1, Font font) {
+        int x0 = vx0 - 1 - (dirX < 0 ? AHEAD : 0), x1 = vx1 + 1 + (dirX > 0 ? AHEAD : 0);
+        int y0 = vy0 - 1 - (dirY < 0 ? AHEAD : 0), y1 = vy1 + 1 + (dirY > 0 ? AHEAD : 0);
+        boolean candidatesReady = false;
+        for (int ty = y0; ty <= y1 && pending < MAX_PENDING; ty++) {
+            for (int tx = x0; tx <= x1 && pending < MAX_PENDING; tx++) {
+                if (tiles.containsKey(key(tx, ty))) continue;
+                if (!candidatesReady) {
+                    candidatesIn(x0, y0, x1, y1);
+                    candidatesReady = true;
+                }
+                schedule(new Tile(tx, ty), font);
+            }
+        }
+        candidates.clear();
+    }
+
+    private void schedule(Tile t, Font font) {
+        tiles.put(key(t.tx, t.ty), t);
+        collect(t);
+        if (parts.isEmpty() && wires.isEmpty()) {
+            t.image = blank();
+            t.ready = true;
+            return;
+        }
+        // the live parts keep changing on the EDT; the worker draws frozen copies
+        List<Components> ps = new ArrayList<>(parts.size());
+        for (Components c : parts) ps.add(c.frozen());
+        List<Wire> ws = new ArrayList<>(wires.size());
+        for (Wire w : wires) ws.add(new Wire(w.getA().frozen(), w.getB().frozen(), w.getType()));
+        parts.clear();
+        wires.clear();
+
+        double z = zoom, s = scale;
+        Color bg = background;
+        pending++;
+        prerender.execute(() -> {
+            BufferedImage img = t.stale ? null : render(t, ps, ws, z, s, workerSprites, font, bg);
+            SwingUtilities.invokeLater(() -> {
+                pending--;
+                if (t.stale) return;
+                t.image = img;
+                t.ready = true;
+            });
+        });
+    }
+
+    // candidates = wires that may show in tiles tx0..tx1, ty0..ty1
+    private void candidatesIn(int tx0, int ty0, int tx1, int ty1) {
+        candidates.clear();
+        Rectangle area = world(tx0, ty0, tx1, ty1);
+        for (Wire w : model.getWires()) {
+            if (w.intersects(area)) candidates.add(w);
+        }
+    }
+
+    // parts and wires = what shows in tile t, in drawing order
+    private void collect(Tile t) {
+        Rectangle area = world(t.tx, t.ty, t.tx, t.ty);
+        wires.clear();
+        for (int i = 0; i < candidates.size(); i++) {
+            if (candidates.get(i).intersects(area)) wires.add(candidates.get(i));
+        }
+        area.grow(CircuitPanel.OUTLINE_PAD, CircuitPanel.OUTLINE_PAD);
+        parts.clear();
+        model.getCircuit().componentsIn(area, parts);
+    }
+
+    // world rectangle covered by tiles tx0..tx1, ty0..ty1 at the current scale
+    private Rectangle world(int tx0, int ty0, int tx1, int ty1) {
+        int x0 = (int) Math.floor(tx0 * (double) TILE / scale), y0 = (int) Math.floor(ty0 * (double) TILE / scale);
+        int x1 = (int) Math.ceil((tx1 + 1) * (double) TILE / scale), y1 = (int) Math.ceil((ty1 + 1) * (double) TILE / scale);
+        return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    private BufferedImage blank() {
+        if (blank == null) {
+            blank = new BufferedImage(TILE, TILE, BufferedImage.TYPE_INT_RGB);
+            Graphics2D g = blank.createGraphics();
+            g.setColor(background);
+            g.fillRect(0, 0, TILE, TILE);
+            g.dispose();
+        }
+        return blank;
+    }
+
+    private static long key(int tx, int ty) {
+        return ((long) tx << 32) | (ty & 0xffffffffL);
+    }
+
+    // tile pixel = world * s - tile origin; null when nothing shows in the tile
+    private static BufferedImage render(Tile t, List<Components> parts, List<Wire> wires, double zoom,
+                                        double s, SpriteCache sprites, Font font, Color background) {
+        if (parts.isEmpty() && wires.isEmpty()) return null;
+        BufferedImage img = new BufferedImage(TILE, TILE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(background);
+        g.fillRect(0, 0, TILE, TILE);
+        double dx = -(double) t.tx * TILE, dy = -(double) t.ty * TILE;
+        if (zoom >= LOD_LABELS) {
+            // full detail
+            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+            g.translate(dx, dy);
+            g.scale(s, s);
+            for (int i = 0; i < wires.size(); i++) wires.get(i).draw(g);
+            g.setFont(font);
+            for (int i = 0; i < parts.size(); i++) sprites.draw(g, parts.get(i));
+        } else {
+            // plain boxes and thin lines, mapped by hand so Java2D stays on integer primitives
+            boolean outline = zoom >= LOD_OUTLINES;
+            for (int i = 0; i < wires.size(); i++) wires.get(i).drawPlain(g, s, dx, dy);
+            for (int i = 0; i < parts.size(); i++) drawPlain(g, parts.get(i), s, dx, dy, outline);
+        }
+        g.dispose();
+        return img;
+    }
+
+    private static void drawPlain(Graphics2D g2, Components c, double scale, double dx, double dy, boolean outline) {
+        if (c instanceof CompositeComponent group) {
+            for (Components child : group.getChildren()) drawPlain(g2, child, scale, dx, dy, outline);
+        } else {
+            c.drawPlain(g2, scale, dx, dy, outline);
+        }
+    }
+}
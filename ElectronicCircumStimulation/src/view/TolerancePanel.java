@@ -0,0 +1,102 @@
+package view;
+
+import simulation.BulbState;
+import simulation.MonteCarlo;
+
+import javax.swing.*;
+import java.awt.*;
+
+/**
+ * Histograms of a {@link MonteCarlo.Result}: Z_Total, I_Total and bulb power, with the share of
+ * samples in each {@link BulbState} underneath.
+ */
+public class TolerancePanel extends JPanel {
+    private static final Font AXIS_FONT = new Font("SansSerif", Font.PLAIN, 11);
+    private static final Font TITLE_FONT = new Font("SansSerif", Font.BOLD, 12);
+    private static final Color BAR = new Color(0, 90, 200);
+    private static final int PAD = 16, GAP = 26, STATE_H = 40;
+
+    private MonteCarlo.Result result;
+
+    public TolerancePanel() {
+        setBackground(Color.WHITE);
+        setPreferredSize(new Dimension(520, 560));
+    }
+
+    public void setResult(MonteCarlo.Result result) {
+        this.result = result;
+        repaint();
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        Graphics2D g2 = (Graphics2D) g;
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        if (result == null) {
+            g2.setFont(AXIS_FONT);
+            g2.setColor(Color.DARK_GRAY);
+            g2.drawString("No analysis yet.", PAD, PAD + 12);
+            return;
+        }
+
+        int w = getWidth() - 2 * PAD;
+        int h = (getHeight() - 2 * PAD - STATE_H - 3 * GAP) / 3;
+        int y = PAD;
+        drawHistogram(g2, new Rectangle(PAD, y + 14, w, h - 14), result.impedance, "Z_Total (Ω)");
+        y += h + GAP;
+        drawHistogram(g2, new Rectangle(PAD, y + 14, w, h - 14), result.current, "I_Total (A)");
+        y += h + GAP;
+        drawHistogram(g2, new Rectangle(PAD, y + 14, w, h - 14), result.power, "Bulb power (W)");
+        y += h + GAP;
+        drawStates(g2, new Rectangle(PAD, y, w, STATE_H));
+    }
+
+    private void drawHistogram(Graphics2D g2, Rectangle r, MonteCarlo.Histogram hist, String title) {
+        g2.setFont(TITLE_FONT);
+        g2.setColor(Color.DARK_GRAY);
+        g2.drawString(String.format("%s   mean %.4g   σ %.3g", title, hist.mean, hist.stdDev), r.x, r.y - 4);
+
+        g2.setColor(new Color(250, 250, 250));
+        g2.fill(r);
+        long peak = 1;
+        for (long c : hist.counts) peak = Math.max(peak, c);
+        int bins = hist.counts.length;
+        g2.setColor(BAR);
+        for (int b = 0; b < bins; b++) {
+            int x0 = r.x + b * r.width / bins;
+            int x1 = r.x + (b + 1) * r.width / bins;
+            int bh = (int) ((double) hist.counts[b] / peak * (r.height - 4));
+            g2.fillRect(x0, r.y + r.height - bh, Math.max(1, x1 - x0 - 1), bh);
+        }
+        g2.setColor(Color.GRAY);
+        g2.draw(r);
+        g2.setFont(AXIS_FONT);
+        if (Double.isFinite(hist.min)) {
+            g2.drawString(String.format("%.4g", hist.min), r.x, r.y + r.height + 12);
+            String hi = String.format("%.4g", hist.max);
+            g2.drawString(hi, r.x + r.width - g2.getFontMetrics().stringWidth(hi), r.y + r.height + 12);
+        }
+        if (hist.excluded > 0) {
+            String open = hist.excluded + " open-circuit samples";
+            g2.drawString(open, r.x + (r.width - g2.getFontMetrics().stringWidth(open)) / 2, r.y + r.height + 12);
+        }
+    }
+
+    private void drawStates(Graphics2D g2, Rectangle r) {
+        Color[] colors = { Color.RED, new Color(0, 153, 0), Color.DARK_GRAY };
+        g2.setFont(TITLE_FONT);
+        int x = r.x;
+        for (BulbState s : BulbState.values()) {
+            int bw = (int) Math.round(result.fraction(s) * r.width);
+            g2.setColor(colors[s.ordinal()]);
+            g2.fillRect(x, r.y, bw, 14);
+            x += bw;
+        }
+        g2.setColor(Color.DARK_GRAY);
+        g2.drawString(String.format("BLOWN %.1f%%   BRIGHT %.1f%%   OFF %.1f%%   (%d samples, ±%.0f%%)",
+                100 * result.fraction(BulbState.BLOWN), 100 * result.fraction(BulbState.BRIGHT),
+                100 * result.fraction(BulbState.OFF), result.samples, 100 * result.tolerance), r.x, r.y + 32);
+    }
+}
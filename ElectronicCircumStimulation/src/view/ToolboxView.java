@@ -13,6 +13,11 @@ public class ToolboxView {
     public static final int HEIGHT = 120;
     private static final int HEADER_HEIGHT = 30;
 
+    private static final Font TITLE_FONT = new Font("SansSerif", Font.BOLD, 14);
+    private static final Font LABEL_FONT = new Font("SansSerif", Font.PLAIN, 12);
+    private static final Color BACKGROUND = new Color(230, 230, 230);
+    private static final String[] LABELS = {"Power Source", "Resistor", "Bulb", "Capacitor", "Inductor"};
+
     private final Rectangle[] slots = new Rectangle[5];
 
     // --- 1. Create "Dummy" Components for display purposes ---
@@ -47,27 +52,35 @@ public class ToolboxView {
         sampleBulb.setSelected(false);
         sampleCapacitor.setSelected(false);
         sampleInductor.setSelected(false);
+
+        // the slots never move, so neither do the samples
+        Components[] samples = {sampleSource, sampleResistor, sampleBulb, sampleCapacitor, sampleInductor};
+        for (int i = 0; i < numSlots; i++) {
+            Rectangle r = slots[i];
+            samples[i].setPosition(r.x + r.width / 2, r.y + r.height / 2 - 6);
+        }
     }
 
+    /** Draws the whole toolbox. Nothing here changes at run time, so callers may cache the result. */
     public void draw(Graphics2D g2) {
-        g2.setColor(new Color(230, 230, 230));
+        g2.setColor(BACKGROUND);
         g2.fillRect(X, Y, WIDTH, HEIGHT);
         g2.setColor(Color.GRAY);
         g2.drawRect(X, Y, WIDTH, HEIGHT);
 
         g2.setColor(Color.BLACK);
-        g2.setFont(new Font("SansSerif", Font.BOLD, 14));
+        g2.setFont(TITLE_FONT);
         g2.drawString("Toolbox", X + 10, Y + 20);
 
         // --- 3. Draw using the Component's OWN draw method ---
-        drawComponentInSlot(g2, slots[0], sampleSource, "Power Source");
-        drawComponentInSlot(g2, slots[1], sampleResistor, "Resistor");
-        drawComponentInSlot(g2, slots[2], sampleBulb, "Bulb");
-        drawComponentInSlot(g2, slots[3], sampleCapacitor, "Capacitor");
-        drawComponentInSlot(g2, slots[4], sampleInductor, "Inductor");
+        drawComponentInSlot(g2, slots[0], sampleSource, LABELS[0]);
+        drawComponentInSlot(g2, slots[1], sampleResistor, LABELS[1]);
+        drawComponentInSlot(g2, slots[2], sampleBulb, LABELS[2]);
+        drawComponentInSlot(g2, slots[3], sampleCapacitor, LABELS[3]);
+        drawComponentInSlot(g2, slots[4], sampleInductor, LABELS[4]);
     }
 
-    // Helper to position and draw the dummy component
+    // Helper to draw the dummy component (already centred in its slot)
     private void drawComponentInSlot(Graphics2D g2, Rectangle r, Components c, String label) {
         // Draw Slot White Box
         g2.setColor(Color.WHITE);
@@ -75,16 +88,10 @@ public class ToolboxView {
         g2.setColor(Color.BLACK);
         g2.draw(r);
 
-        // Calculate Center
-        int cx = r.x + r.width / 2;
-        int cy = r.y + r.height / 2 - 6;
-
-        // Move component to this slot and Draw it
-        c.setPosition(cx, cy);
-        c.draw(g2); 
+        c.draw(g2);
 
         // Draw Label
-        g2.setFont(new Font("SansSerif", Font.PLAIN, 12));
+        g2.setFont(LABEL_FONT);
         Rectangle2D bounds = g2.getFontMetrics().getStringBounds(label, g2);
         int lx = r.x + (r.width - (int) bounds.getWidth()) / 2;
         int ly = r.y + r.height - 6;
@@ -120,9 +127,27 @@ public class ToolboxView {
         return null; // User cancelled
     }
 
+    /** Asks for a new value of a part on the board, starting from its current one; null if cancelled or not a number. */
+    public Double promptForNewValue(String componentName, String unit, double current) {
+        String prompt = "New value for " + componentName + " (" + unit + "):";
+        Object input = JOptionPane.showInputDialog(null, prompt, "Edit " + componentName, JOptionPane.PLAIN_MESSAGE,
+                null, null, Double.toString(current));
+        if (input == null || input.toString().isBlank()) return null;
+        try {
+            return Double.parseDouble(input.toString().trim());
+        } catch (NumberFormatException ex) {
+            return null; // keep the old value rather than zeroing it
+        }
+    }
+
     public double[] promptForPowerSource() {
-        JTextField voltageField = new JTextField("5.0", 5);
-        JTextField frequencyField = new JTextField("0", 5);
+        return promptForPowerSource(5.0, 0.0);
+    }
+
+    /** The same dialog starting from the given values, which also stand in for fields that are not numbers. */
+    public double[] promptForPowerSource(double voltage, double frequency) {
+        JTextField voltageField = new JTextField(Double.toString(voltage), 5);
+        JTextField frequencyField = new JTextField(Double.toString(frequency), 5);
 
         JPanel panel = new JPanel();
         panel.add(new JLabel("Voltage (V):"));
@@ -135,8 +160,8 @@ public class ToolboxView {
                 "Enter Power Source Values", JOptionPane.OK_CANCEL_OPTION);
 
         if (result == JOptionPane.OK_OPTION) {
-            double v = 5.0;
-            double f = 0.0;
+            double v = voltage;
+            double f = frequency;
             try { v = Double.parseDouble(voltageField.getText()); } catch (Exception e) {}
             try { f = Double.parseDouble(frequencyField.getText()); } catch (Exception e) {}
             return new double[]{v, f};
@@ -0,0 +1,67 @@
+package view;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+
+/**
+ * Zoom and pan of the circuit board: screen = world * zoom + pan.
+ *
+ * World coordinates are what components store. At zoom 1 and no pan they coincide with panel
+ * coordinates, which is how boards were laid out before the board could move.
+ */
+public class Viewport {
+    public static final double MIN_ZOOM = 0.02;
+    public static final double MAX_ZOOM = 8.0;
+
+    private double zoom = 1.0;
+    private double panX = 0.0, panY = 0.0;
+
+    public double getZoom() {
+        return zoom;
+    }
+
+    /** World-to-screen transform, to be concatenated onto the panel's Graphics2D. */
+    public AffineTransform getTransform() {
+        AffineTransform tx = AffineTransform.getTranslateInstance(panX, panY);
+        tx.scale(zoom, zoom);
+        return tx;
+    }
+
+    public Point toWorld(Point screen) {
+        return new Point((int) Math.floor((screen.x - panX) / zoom), (int) Math.floor((screen.y - panY) / zoom));
+    }
+
+    /** Smallest world rectangle covering the given screen rectangle. */
+    public Rectangle toWorld(Rectangle screen) {
+        int x0 = (int) Math.floor((screen.x - panX) / zoom);
+        int y0 = (int) Math.floor((screen.y - panY) / zoom);
+        int x1 = (int) Math.ceil((screen.x + screen.width - panX) / zoom);
+        int y1 = (int) Math.ceil((screen.y + screen.height - panY) / zoom);
+        return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+    }
+
+    /** Smallest screen rectangle covering the given world rectangle. */
+    public Rectangle toScreen(Rectangle world) {
+        int x0 = (int) Math.floor(world.x * zoom + panX);
+        int y0 = (int) Math.floor(world.y * zoom + panY);
+        int x1 = (int) Math.ceil((world.x + world.width) * zoom + panX);
+        int y1 = (int) Math.ceil((world.y + world.height) * zoom + panY);
+        return new Rectangle(x0, y0, x1 - x0 + 1, y1 - y0 + 1);
+    }
+
+    public void panBy(double dx, double dy) {
+        panX += dx;
+        panY += dy;
+    }
+
+    /** Multiplies the zoom by factor (clamped), keeping the world point under screen fixed. */
+    public void zoomAt(Point screen, double factor) {
+        double next = Math.max(MIN_ZOOM, Math.min(MAX_ZOOM, zoom * factor));
+        double wx = (screen.x - panX) / zoom;
+        double wy = (screen.y - panY) / zoom;
+        zoom = next;
+        panX = screen.x - wx * zoom;
+        panY = screen.y - wy * zoom;
+    }
+}